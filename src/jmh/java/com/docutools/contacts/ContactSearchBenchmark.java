@@ -0,0 +1,164 @@
+package com.docutools.contacts;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of the former {@code CONCAT(...) ILIKE '%term%'} contact search with the trigram indexed
+ * {@link ProjectContactRepository#searchInProject} on 2M contacts in 20k projects. One project has 200k contacts, the
+ * others about 90.
+ *
+ * Needs an empty or previously generated PostgreSQL 9.6+ database, the schema is migrated and the dataset generated on
+ * the first run. Run with
+ * {@code ./gradlew jmh --args='ContactSearchBenchmark -p jdbcUrl=jdbc:postgresql://localhost:5432/users_benchmark?user=postgres'}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContactSearchBenchmark {
+
+    private static final int CONTACTS = 2_000_000;
+    private static final int PAGE_SIZE = 10;
+
+    // ProjectContactRepository.searchInProject before V56, with a PageRequest
+    private static final String CONCAT = "SELECT pc.id FROM project_contacts pc WHERE pc.project_id = ? AND pc.replaced IS FALSE AND " +
+            "CONCAT(pc.email, ' ', pc.company_name, ' ', pc.first_name, ' ', pc.last_name, ' ', " +
+            "pc.phone, ' ', pc.fax, ' ', pc.job_title, ' ', pc.department, ' ', pc.internal_id, ' '" +
+            ", pc.street, ' ', pc.city, ' ', pc.country_code) ILIKE ('%' || ? || '%') LIMIT ?";
+
+    // ProjectContactRepository.searchInProject with a PageRequest
+    private static final String TRIGRAM = "SELECT pc.id FROM project_contacts pc WHERE " +
+            ProjectContactRepository.SEARCH_CONDITION.replace(":projectId", "?").replace(":pattern", "?").replace(":searchText", "?") +
+            " ORDER BY word_similarity(?, " + ProjectContactRepository.SEARCH_TEXT + ") DESC, pc.id LIMIT ?";
+
+    @Param("jdbc:postgresql://localhost:5432/users_benchmark?user=postgres")
+    public String jdbcUrl;
+
+    @Param({"big", "small"})
+    public String project;
+
+    @Param({"wien", "holzbau", "gruber 47", "elektrotechnk"})
+    public String searchText;
+
+    private Connection connection;
+    private UUID projectId;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(jdbcUrl, null, null);
+        flyway.migrate();
+
+        connection = DriverManager.getConnection(jdbcUrl);
+        if (countBenchmarkContacts() < CONTACTS) {
+            generateDataset();
+        }
+        projectId = benchmarkId("big".equals(project) ? "bench-contacts-big" : "bench-contacts-42");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<UUID> concat() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(CONCAT)) {
+            statement.setObject(1, projectId);
+            statement.setString(2, searchText);
+            statement.setInt(3, PAGE_SIZE);
+            return ids(statement);
+        }
+    }
+
+    @Benchmark
+    public List<UUID> trigram() throws SQLException {
+        String normalized = searchText.toLowerCase(Locale.ROOT);
+        try (PreparedStatement statement = connection.prepareStatement(TRIGRAM)) {
+            statement.setObject(1, projectId);
+            statement.setString(2, "%" + normalized + "%");
+            statement.setString(3, normalized);
+            statement.setString(4, normalized);
+            statement.setInt(5, PAGE_SIZE);
+            return ids(statement);
+        }
+    }
+
+    private static List<UUID> ids(PreparedStatement statement) throws SQLException {
+        List<UUID> ids = new ArrayList<>(PAGE_SIZE);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add((UUID) resultSet.getObject("id"));
+            }
+        }
+        return ids;
+    }
+
+    private int countBenchmarkContacts() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM project_contacts WHERE internal_id LIKE 'bench-%'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private UUID benchmarkId(String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT md5(?)::uuid")) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return (UUID) resultSet.getObject(1);
+            }
+        }
+    }
+
+    // Ids are md5 hashes of readable names, see benchmarkId. Every 10th contact of a project is replaced.
+    private void generateDataset() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO project_contacts (id, project_id, email, company_name, first_name, last_name, " +
+                    "phone, job_title, internal_id, street, city, country_code, replaced) " +
+                    "SELECT md5('bench-contact-' || n)::uuid, " +
+                    "CASE WHEN n % 10 = 0 THEN md5('bench-contacts-big') ELSE md5('bench-contacts-' || (n % 20000)) END::uuid, " +
+                    "'contact-' || n || '@example.com', " +
+                    "(ARRAY['Bau', 'Holzbau', 'Elektrotechnik', 'Planung', 'Statik', 'Glas', 'Dach', 'Metall'])[1 + n % 8] || ' ' || (n % 5000), " +
+                    "(ARRAY['Anna', 'Ben', 'Clara', 'David', 'Eva', 'Felix', 'Greta', 'Hannes', 'Ida', 'Jakob'])[1 + n % 10], " +
+                    "(ARRAY['Gruber', 'Huber', 'Wagner', 'Mueller', 'Pichler', 'Steiner', 'Moser', 'Mayer', 'Hofer', 'Leitner', " +
+                    "'Berger', 'Fuchs', 'Eder', 'Fischer', 'Schmid'])[1 + (n / 10) % 15] || ' ' || (n % 97), " +
+                    "'+43 660 ' || n, " +
+                    "(ARRAY['Manager', 'Site Manager', 'Foreman', 'Architect', 'Engineer', 'Electrician'])[1 + n % 6], " +
+                    "'bench-' || n, " +
+                    "'Hauptstrasse ' || (n % 300), " +
+                    "(ARRAY['Wien', 'Graz', 'Linz', 'Salzburg', 'Innsbruck', 'Klagenfurt'])[1 + n % 6], 'AT', " +
+                    "n % 100 < 10 " +
+                    "FROM generate_series(0, " + (CONTACTS - 1) + ") n");
+            statement.execute("ANALYZE project_contacts");
+        }
+    }
+}
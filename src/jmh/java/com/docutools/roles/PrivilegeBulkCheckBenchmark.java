@@ -0,0 +1,124 @@
+package com.docutools.roles;
+
+import com.docutools.UsersApplication;
+import com.docutools.projects.ProjectMetadataCache;
+import com.docutools.services.projects.resources.Project;
+import com.docutools.team.MembershipState;
+import com.docutools.team.TeamMembership;
+import com.docutools.team.TeamMembershipRepo;
+import com.docutools.users.DocutoolsUser;
+import com.docutools.users.Organisation;
+import com.docutools.users.OrganisationRepo;
+import com.docutools.users.UserRepo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PermissionManager#checkPrivilegesInternal(List)} for batches of 1, 100 and 10000 checks of 100 users
+ * in 100 projects, each user being a viewer in every second project. The score divided by {@code size} is the cost of
+ * one check, it should drop with the batch size as users and memberships are loaded with a constant number of queries.
+ * Project metadata is cached up front, the projects service is not called.
+ *
+ * Starts the application against an empty or previously used PostgreSQL 9.6+ database, the schema is migrated and a
+ * fresh dataset is generated for every batch size. Run with
+ * {@code ./gradlew jmh --args='PrivilegeBulkCheckBenchmark -p jdbcUrl=jdbc:postgresql://localhost:5432/users_benchmark?user=postgres'}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PrivilegeBulkCheckBenchmark {
+
+    private static final int USERS = 100;
+    private static final int PROJECTS = 100;
+
+    @Param("jdbc:postgresql://localhost:5432/users_benchmark?user=postgres")
+    public String jdbcUrl;
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+    private PermissionManager permissionManager;
+    private List<PrivilegeCheckRequestDTO> requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(UsersApplication.class)
+                .properties("spring.datasource.url=" + jdbcUrl, "spring.flyway.enabled=true", "server.port=0")
+                .run();
+        permissionManager = context.getBean(PermissionManager.class);
+
+        List<UUID> projectIds = new ArrayList<>();
+        List<Project> projects = new ArrayList<>();
+        for (int i = 0; i < PROJECTS; i++) {
+            Project project = new Project();
+            project.setId(UUID.randomUUID());
+            project.setOrganisationId(UUID.randomUUID());
+            projectIds.add(project.getId());
+            projects.add(project);
+        }
+        context.getBean(ProjectMetadataCache.class).getAll(projectIds, () -> projects);
+
+        List<PrivilegeCheckRequestDTO> all = new ArrayList<>();
+        context.getBean(TransactionTemplate.class).execute(status -> {
+            Organisation organisation = new Organisation();
+            organisation.setName("bench-" + UUID.randomUUID());
+            organisation.setCc("AT");
+            organisation = context.getBean(OrganisationRepo.class).save(organisation);
+            UserRepo userRepo = context.getBean(UserRepo.class);
+            DocutoolsUser owner = userRepo.save(new DocutoolsUser("bench-" + UUID.randomUUID() + "@example.com", organisation));
+            Role viewer = context.getBean(RoleRepo.class)
+                    .save(new Role("Viewer", Collections.emptySet(), organisation, owner, RoleType.Viewer, true));
+            List<TeamMembership> memberships = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                DocutoolsUser user = userRepo.save(new DocutoolsUser("bench-" + UUID.randomUUID() + "@example.com", organisation));
+                for (int j = 0; j < PROJECTS; j++) {
+                    if (j % 2 == 0) {
+                        TeamMembership membership = new TeamMembership(user, projectIds.get(j), MembershipState.Active);
+                        membership.setRole(viewer);
+                        memberships.add(membership);
+                    }
+                    all.add(new PrivilegeCheckRequestDTO(user.getId(), projectIds.get(j),
+                            Arrays.asList(Privilege.ViewTeam, Privilege.ManageTeam), true));
+                }
+            }
+            context.getBean(TeamMembershipRepo.class).saveAll(memberships);
+            return null;
+        });
+        requests = new ArrayList<>(all.subList(0, size));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PrivilegeCheckDTO> checkPrivilegesInternal() {
+        return permissionManager.checkPrivilegesInternal(requests);
+    }
+}
@@ -0,0 +1,87 @@
+package com.docutools.roles;
+
+import groovy.lang.Closure;
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the {@link PrivilegeMask} based privilege checks of {@link Role} and {@link PermissionManager} with the
+ * collection based implementation they replaced. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrivilegeCheckBenchmark {
+
+    private Role role;
+    private Set<Privilege> rolePrivileges;
+    private Set<Privilege> freeUserPrivileges;
+    private long freeUserMask;
+    private Privilege[] checked;
+    private List<Privilege> requested;
+
+    @Setup
+    public void setup() {
+        rolePrivileges = new HashSet<>(Privilege.getViewerPrivileges());
+        role = new Role();
+        role.setPrivileges(rolePrivileges);
+        freeUserPrivileges = Privilege.getViewerPrivileges();
+        freeUserMask = PrivilegeMask.of(freeUserPrivileges);
+        checked = new Privilege[]{Privilege.ManageTeam, Privilege.ManageTasks, Privilege.ViewReports};
+        requested = new ArrayList<>(Arrays.asList(Privilege.ViewTeam, Privilege.ManageTeam, Privilege.ViewTasks,
+                Privilege.CreateTasks, Privilege.ViewReports));
+    }
+
+    @Benchmark
+    public boolean hasPrivilegeCollection() {
+        Privilege[] privilege = checked;
+        return DefaultGroovyMethods.any(rolePrivileges, new Closure<Boolean>(this) {
+            public Boolean doCall(Object it) {
+                return DefaultGroovyMethods.contains(privilege, it);
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean hasPrivilegeMask() {
+        return role.hasPrivilege(checked);
+    }
+
+    @Benchmark
+    public List<Privilege> filterByAccountCollection() {
+        return new ArrayList<>(freeUserPrivileges.stream()
+                .filter(requested::contains)
+                .collect(Collectors.toSet()));
+    }
+
+    @Benchmark
+    public List<Privilege> filterByAccountMask() {
+        List<Privilege> filtered = new ArrayList<>(requested.size());
+        for (Privilege privilege : requested) {
+            if (PrivilegeMask.contains(freeUserMask, privilege)) {
+                filtered.add(privilege);
+            }
+        }
+        return filtered;
+    }
+}
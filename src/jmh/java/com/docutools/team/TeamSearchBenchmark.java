@@ -0,0 +1,180 @@
+package com.docutools.team;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of {@link TeamMembershipRepo#searchTeamMemberIds} with the trigram based
+ * {@link TeamMembershipRepo#searchTeamMemberIdsBySimilarity} on 1M users in 10k organisations with 5M memberships.
+ * One project has 50k members, the others about 250.
+ *
+ * Needs an empty or previously generated PostgreSQL 9.6+ database, the schema is migrated and the dataset generated on
+ * the first run (takes a few minutes). Run with
+ * {@code ./gradlew jmh --args='TeamSearchBenchmark -p jdbcUrl=jdbc:postgresql://localhost:5432/users_benchmark?user=postgres'}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TeamSearchBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int PAGE_SIZE = 10;
+
+    // TeamMembershipRepo.searchTeamMemberIds with a PageRequest, the LIKE patterns bound by Spring Data
+    private static final String CONTAINS = "select t.id from docutools_users AS u inner join team_memberships AS t on t.user_id = u.id " +
+            "inner join organisations as o on o.id = u.organisation_id " +
+            "where t.project_id=? AND t.state='Active' AND (u.first_name ilike ? OR u.last_name ilike ? OR u.username ilike ? " +
+            "OR u.job_title ilike ? OR o.name ilike ?) limit ?";
+
+    private static final String USER_SEARCH_TEXT = "lower(u.first_name || ' ' || u.last_name || ' ' || u.username || ' ' || coalesce(u.job_title, ''))";
+
+    // TeamMembershipRepo.searchTeamMemberIdsBySimilarity
+    private static final String SIMILARITY = "select t.id from team_memberships t " +
+            "inner join docutools_users u on u.id = t.user_id " +
+            "inner join organisations o on o.id = u.organisation_id " +
+            "where t.project_id = ? and t.state = 'Active' " +
+            "and (" + USER_SEARCH_TEXT + " like ? or ? <% " + USER_SEARCH_TEXT + " or lower(o.name) like ? or ? <% lower(o.name)) " +
+            "order by greatest(word_similarity(?, " + USER_SEARCH_TEXT + "), word_similarity(?, lower(o.name))) desc, t.id " +
+            "limit ?";
+
+    @Param("jdbc:postgresql://localhost:5432/users_benchmark?user=postgres")
+    public String jdbcUrl;
+
+    @Param({"big", "small"})
+    public String project;
+
+    @Param({"anna", "site manager", "managr", "holz 4711"})
+    public String searchText;
+
+    private Connection connection;
+    private UUID projectId;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(jdbcUrl, null, null);
+        flyway.migrate();
+
+        connection = DriverManager.getConnection(jdbcUrl);
+        if (countBenchmarkUsers() < USERS) {
+            generateDataset();
+        }
+        projectId = benchmarkId("big".equals(project) ? "bench-project-big" : "bench-project-42");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<UUID> contains() throws SQLException {
+        String pattern = "%" + searchText + "%";
+        try (PreparedStatement statement = connection.prepareStatement(CONTAINS)) {
+            statement.setObject(1, projectId);
+            for (int i = 2; i <= 6; i++) {
+                statement.setString(i, pattern);
+            }
+            statement.setInt(7, PAGE_SIZE);
+            return ids(statement);
+        }
+    }
+
+    @Benchmark
+    public List<UUID> similarity() throws SQLException {
+        String normalized = searchText.toLowerCase(Locale.ROOT);
+        String pattern = "%" + normalized + "%";
+        try (PreparedStatement statement = connection.prepareStatement(SIMILARITY)) {
+            statement.setObject(1, projectId);
+            statement.setString(2, pattern);
+            statement.setString(3, normalized);
+            statement.setString(4, pattern);
+            statement.setString(5, normalized);
+            statement.setString(6, normalized);
+            statement.setString(7, normalized);
+            statement.setInt(8, PAGE_SIZE);
+            return ids(statement);
+        }
+    }
+
+    private static List<UUID> ids(PreparedStatement statement) throws SQLException {
+        List<UUID> ids = new ArrayList<>(PAGE_SIZE);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add((UUID) resultSet.getObject("id"));
+            }
+        }
+        return ids;
+    }
+
+    private int countBenchmarkUsers() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM docutools_users WHERE username LIKE 'bench-%'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private UUID benchmarkId(String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT md5(?)::uuid")) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return (UUID) resultSet.getObject(1);
+            }
+        }
+    }
+
+    // Ids are md5 hashes of readable names, see benchmarkId
+    private void generateDataset() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO organisations (id, name, cc) " +
+                    "SELECT md5('bench-org-' || n)::uuid, " +
+                    "(ARRAY['Bau', 'Holz', 'Elektro', 'Planung', 'Statik', 'Glas', 'Dach', 'Metall'])[1 + n % 8] || ' ' || n, 'AT' " +
+                    "FROM generate_series(0, 9999) n");
+            statement.execute("INSERT INTO docutools_users (id, organisation_id, username, email, first_name, last_name, job_title) " +
+                    "SELECT md5('bench-user-' || n)::uuid, " +
+                    "md5('bench-org-' || (n % 10000))::uuid, " +
+                    "'bench-' || n || '@example.com', 'bench-' || n || '@example.com', " +
+                    "(ARRAY['Anna', 'Ben', 'Clara', 'David', 'Eva', 'Felix', 'Greta', 'Hannes', 'Ida', 'Jakob', 'Klara', 'Lukas', " +
+                    "'Maria', 'Noah', 'Olivia', 'Paul', 'Rosa', 'Simon', 'Theresa', 'Valentin'])[1 + n % 20], " +
+                    "(ARRAY['Gruber', 'Huber', 'Wagner', 'Mueller', 'Pichler', 'Steiner', 'Moser', 'Mayer', 'Hofer', 'Leitner', " +
+                    "'Berger', 'Fuchs', 'Eder', 'Fischer', 'Schmid'])[1 + (n / 20) % 15] || (n % 997), " +
+                    "(ARRAY['Manager', 'Site Manager', 'Foreman', 'Architect', 'Engineer', 'Electrician'])[1 + n % 6] " +
+                    "FROM generate_series(0, " + (USERS - 1) + ") n");
+            statement.execute("INSERT INTO team_memberships (id, user_id, project_id, invited, state) " +
+                    "SELECT md5('bench-membership-' || n || '-' || i)::uuid, md5('bench-user-' || n)::uuid, " +
+                    "CASE WHEN i = 0 AND n % 20 = 0 THEN md5('bench-project-big') ELSE md5('bench-project-' || ((n + i * 4001) % 20000)) END::uuid, " +
+                    "now(), CASE WHEN n % 10 = 0 THEN 'Inactive' ELSE 'Active' END " +
+                    "FROM generate_series(0, " + (USERS - 1) + ") n, generate_series(0, 4) i");
+            statement.execute("ANALYZE");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.docutools.assignees;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+import java.util.UUID;
+
+@ApiModel(value = "Assignee Delta Resource")
+public class AssigneeDelta {
+
+    @ApiModelProperty(value = "Assignees added or changed since the watermark")
+    private final List<Assignee> assignees;
+    @ApiModelProperty(value = "Ids of the members removed and the contacts replaced since the watermark")
+    private final List<UUID> removed;
+    @ApiModelProperty(value = "Watermark to pass with the next request")
+    private final String watermark;
+
+    public AssigneeDelta(List<Assignee> assignees, List<UUID> removed, String watermark) {
+        this.assignees = assignees;
+        this.removed = removed;
+        this.watermark = watermark;
+    }
+
+    public List<Assignee> getAssignees() {
+        return assignees;
+    }
+
+    public List<UUID> getRemoved() {
+        return removed;
+    }
+
+    public String getWatermark() {
+        return watermark;
+    }
+}
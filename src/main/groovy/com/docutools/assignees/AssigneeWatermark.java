@@ -0,0 +1,51 @@
+package com.docutools.assignees;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError;
+
+/**
+ * Server time of an assignee delta sync. Clients only ever see it as an opaque token, see {@link #encode()}.
+ */
+final class AssigneeWatermark {
+
+    /**
+     * last_modified is written with the clock of the app server at some point before the commit, so changes committed
+     * shortly after a sync can carry an older timestamp. The next sync looks back this far, clients get those rows twice.
+     */
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    private final Instant issued;
+
+    AssigneeWatermark(Instant issued) {
+        this.issued = issued;
+    }
+
+    static AssigneeWatermark now() {
+        return new AssigneeWatermark(Instant.now());
+    }
+
+    static AssigneeWatermark decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            return new AssigneeWatermark(Instant.ofEpochMilli(Long.parseLong(value)));
+        } catch (IllegalArgumentException e) {
+            throw newInputValidationError("Invalid watermark: " + token);
+        }
+    }
+
+    String encode() {
+        String value = String.valueOf(issued.toEpochMilli());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return exclusive lower bound for last_modified of the rows changed since this watermark was issued
+     */
+    Instant getChangedAfter() {
+        return issued.minus(OVERLAP);
+    }
+}
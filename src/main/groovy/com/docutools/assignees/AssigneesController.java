@@ -40,6 +40,16 @@ public class AssigneesController {
         return assigneesService.listAssignees(projectId, company, parseDateTime(since), sort, sortDirection, includeRemoved, excludeContacts);
     }
 
+    @ApiOperation(value = "List Assignees changed since a Watermark",
+            notes = "Omit the watermark for the initial sync, pass the returned one with the next request.")
+    @GetMapping(path = "/projects/{projectId}/assignees/delta")
+    public AssigneeDelta assigneeDelta(@PathVariable UUID projectId,
+                                       @RequestParam(required = false) String watermark,
+                                       @RequestParam(required = false, defaultValue = "false") boolean excludeContacts) {
+        log.debug("GET /api/v2/projects/{}/assignees/delta?watermark={}&excludeContacts={}", projectId, watermark, excludeContacts);
+        return assigneesService.listAssigneeDelta(projectId, watermark, excludeContacts);
+    }
+
     @ApiOperation(value = "List all Assignee Companies")
     @GetMapping(path = "/projects/{projectId}/companies/all")
     public List<AssigneeCompany> allCompanies(@PathVariable UUID projectId,
@@ -14,8 +14,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -83,6 +91,54 @@ public class AssigneesService {
         return assignees.stream().sorted(comparator).collect(Collectors.toList());
     }
 
+    /**
+     * Lists the assignees changed since a watermark issued by a previous call, without scanning the project. Members
+     * change with their membership or their user. Removed members and replaced contacts are returned as tombstones.
+     *
+     * @param projectId the project's id
+     * @param watermark the watermark of the previous call, {@code null} for the initial sync.
+     * @param excludeContacts whether to leave out contacts
+     * @return the changed assignees, the tombstones and the watermark for the next call
+     */
+    public AssigneeDelta listAssigneeDelta(UUID projectId, String watermark, boolean excludeContacts) {
+        requireToBeMember(projectId);
+        AssigneeWatermark next = AssigneeWatermark.now();
+        if (watermark == null) {
+            List<Assignee> assignees = listAssignees(projectId, null, null, AssigneeSort.Id, SortDirection.ASC, false, excludeContacts);
+            return new AssigneeDelta(assignees, Collections.emptyList(), next.encode());
+        }
+        Instant since = AssigneeWatermark.decode(watermark).getChangedAfter();
+        ZonedDateTime sinceTime = since.atZone(ZoneId.systemDefault());
+
+        Map<UUID, Assignee> changed = new LinkedHashMap<>();
+        Set<UUID> removed = new LinkedHashSet<>();
+        Stream.concat(membershipsRepository.findModifiedSince(projectId, sinceTime).stream(),
+                membershipsRepository.findWithUserModifiedSince(projectId, sinceTime).stream())
+                .forEach(membership -> {
+                    if (membership.getState() == MembershipState.Removed) {
+                        removed.add(membership.getUser().getId());
+                    } else {
+                        changed.putIfAbsent(membership.getUser().getId(), new Assignee(membership));
+                    }
+                });
+        if (!excludeContacts) {
+            contactRepository.findByProjectIdAndLastModifiedAfter(projectId, sinceTime).forEach(contact -> {
+                if (contact.isReplaced()) {
+                    removed.add(contact.getId());
+                } else {
+                    changed.put(contact.getId(), new Assignee(contact));
+                }
+            });
+        }
+
+        DocutoolsUser me = sessionManager.getCurrentUser();
+        Assignee assignee = new Assignee(me);
+        if (assignee.getLastModified() != null && assignee.getLastModified().isAfter(since) && !removed.contains(me.getId())) {
+            changed.putIfAbsent(me.getId(), assignee);
+        }
+        return new AssigneeDelta(new ArrayList<>(changed.values()), new ArrayList<>(removed), next.encode());
+    }
+
     private Predicate<Assignee> lastModifiedPredicate(Instant since) {
         if (since == null) return assignee -> true;
         return assignee -> assignee.getLastModified().isAfter(since);
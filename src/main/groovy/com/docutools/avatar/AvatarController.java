@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -26,11 +27,12 @@ public class AvatarController {
     @Autowired
     private AvatarService avatarService;
 
-    @ApiOperation(value = "Download my Avatar")
+    @ApiOperation(value = "Download my Avatar", notes = "size picks the smallest rendition (32, 64, 128 or 264 pixels wide) at least as wide as requested, default 264.")
     @GetMapping(path = "/me/avatar")
-    public void downloadMyAvatar(HttpServletResponse response, HttpServletRequest request) {
-        log.debug("GET /api/v2/me/avatar");
-        avatarService.writeThumbnailToResponse(response, request);
+    public void downloadMyAvatar(@RequestParam(required = false) Integer size,
+                                 HttpServletResponse response, HttpServletRequest request) {
+        log.debug("GET /api/v2/me/avatar?size={}", size);
+        avatarService.writeThumbnailToResponse(size, response, request);
     }
 
     @ApiOperation(value = "Download my Avatar in original size")
@@ -40,11 +42,13 @@ public class AvatarController {
         avatarService.writeAvatarToResponse(response);
     }
 
-    @ApiOperation(value = "Download User Avatar")
+    @ApiOperation(value = "Download User Avatar", notes = "size picks the smallest rendition (32, 64, 128 or 264 pixels wide) at least as wide as requested, default 264.")
     @GetMapping(path = "/users/{id}/avatar")
-    public void downloadUsersAvatar(@PathVariable UUID id, HttpServletResponse response, HttpServletRequest request) {
-        log.debug("GET /api/v2/users/{}/avatar", id);
-        avatarService.writeThumbnailToResponse(id, response, request);
+    public void downloadUsersAvatar(@PathVariable UUID id,
+                                    @RequestParam(required = false) Integer size,
+                                    HttpServletResponse response, HttpServletRequest request) {
+        log.debug("GET /api/v2/users/{}/avatar?size={}", id, size);
+        avatarService.writeThumbnailToResponse(id, size, response, request);
     }
 
     @ApiOperation(value = "Download User Avatar in original size")
@@ -13,10 +13,11 @@ import com.docutools.users.SessionManager;
 import com.docutools.users.UserRepo;
 import com.docutools.users.values.ChecksumAlgorithm;
 import com.docutools.users.values.ProfilePicture;
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -29,7 +30,6 @@ import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.awt.Color;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -37,6 +37,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.docutools.exceptions.ExceptionHelper.newBadRequestError;
 import static com.docutools.exceptions.ExceptionHelper.newForbiddenError;
@@ -65,11 +68,20 @@ public class AvatarService {
     @Autowired
     private UserRepo usersRepository;
     @Autowired
+    private ProfilePictureRepo profilePictureRepo;
+    @Autowired
     private ProjectContactRepository contactRepository;
     @Autowired
     private SessionManager sessionManager;
     @Autowired
     private PermissionManager permissionManager;
+    @Autowired
+    private AvatarThumbnailCache thumbnailCache;
+    @Autowired
+    @Qualifier("avatarRenditionExecutor")
+    private TaskExecutor renditionExecutor;
+
+    private final ConcurrentMap<UUID, Boolean> pendingRenditions = new ConcurrentHashMap<>();
 
     public void writeAvatarToResponse(HttpServletResponse response) {
         writeAvatarToResponse(sessionManager.getCurrentUser().getId(), response);
@@ -94,10 +106,10 @@ public class AvatarService {
                 throw newInternalServerError("Could not read avatar!", e);
             }
         }
-        if(usersRepository.existsById(id)) {
-            DocutoolsUser user = usersRepository.getOne(id);
-            ProfilePicture avatar = user.getAvatar();
-            if(avatar != null && avatar.getData() != null) {
+        Optional<ProfilePicture> legacyAvatar = profilePictureRepo.findById(id);
+        if(legacyAvatar.isPresent()) {
+            ProfilePicture avatar = legacyAvatar.get();
+            if(avatar.getData() != null) {
                 byte[] data = avatar.getData();
                 if(!"image/jpeg".equals(avatar.getContentType())) {
                     try(ByteArrayInputStream in = new ByteArrayInputStream(data)) {
@@ -115,9 +127,9 @@ public class AvatarService {
                 if(avatar.getThumbnail() != null) {
                     StorageAccessKey tKey = toThumbnailKey(id);
                     storageEngine.save(tKey, avatar.getThumbnail());
+                    thumbnailCache.invalidate(id);
                 }
-                user.setAvatar(null);
-                usersRepository.save(user);
+                profilePictureRepo.delete(avatar);
                 writeAvatarToResponse(id, response);
                 return;
             }
@@ -125,8 +137,8 @@ public class AvatarService {
         response.setStatus(204);
     }
 
-    public void writeThumbnailToResponse(HttpServletResponse response, HttpServletRequest request) {
-        writeThumbnailToResponse(sessionManager.getCurrentUser().getId(), response,request);
+    public void writeThumbnailToResponse(Integer size, HttpServletResponse response, HttpServletRequest request) {
+        writeThumbnailToResponse(sessionManager.getCurrentUser().getId(), size, response, request);
     }
 
     public Optional<byte[]> getAvatarData(UUID id){
@@ -134,14 +146,21 @@ public class AvatarService {
         if(storageEngine.exists(key)) {
             return Optional.ofNullable(storageEngine.download(key));
         }
-        if(usersRepository.existsById(id)) {
-            DocutoolsUser user = usersRepository.getOne(id);
-            ProfilePicture avatar = user.getAvatar();
-            if(avatar != null && avatar.getData() != null) {
-                return Optional.ofNullable(avatar.getData());
-            }
-        }
-        return Optional.empty();
+        return profilePictureRepo.findById(id)
+                .map(ProfilePicture::getData);
+    }
+
+    /**
+     * Loads the Avatar's thumbnail through the {@link AvatarThumbnailCache}. Safe to call outside of a request, e.g. to
+     * fetch the thumbnails of many users in parallel.
+     *
+     * @param id user or contact's ID
+     * @return the JPEG thumbnail or empty if there is no avatar or its thumbnail is still being generated
+     */
+    public Optional<byte[]> getThumbnailData(UUID id) {
+        return thumbnailCache.load(id, THUMBNAIL_WIDTH, () -> loadThumbnail(id))
+                .filter(thumbnail -> !thumbnail.isFallback())
+                .map(AvatarThumbnailCache.Thumbnail::getData);
     }
 
     /**
@@ -149,44 +168,135 @@ public class AvatarService {
      * When no avatar specified will give 204 status code.
      *
      * @param id user's ID
+     * @param size requested width in pixels, the smallest rendition at least as wide is written. {@code null} for the
+     *             {@link #THUMBNAIL_WIDTH}
      * @param response {@link HttpServletResponse}
      */
-    public void writeThumbnailToResponse(UUID id, HttpServletResponse response, HttpServletRequest request) {
-        StorageAccessKey key = toThumbnailKey(id);
+    public void writeThumbnailToResponse(UUID id, Integer size, HttpServletResponse response, HttpServletRequest request) {
+        int width = AvatarRenditions.closestWidth(size);
+        Optional<AvatarThumbnailCache.Thumbnail> cached = thumbnailCache.load(id, width, () -> loadRendition(id, width));
+        if(!cached.isPresent()) {
+            response.setStatus(204);
+            return;
+        }
+        AvatarThumbnailCache.Thumbnail thumbnail = cached.get();
         DocutoolsUser user = sessionManager.getCurrentUser();
+        if (width == THUMBNAIL_WIDTH && !thumbnail.isFallback() && user.getId().equals(id) && StringUtils.isEmpty(user.getAvatarThumbnailChecksum())) {
+            saveThumbnailChecksum(id, thumbnail.getChecksum());
+        }
+        response.setHeader(HttpHeaders.ETAG, thumbnail.getChecksum());
         String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
-        if (!StringUtils.isEmpty(ifNoneMatch) && ifNoneMatch.equals(user.getAvatarThumbnailChecksum())) {
-            response.setHeader(HttpHeaders.ETAG, user.getAvatarThumbnailChecksum());
+        if (thumbnail.getChecksum().equals(ifNoneMatch)) {
             response.setStatus(HttpStatus.NOT_MODIFIED.value());
             return;
         }
+        response.setContentType("image/jpeg");
+        response.setContentLength(thumbnail.getData().length);
+        try {
+            response.getOutputStream().write(thumbnail.getData());
+        } catch (IOException e) {
+            throw newInternalServerError("Could not write avatar thumbnail!", e);
+        }
+    }
+
+    /**
+     * Loads a smaller rendition from storage. Until it has been generated in the background the thumbnail is served
+     * instead, as a fallback that is not cached under the rendition's width.
+     */
+    private Optional<AvatarThumbnailCache.Thumbnail> loadRendition(UUID id, int width) {
+        if(width == THUMBNAIL_WIDTH) {
+            return loadThumbnail(id);
+        }
+        StorageAccessKey key = toRenditionKey(id, width);
         if(storageEngine.exists(key)) {
-            if (StringUtils.isEmpty(user.getAvatarThumbnailChecksum())) {
-                generateThumbnailChecksum(user.getId(), key);
-            }
-            response.setHeader(HttpHeaders.ETAG, user.getAvatarThumbnailChecksum());
-            response.setContentType("image/jpeg");
-            response.setContentLengthLong(storageEngine.size(key));
-            try(InputStream in = storageEngine.openStreamTo(key)) {
-                StreamUtils.copy(in, response.getOutputStream());
-                return;
-            } catch (IOException e) {
-                throw newInternalServerError("Could not read avatar thumbnail!", e);
-            }
+            return Optional.ofNullable(storageEngine.download(key)).map(AvatarThumbnailCache.Thumbnail::new);
+        }
+        Optional<AvatarThumbnailCache.Thumbnail> thumbnail = thumbnailCache.load(id, THUMBNAIL_WIDTH, () -> loadThumbnail(id));
+        if(thumbnail.isPresent()) {
+            scheduleRenditions(id, false);
+        }
+        return thumbnail.map(AvatarThumbnailCache.Thumbnail::asFallback);
+    }
+
+    /**
+     * Loads the thumbnail from storage. When it is missing for a stored avatar, it is generated with the renditions in
+     * the background and the original avatar is served as a fallback until then.
+     */
+    private Optional<AvatarThumbnailCache.Thumbnail> loadThumbnail(UUID id) {
+        StorageAccessKey key = toThumbnailKey(id);
+        if(storageEngine.exists(key)) {
+            return Optional.ofNullable(storageEngine.download(key)).map(AvatarThumbnailCache.Thumbnail::new);
         }
         StorageAccessKey oKey = toKey(id);
         if(storageEngine.exists(oKey)) {
-            try(InputStream in = storageEngine.openStreamTo(oKey)) {
-                BufferedImage image = ImageIO.read(in);
-                image = createThumbnail(image, true);
-                save(key, image);
-                writeThumbnailToResponse(id, response, request);
-                return;
-            } catch (IOException e) {
-                throw newInternalServerError("Error while generating thumbnail!", e);
+            scheduleRenditions(id, false);
+            return Optional.ofNullable(storageEngine.download(oKey))
+                    .map(data -> new AvatarThumbnailCache.Thumbnail(data).asFallback());
+        }
+        return profilePictureRepo.findById(id)
+                .map(ProfilePicture::getThumbnail)
+                .map(AvatarThumbnailCache.Thumbnail::new);
+    }
+
+    /**
+     * Generates the thumbnail, when missing, and the renditions smaller than it in the background, each from the next
+     * larger one. Requests for an avatar already waiting are merged, when the executor's queue is full the request is
+     * dropped. Missing renditions are served from the thumbnail, a missing thumbnail from the original avatar, and
+     * scheduled again by the next request for them.
+     *
+     * @param overwrite whether to replace existing renditions, e.g. after an upload
+     */
+    private void scheduleRenditions(UUID id, boolean overwrite) {
+        Boolean pending = pendingRenditions.putIfAbsent(id, overwrite);
+        if(pending != null) {
+            if(overwrite && !pending && !pendingRenditions.replace(id, false, true)) {
+                // the waiting request was just taken by the executor
+                scheduleRenditions(id, true);
             }
+            return;
+        }
+        try {
+            renditionExecutor.execute(() -> generateRenditions(id, pendingRenditions.remove(id)));
+        } catch (RejectedExecutionException e) {
+            pendingRenditions.remove(id);
+            log.debug("Skipped generating the avatar renditions of {}, too many pending.", id);
+        }
+    }
+
+    private void generateRenditions(UUID id, boolean overwrite) {
+        try {
+            BufferedImage image = null;
+            StorageAccessKey thumbnailKey = toThumbnailKey(id);
+            StorageAccessKey originalKey = toKey(id);
+            if(!storageEngine.exists(thumbnailKey) && storageEngine.exists(originalKey)) {
+                try(InputStream in = storageEngine.openStreamTo(originalKey)) {
+                    image = AvatarRenditions.scaleToWidth(ImageIO.read(in), THUMBNAIL_WIDTH);
+                }
+                storageEngine.save(thumbnailKey, AvatarRenditions.toProgressiveJpeg(image));
+                thumbnailCache.invalidate(id, THUMBNAIL_WIDTH);
+                log.debug("Generated the avatar thumbnail of {}.", id);
+            }
+            for(int i = AvatarRenditions.WIDTHS.length - 2; i >= 0; i--) {
+                int width = AvatarRenditions.WIDTHS[i];
+                StorageAccessKey key = toRenditionKey(id, width);
+                if(!overwrite && storageEngine.exists(key)) {
+                    continue;
+                }
+                if(image == null) {
+                    Optional<byte[]> thumbnail = getThumbnailData(id);
+                    if(!thumbnail.isPresent()) {
+                        return;
+                    }
+                    image = ImageIO.read(new ByteArrayInputStream(thumbnail.get()));
+                }
+                image = AvatarRenditions.scaleToWidth(image, width);
+                storageEngine.save(key, AvatarRenditions.toProgressiveJpeg(image));
+                thumbnailCache.invalidate(id, width);
+            }
+            log.debug("Generated the avatar renditions of {}.", id);
+        } catch (Exception e) {
+            log.warn(String.format("Could not generate the avatar renditions of %s.", id), e);
         }
-        response.setStatus(204);
     }
 
     public void uploadAvatar(MultipartFile file) {
@@ -204,13 +314,16 @@ public class AvatarService {
         try(ByteArrayInputStream in = new ByteArrayInputStream(file.getBytes())) {
             BufferedImage image = ImageIO.read(in);
             boolean isJpeg = MediaType.IMAGE_JPEG_VALUE.equalsIgnoreCase(file.getContentType());
-            BufferedImage thumbnail = createThumbnail(image, isJpeg);
             save(toKey(id), isJpeg ? image : toJpg(image));
             log.debug("Uploaded new Avatar for {}.", id);
             StorageAccessKey thumbnailKey = toThumbnailKey(id);
-            save(thumbnailKey, thumbnail);
+            storageEngine.save(thumbnailKey, AvatarRenditions.toProgressiveJpeg(AvatarRenditions.scaleToWidth(image, THUMBNAIL_WIDTH)));
+            // renditions of the old avatar must not outlive a dropped background job
+            deleteRenditions(id);
+            thumbnailCache.invalidate(id);
             generateThumbnailChecksum(id, thumbnailKey);
             log.debug("Uploaded Avatar Thumbnail for {}.", id);
+            scheduleRenditions(id, true);
         } catch (IOException e) {
             throw newInternalServerError("Error while storing Avatar!", e);
         }
@@ -218,14 +331,17 @@ public class AvatarService {
 
     private void generateThumbnailChecksum(UUID id, StorageAccessKey thumbnailKey) {
         if(usersRepository.existsById(id)){
-            DocutoolsUser user = usersRepository.getOne(id);
-            String checksum = storageEngine.md5AsHex(thumbnailKey);
-            user.setAvatarThumbnailChecksum(checksum);
-            user.setChecksumAlgorithm(ChecksumAlgorithm.MD5);
-            usersRepository.save(user);
+            saveThumbnailChecksum(id, storageEngine.md5AsHex(thumbnailKey));
         }
     }
 
+    private void saveThumbnailChecksum(UUID userId, String checksum) {
+        DocutoolsUser user = usersRepository.getOne(userId);
+        user.setAvatarThumbnailChecksum(checksum);
+        user.setChecksumAlgorithm(ChecksumAlgorithm.MD5);
+        usersRepository.save(user);
+    }
+
     public void removeAvatar() {
         removeAvatar(sessionManager.getCurrentUser().getId());
     }
@@ -257,6 +373,17 @@ public class AvatarService {
         } else {
             log.debug("Did not delete Avatar Thumbnail for {}, doesn't exist.", id);
         }
+        deleteRenditions(id);
+        thumbnailCache.invalidate(id);
+    }
+
+    private void deleteRenditions(UUID id) {
+        for(int i = 0; i < AvatarRenditions.WIDTHS.length - 1; i++) {
+            StorageAccessKey renditionKey = toRenditionKey(id, AvatarRenditions.WIDTHS[i]);
+            if(storageEngine.exists(renditionKey)) {
+                storageEngine.delete(renditionKey);
+            }
+        }
     }
 
     private StorageAccessKey toKey(UUID id) {
@@ -267,22 +394,18 @@ public class AvatarService {
         return new StorageAccessKey(FileType.Misc, String.format("users/avatars/thumbnails/%s.jpg", id));
     }
 
-    @NotNull
-    private BufferedImage createThumbnail(BufferedImage image, boolean isJpeg) {
-        int width = image.getWidth();
-        if(width > THUMBNAIL_WIDTH) {
-            int scaledHeight = (int)(((double)image.getHeight())/((double)image.getWidth())*THUMBNAIL_WIDTH);
-            Image thumbnail = image.getScaledInstance(THUMBNAIL_WIDTH, scaledHeight, Image.SCALE_SMOOTH);
-            image = new BufferedImage(THUMBNAIL_WIDTH, scaledHeight, isJpeg ? image.getType() : BufferedImage.TYPE_INT_RGB);
-            image.createGraphics().drawImage(thumbnail, 0, 0, Color.WHITE, null);
-        }
-        return image;
+    private StorageAccessKey toRenditionKey(UUID id, int width) {
+        return new StorageAccessKey(FileType.Misc, String.format("users/avatars/%d/%s.jpg", width, id));
     }
 
     private void save(StorageAccessKey key, BufferedImage image) throws IOException {
+        storageEngine.save(key, toBytes(image));
+    }
+
+    private byte[] toBytes(BufferedImage image) throws IOException {
         try(ByteArrayOutputStream out = new ByteArrayOutputStream()) {
             ImageIO.write(image, "jpg", out);
-            storageEngine.save(key, out.toByteArray());
+            return out.toByteArray();
         }
     }
 
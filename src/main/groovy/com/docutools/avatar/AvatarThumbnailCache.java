@@ -0,0 +1,210 @@
+package com.docutools.avatar;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of avatar thumbnails and their checksums by user or contact id and rendition width, in front of the
+ * storage engine. The cache is weighed by the size of the thumbnails and holds at most
+ * {@code docutools.avatars.cache.maximumBytes}.
+ * Users and contacts without an avatar are cached as well, for {@code docutools.avatars.cache.missingTtlSeconds}, so
+ * they are not looked up in storage on every request. Fallbacks served until a rendition is generated are not cached.
+ *
+ * {@link AvatarService} invalidates a thumbnail when the avatar changes, other instances see the change after
+ * {@code docutools.avatars.cache.ttlSeconds}, a first upload after {@code missingTtlSeconds}. Hits, misses and evictions are recorded and logged periodically, see
+ * {@link #stats()}.
+ */
+@Service
+public class AvatarThumbnailCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarThumbnailCache.class);
+    // approximate size of the key, entry and checksum of a cached thumbnail
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final long maximumBytes;
+    private final Ticker ticker;
+    private final long missingTtlNanos;
+    private final Cache<List<Object>, Entry> cache;
+
+    @Autowired
+    public AvatarThumbnailCache(@Value("${docutools.avatars.cache.maximumBytes:67108864}") long maximumBytes,
+                                @Value("${docutools.avatars.cache.ttlSeconds:3600}") long ttlSeconds,
+                                @Value("${docutools.avatars.cache.missingTtlSeconds:30}") long missingTtlSeconds) {
+        this(maximumBytes, ttlSeconds, missingTtlSeconds, Ticker.systemTicker());
+    }
+
+    AvatarThumbnailCache(long maximumBytes, long ttlSeconds, long missingTtlSeconds, Ticker ticker) {
+        this.maximumBytes = maximumBytes;
+        this.ticker = ticker;
+        this.missingTtlNanos = TimeUnit.SECONDS.toNanos(missingTtlSeconds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((List<Object> key, Entry entry) ->
+                        ENTRY_OVERHEAD_BYTES + entry.thumbnail.map(t -> t.data.length).orElse(0))
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Looks up the thumbnail of a user or contact, loading it on a miss. Concurrent lookups of the same id wait for a
+     * single load.
+     *
+     * @param id user or contact's ID
+     * @param width the rendition width, see {@link AvatarRenditions#WIDTHS}
+     * @param loader loads the JPEG thumbnail, empty if there is no avatar
+     * @return the thumbnail or empty if there is no avatar
+     */
+    public Optional<Thumbnail> get(UUID id, int width, Supplier<Optional<byte[]>> loader) {
+        return load(id, width, () -> loader.get().map(Thumbnail::new));
+    }
+
+    /**
+     * Looks up the thumbnail of a user or contact like {@link #get}, the loader may return a
+     * {@link Thumbnail#asFallback() fallback}. A fallback is handed to the lookups waiting for the load, but not kept.
+     *
+     * @param loader loads the thumbnail or a fallback, empty if there is no avatar
+     */
+    public Optional<Thumbnail> load(UUID id, int width, Supplier<Optional<Thumbnail>> loader) {
+        List<Object> key = key(id, width);
+        try {
+            Entry entry = cache.get(key, () -> new Entry(loader.get(), ticker.read()));
+            if (!entry.thumbnail.isPresent() && ticker.read() - entry.loadedAt > missingTtlNanos) {
+                cache.asMap().remove(key, entry);
+                entry = cache.get(key, () -> new Entry(loader.get(), ticker.read()));
+            }
+            if (entry.thumbnail.isPresent() && entry.thumbnail.get().isFallback()) {
+                // only this load, a thumbnail cached meanwhile stays
+                cache.asMap().remove(key, entry);
+            }
+            return entry.thumbnail;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Drops the cached thumbnails of all renditions of a user or contact, e.g. after the avatar was uploaded or removed.
+     *
+     * @param id user or contact's ID
+     */
+    public void invalidate(UUID id) {
+        for (int width : AvatarRenditions.WIDTHS) {
+            invalidate(id, width);
+        }
+    }
+
+    /**
+     * Drops the cached thumbnail of one rendition, e.g. after it was generated.
+     */
+    public void invalidate(UUID id, int width) {
+        cache.invalidate(key(id, width));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return hit/miss counts, load times, evictions and the size of the cache
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        long bytes = cache.asMap().values().stream()
+                .mapToLong(entry -> entry.thumbnail.map(t -> t.data.length).orElse(0))
+                .sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.size());
+        result.put("bytes", bytes);
+        result.put("maximumBytes", maximumBytes);
+        result.put("requests", stats.requestCount());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("loadFailures", stats.loadExceptionCount());
+        result.put("averageLoadMillis", TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty()));
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    @Scheduled(fixedRateString = "${docutools.avatars.cache.statsLogRate:900000}")
+    public void logStats() {
+        log.info("Avatar thumbnail cache: {}", stats());
+    }
+
+    private static List<Object> key(UUID id, int width) {
+        return Arrays.asList(id, width);
+    }
+
+    private static final class Entry {
+        private final Optional<Thumbnail> thumbnail;
+        private final long loadedAt;
+
+        private Entry(Optional<Thumbnail> thumbnail, long loadedAt) {
+            this.thumbnail = thumbnail;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * A JPEG thumbnail and its MD5 checksum, which is also its ETag.
+     */
+    public static final class Thumbnail {
+        private final byte[] data;
+        private final String checksum;
+        private final boolean fallback;
+
+        Thumbnail(byte[] data) {
+            this(data, DigestUtils.md5DigestAsHex(data), false);
+        }
+
+        private Thumbnail(byte[] data, String checksum, boolean fallback) {
+            this.data = data;
+            this.checksum = checksum;
+            this.fallback = fallback;
+        }
+
+        /**
+         * The same image served in place of a rendition that is not generated yet, it is not cached.
+         */
+        Thumbnail asFallback() {
+            return fallback ? this : new Thumbnail(data, checksum, true);
+        }
+
+        boolean isFallback() {
+            return fallback;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+}
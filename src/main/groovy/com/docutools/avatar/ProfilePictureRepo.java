@@ -0,0 +1,13 @@
+package com.docutools.avatar;
+
+import com.docutools.users.values.ProfilePicture;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+/**
+ * Legacy avatars stored as blobs in the database, keyed by the owner's id. They are moved to the
+ * {@link com.docutools.storage.StorageEngine} when accessed, see {@link AvatarService}.
+ */
+public interface ProfilePictureRepo extends JpaRepository<ProfilePicture, UUID> {
+}
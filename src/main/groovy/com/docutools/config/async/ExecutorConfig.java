@@ -0,0 +1,63 @@
+package com.docutools.config.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bounded executors for background work of the services, so it does not run on the common fork join pool. Pools and
+ * queues are configured with {@code docutools.executors.*}.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Sends the invitation emails and notifications of bulk team changes, see
+     * {@link com.docutools.team.InvitationDispatcher}. When the queue is full the committing thread sends its batch
+     * itself.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor invitationExecutor(@Value("${docutools.executors.invitations.threads:2}") int threads,
+                                                     @Value("${docutools.executors.invitations.queueSize:1000}") int queueSize) {
+        return newExecutor("invitations-", threads, queueSize, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Loads the avatar thumbnails of vCard exports from the storage engine, see
+     * {@link com.docutools.contacts.ProjectContactService#writeProjectVCards}. Bounded to not exhaust the connection
+     * pool of the storage engine, when the queue is full the exporting thread loads the thumbnail itself.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor avatarFetchExecutor(@Value("${docutools.executors.avatars.threads:8}") int threads,
+                                                      @Value("${docutools.executors.avatars.queueSize:1000}") int queueSize) {
+        return newExecutor("vcard-avatars-", threads, queueSize, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Generates the smaller avatar renditions in the background, see {@link com.docutools.avatar.AvatarService}. When
+     * the queue is full the task is rejected and dropped, the rendition is requested again by the next miss.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor avatarRenditionExecutor(@Value("${docutools.executors.renditions.threads:2}") int threads,
+                                                          @Value("${docutools.executors.renditions.queueSize:500}") int queueSize) {
+        return newExecutor("avatar-renditions-", threads, queueSize, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadPoolTaskExecutor newExecutor(String threadNamePrefix, int threads, int queueSize,
+                                                      RejectedExecutionHandler rejectedExecutionHandler) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        executor.setDaemon(true);
+        executor.setRejectedExecutionHandler(rejectedExecutionHandler);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
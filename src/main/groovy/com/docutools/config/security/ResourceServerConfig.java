@@ -37,6 +37,8 @@ public class ResourceServerConfig extends ResourceServerConfigurerAdapter {
                 .antMatchers(HttpMethod.POST, "/api/v2/me/email/verify").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/v2/users/unsubscribe").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/internal/v2/**").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/internal/v2/checkPrivileges").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/internal/v2/projects/*/invalidate").permitAll()
                 // Legacy
                 .antMatchers(HttpMethod.POST, "/api/v2/users/email").permitAll()
                 .antMatchers(HttpMethod.POST, "/api/v2/me/verify").permitAll()
@@ -41,6 +41,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.OPTIONS, "/oauth/**").permitAll()
                 .antMatchers(HttpMethod.GET, "/saml/**").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/internal/v2/**").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/internal/v2/checkPrivileges").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/internal/v2/projects/*/invalidate").permitAll()
                 .antMatchers("/**").authenticated()
                 .and()
                 .httpBasic();
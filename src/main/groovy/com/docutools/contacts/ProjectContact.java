@@ -300,16 +300,33 @@ public class ProjectContact {
     }
 
     public ProjectContact withPermissions(PermissionManager manager) {
+        return withPermissions(permissionsIn(projectId, manager));
+    }
+
+    /**
+     * Sets permissions computed once with {@link #permissionsIn(UUID, PermissionManager)} for many contacts of the
+     * same project.
+     */
+    public ProjectContact withPermissions(List<Permission> permissions) {
+        this.permissions = permissions;
+        return this;
+    }
+
+    /**
+     * The current user's permissions on the contacts of a project, none without ViewTeam or ManageTeam.
+     */
+    public static List<Permission> permissionsIn(UUID projectId, PermissionManager manager) {
         PrivilegeCheckDTO check = manager.checkPrivilege(projectId, Arrays.asList(Privilege.ViewTeam, Privilege.ManageTeam), true);
-        if(!check.isCheck())
-            permissions = Collections.emptyList();
-        permissions = new ArrayList<>(2);
+        if(!check.isCheck()) {
+            return Collections.emptyList();
+        }
+        List<Permission> permissions = new ArrayList<>(3);
         permissions.add(Permission.View);
         if(check.getPrivileges().contains(Privilege.ManageTeam)) {
             permissions.add(Permission.Edit);
             permissions.add(Permission.Delete);
         }
-        return this;
+        return permissions;
     }
 
     @JsonIgnore
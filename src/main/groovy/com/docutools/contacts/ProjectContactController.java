@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -29,6 +31,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @RestController
@@ -111,11 +114,18 @@ public class ProjectContactController {
 
     @ApiOperation(value = "Download Contacts as CSV")
     @GetMapping(value = "/{projectId}/csv", produces = "text/csv")
-    public String downloadProjectContactsCSV(@PathVariable UUID projectId, HttpServletResponse response) {
+    public void downloadProjectContactsCSV(@PathVariable UUID projectId,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false, defaultValue = "") String acceptEncoding,
+                                           HttpServletResponse response) {
         log.info("GET /api/v2/contacts/{}/csv", projectId);
-        response.setHeader("Content-disposition", "attachment;filename=contacts.csv");
-        response.setContentType("text/csv");
-        return contactManager.exportProjectContacts(projectId);
+        contactManager.writeProjectContactsCsv(projectId, acceptsGzip(acceptEncoding), response);
+    }
+
+    @ApiOperation(value = "Download the Team and Contacts of a Project as VCards")
+    @GetMapping(value = "/{projectId}/vcf", produces = "text/vcard")
+    public void downloadProjectVCards(@PathVariable UUID projectId, HttpServletResponse response) {
+        log.info("GET /api/v2/contacts/{}/vcf", projectId);
+        contactManager.writeProjectVCards(projectId, response);
     }
 
     @ApiOperation(value = "Upload Import Contact File")
@@ -139,5 +149,50 @@ public class ProjectContactController {
         return contactManager.importContacts(projectContactImport);
     }
 
+    @ApiOperation(value = "Import Contact File into Project", notes = "Returns only the number of imported contacts, for large files.")
+    @PostMapping(value = "/import/summary", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ProjectContactImportResult importProjectContactsSummary(@RequestBody ProjectContactImport projectContactImport) {
+        log.info("POST /api/v2/contacts/import/summary body {}", projectContactImport);
+        return contactManager.importContacts(projectContactImport, contact -> {});
+    }
+
+    @ApiOperation(value = "Progress of a running Contact Import")
+    @GetMapping("/import/{fileId}/progress")
+    public ProjectContactImportResult getImportProgress(@PathVariable UUID fileId) {
+        log.debug("GET /api/v2/contacts/import/{}/progress", fileId);
+        return contactManager.getImportProgress(fileId);
+    }
 
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip, either by name or by {@code *}, with a q value above 0.
+     * An explicit gzip entry wins over {@code *}.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        Double gzip = null;
+        Double any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (coding.equals("*")) {
+                any = any == null ? q : Math.max(any, q);
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
 }
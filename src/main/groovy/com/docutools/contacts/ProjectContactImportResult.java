@@ -0,0 +1,72 @@
+package com.docutools.contacts;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.UUID;
+
+/**
+ * Progress and outcome of a {@link ProjectContactImport}. Updated by the importing thread after every written batch,
+ * so it can be polled while the import is running.
+ */
+@ApiModel(description = "Progress and outcome of a project contact import.")
+public class ProjectContactImportResult {
+
+    private final UUID fileId;
+    private final UUID projectId;
+    private volatile int rows;
+    private volatile int imported;
+    private volatile boolean done;
+
+    public ProjectContactImportResult(UUID fileId, UUID projectId) {
+        this.fileId = fileId;
+        this.projectId = projectId;
+    }
+
+    void progress(int rows, int imported) {
+        this.rows = rows;
+        this.imported = imported;
+    }
+
+    void done() {
+        this.done = true;
+    }
+
+    public UUID getFileId() {
+        return fileId;
+    }
+
+    public UUID getProjectId() {
+        return projectId;
+    }
+
+    @ApiModelProperty("Data rows read from the file so far.")
+    public int getRows() {
+        return rows;
+    }
+
+    @ApiModelProperty("Contacts written so far.")
+    public int getImported() {
+        return imported;
+    }
+
+    @ApiModelProperty("Rows without an email, company or name, which are not imported.")
+    public int getSkipped() {
+        return rows - imported;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectContactImportResult{" +
+                "fileId=" + fileId +
+                ", projectId=" + projectId +
+                ", rows=" + rows +
+                ", imported=" + imported +
+                ", done=" + done +
+                '}';
+    }
+}
@@ -2,33 +2,95 @@ package com.docutools.contacts;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface ProjectContactRepository extends JpaRepository<ProjectContact, UUID> {
 
-    @Query(nativeQuery = true, value = "SELECT * FROM project_contacts pc WHERE pc.project_id = :projectId AND pc.replaced IS FALSE AND " +
-            "CONCAT(pc.email, ' ', pc.company_name, ' ', pc.first_name, ' ', pc.last_name, ' ', " +
-            "pc.phone, ' ', pc.fax, ' ', pc.job_title, ' ', pc.department, ' ', pc.internal_id, ' '" +
-            ", pc.street, ' ', pc.city, ' ', pc.country_code) ILIKE ('%' || :search || '%')")
-    Stream<ProjectContact> searchInProject(@Param("projectId") UUID projectId, @Param("search") String search);
-
-    @Query(nativeQuery = true,
-            value = "SELECT * FROM project_contacts pc WHERE pc.project_id = :projectId AND pc.replaced IS FALSE AND " +
-                    "CONCAT(pc.email, ' ', pc.company_name, ' ', pc.first_name, ' ', pc.last_name, ' ', " +
-                    "pc.phone, ' ', pc.fax, ' ', pc.job_title, ' ', pc.department, ' ', pc.internal_id, ' '" +
-                    ", pc.street, ' ', pc.city, ' ', pc.country_code) ILIKE ('%' || :search || '%')",
-            countQuery = "SELECT count(*) FROM project_contacts pc WHERE pc.project_id = :projectId AND pc.replaced IS FALSE AND " +
-                    "CONCAT(pc.email, ' ', pc.company_name, ' ', pc.first_name, ' ', pc.last_name, ' ', " +
-                    "pc.phone, ' ', pc.fax, ' ', pc.job_title, ' ', pc.department, ' ', pc.internal_id, ' '" +
-                    ", pc.street, ' ', pc.city, ' ', pc.country_code) ILIKE ('%' || :search || '%')")
-    Stream<ProjectContact> searchInProject(@Param("projectId") UUID projectId, @Param("search") String search, Pageable pageable);
+    int EXPORT_FETCH_SIZE = 1000;
+
+    // Lower case search text of a contact, must match the index expression of V56 exactly
+    String SEARCH_TEXT = "lower(coalesce(pc.email, '') || ' ' || coalesce(pc.company_name, '') || ' ' || " +
+            "coalesce(pc.first_name, '') || ' ' || coalesce(pc.last_name, '') || ' ' || coalesce(pc.phone, '') || ' ' || " +
+            "coalesce(pc.fax, '') || ' ' || coalesce(pc.job_title, '') || ' ' || coalesce(pc.department, '') || ' ' || " +
+            "coalesce(pc.internal_id, '') || ' ' || coalesce(pc.street, '') || ' ' || coalesce(pc.city, '') || ' ' || " +
+            "coalesce(pc.country_code, ''))";
+
+    String SEARCH_CONDITION = "pc.project_id = :projectId AND pc.replaced IS FALSE AND " +
+            "(" + SEARCH_TEXT + " LIKE :pattern OR :searchText <% " + SEARCH_TEXT + ")";
+
+    /**
+     * Searches the current contacts of a project by substring or trigram word similarity, best matches first. Backed
+     * by the pg_trgm index of V56.
+     *
+     * @param searchText the lower case search text
+     * @param pattern the lower case search text as LIKE pattern, i.e. escaped and wrapped in %
+     */
+    @Query(nativeQuery = true, value = "SELECT * FROM project_contacts pc WHERE " + SEARCH_CONDITION +
+            " ORDER BY word_similarity(:searchText, " + SEARCH_TEXT + ") DESC, pc.id")
+    Stream<ProjectContact> searchInProject(@Param("projectId") UUID projectId,
+                                           @Param("searchText") String searchText,
+                                           @Param("pattern") String pattern);
+
+    @Query(nativeQuery = true, value = "SELECT * FROM project_contacts pc WHERE " + SEARCH_CONDITION +
+            " ORDER BY word_similarity(:searchText, " + SEARCH_TEXT + ") DESC, pc.id")
+    Stream<ProjectContact> searchInProject(@Param("projectId") UUID projectId,
+                                           @Param("searchText") String searchText,
+                                           @Param("pattern") String pattern,
+                                           Pageable pageable);
+
+    Stream<ProjectContact> findByProjectIdAndReplacedFalse(UUID projectId, Pageable pageable);
 
     Stream<ProjectContact> findByProjectId(UUID projectId);
 
+    /**
+     * The current contacts of a project for exports, read through a forward only cursor of
+     * {@value #EXPORT_FETCH_SIZE} rows. Must be consumed within a transaction.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT pc FROM ProjectContact pc WHERE pc.projectId = :projectId AND pc.replaced = false")
+    Stream<ProjectContact> streamForExport(@Param("projectId") UUID projectId);
+
+    List<ProjectContact> findByProjectIdAndLastModifiedAfter(UUID projectId, ZonedDateTime since);
+
+    // Set based copies of contacts, replaced contacts are never copied
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO project_contacts (id, project_id, created, last_modified, email, company_name, first_name, " +
+            "last_name, phone, fax, job_title, department, internal_id, street, zip, city, country_code) " +
+            "SELECT gen_random_uuid(), :to, now(), now(), pc.email, pc.company_name, pc.first_name, pc.last_name, " +
+            "pc.phone, pc.fax, pc.job_title, pc.department, pc.internal_id, pc.street, pc.zip, pc.city, pc.country_code " +
+            "FROM project_contacts pc WHERE pc.project_id = :from AND pc.replaced IS FALSE")
+    int copyContacts(@Param("from") UUID from, @Param("to") UUID to);
+
+    // excludedIds is an array literal, see SqlArrays.uuidArray
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO project_contacts (id, project_id, created, last_modified, email, company_name, first_name, " +
+            "last_name, phone, fax, job_title, department, internal_id, street, zip, city, country_code) " +
+            "SELECT gen_random_uuid(), :to, now(), now(), pc.email, pc.company_name, pc.first_name, pc.last_name, " +
+            "pc.phone, pc.fax, pc.job_title, pc.department, pc.internal_id, pc.street, pc.zip, pc.city, pc.country_code " +
+            "FROM project_contacts pc WHERE pc.project_id = :from AND pc.replaced IS FALSE AND pc.id <> ALL(CAST(:excludedIds AS uuid[]))")
+    int copyContactsExcept(@Param("from") UUID from, @Param("to") UUID to, @Param("excludedIds") String excludedIds);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO project_contacts (id, project_id, created, last_modified, email, company_name, first_name, " +
+            "last_name, phone, fax, job_title, department, internal_id, street, zip, city, country_code) " +
+            "SELECT gen_random_uuid(), :to, now(), now(), pc.email, pc.company_name, pc.first_name, pc.last_name, " +
+            "pc.phone, pc.fax, pc.job_title, pc.department, pc.internal_id, pc.street, pc.zip, pc.city, pc.country_code " +
+            "FROM project_contacts pc WHERE pc.project_id = :from AND pc.replaced IS FALSE AND pc.id IN :ids")
+    int copyContactsById(@Param("from") UUID from, @Param("to") UUID to, @Param("ids") Collection<UUID> ids);
+
 }
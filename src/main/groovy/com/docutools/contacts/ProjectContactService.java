@@ -1,5 +1,6 @@
 package com.docutools.contacts;
 
+import com.docutools.avatar.AvatarService;
 import com.docutools.users.messages.LanguagesLoader;
 import com.docutools.exceptions.ErrorCodes;
 import com.docutools.exceptions.ExceptionHelper;
@@ -10,23 +11,35 @@ import com.docutools.service.encoding.client.FileReference;
 import com.docutools.storage.FileType;
 import com.docutools.storage.StorageAccessKey;
 import com.docutools.storage.StorageEngine;
+import com.docutools.team.MembershipState;
+import com.docutools.team.TeamMembership;
+import com.docutools.team.TeamMembershipRepo;
 import com.docutools.users.ImportedFileDTO;
 import com.docutools.users.SessionManager;
 import com.docutools.users.UserManager;
 import com.docutools.users.values.CsvHeaderColumn;
 import com.docutools.utils.FileUtils;
+import com.docutools.utils.SqlArrays;
+import com.docutools.vcard.vCardData;
 import com.docutools.vcard.vCardGenerator;
+import com.google.common.collect.Lists;
 import ezvcard.VCardVersion;
+import ezvcard.io.text.VCardWriter;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.core.env.Environment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -34,12 +47,22 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.docutools.exceptions.ExceptionHelper.*;
 
@@ -48,6 +71,12 @@ import static com.docutools.exceptions.ExceptionHelper.*;
 public class ProjectContactService {
 
     private static final Logger log = LoggerFactory.getLogger(ProjectContactService.class);
+    // keeps the IN lists of set based copies well below the bind parameter limit
+    private static final int QUERY_BATCH_SIZE = 1000;
+    // same as hibernate.jdbc.batch_size
+    private static final int IMPORT_BATCH_SIZE = 100;
+    private static final int EXPORT_BUFFER_SIZE = 8192;
+    private static final int VCARD_WINDOW_SIZE = 64;
 
     @Autowired
     private ProjectContactRepository contactRepository;
@@ -67,6 +96,19 @@ public class ProjectContactService {
     private Environment environment;
     @Autowired
     private LanguagesLoader languagesLoader;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TeamMembershipRepo teamRepo;
+    @Autowired
+    private AvatarService avatarService;
+    @Autowired
+    @Qualifier("avatarFetchExecutor")
+    private TaskExecutor avatarFetchExecutor;
+
+    // imports running on this instance, progress requests must reach the instance that runs the import
+    private final ConcurrentMap<UUID, ProjectContactImportResult> runningImports = new ConcurrentHashMap<>();
 
     public ProjectContact create(ProjectContact contact) {
         Assert.notNull(contact, "contact is required - must not be NULL!");
@@ -92,20 +134,16 @@ public class ProjectContactService {
         if (!permissionManager.hasPrivileges(from, Privilege.ViewTeam)) {
             throw ExceptionHelper.newUnprivilegedError("ViewTeam");
         }
+        int copied;
         if (allContacts) {
-            contactRepository.findByProjectId(from)
-                    .filter(projectContact -> contactsList == null || contactsList.isEmpty() || !contactsList.contains(projectContact.getId()))
-                    .filter(c -> !c.isReplaced())
-                    .map(original -> new ProjectContact(to, original))
-                    .forEach(contactRepository::save);
+            copied = CollectionUtils.isEmpty(contactsList) ? contactRepository.copyContacts(from, to)
+                    : contactRepository.copyContactsExcept(from, to, SqlArrays.uuidArray(contactsList));
         } else {
-            if (contactsList != null && !contactsList.isEmpty()) {
-                contactRepository.findAllById(contactsList).stream()
-                        .filter(projectContact -> !projectContact.isReplaced())
-                        .map(original -> new ProjectContact(to, original))
-                        .forEach(contactRepository::save);
-            }
+            copied = CollectionUtils.isEmpty(contactsList) ? 0 : Lists.partition(contactsList, QUERY_BATCH_SIZE).stream()
+                    .mapToInt(ids -> contactRepository.copyContactsById(from, to, ids))
+                    .sum();
         }
+        log.debug("Copied {} contacts from Project <{}> to Project <{}>.", copied, from, to);
     }
 
     @Transactional(readOnly = true)
@@ -162,7 +200,10 @@ public class ProjectContactService {
     @Transactional(readOnly = true)
     public List<ProjectContact> list(UUID projectId, String search) {
         Assert.notNull(projectId, "projectId is required - must not be NULL!");
-        return contactRepository.searchInProject(projectId, search)
+        Stream<ProjectContact> contacts = StringUtils.isEmpty(search)
+                ? contactRepository.findByProjectIdAndReplacedFalse(projectId, Pageable.unpaged())
+                : contactRepository.searchInProject(projectId, normalize(search), likePattern(search));
+        return contacts
             .map(contact -> contact.withPermissions(permissionManager))
             .filter(ProjectContact::canView)
             .collect(Collectors.toList());
@@ -171,13 +212,24 @@ public class ProjectContactService {
     @Transactional(readOnly = true)
     public Page<ProjectContact> list(UUID projectId, String search, int page, int size) {
         Assert.notNull(projectId, "projectId is required - must not be NULL!");
-        List<ProjectContact> projectContacts = contactRepository.searchInProject(projectId, search, PageRequest.of(page, size))
+        Stream<ProjectContact> contacts = StringUtils.isEmpty(search)
+                ? contactRepository.findByProjectIdAndReplacedFalse(projectId, PageRequest.of(page, size, Sort.by("id")))
+                : contactRepository.searchInProject(projectId, normalize(search), likePattern(search), PageRequest.of(page, size));
+        List<ProjectContact> projectContacts = contacts
                 .map(contact -> contact.withPermissions(permissionManager))
                 .filter(ProjectContact::canView)
                 .collect(Collectors.toList());
         return new PageImpl<>(projectContacts);
     }
 
+    private static String normalize(String search) {
+        return search.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String likePattern(String search) {
+        return '%' + normalize(search).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + '%';
+    }
+
     public String exportVCard(UUID contactId) {
         Assert.notNull(contactId, "contactId is required - must not be NULL!");
 
@@ -192,14 +244,105 @@ public class ProjectContactService {
         return vCardGenerator.generateVCard(VCardVersion.V3_0, contact);
     }
 
-    public String exportProjectContacts(UUID projectId) {
-        List<String> contacts = contactRepository.findByProjectId(projectId)
-                .map(contact -> contact.withPermissions(permissionManager))
-                .filter(ProjectContact::canView)
-                .filter(projectContact -> !projectContact.isReplaced())
-                .map(ProjectContact::toCommaSeparated).collect(Collectors.toList());
+    /**
+     * Writes the current contacts of a project as CSV to the response, row by row from a database cursor. Contacts are
+     * detached once written, so memory use does not depend on the number of contacts.
+     *
+     * @param gzip whether to compress the response, sets the {@code Content-Encoding}. {@code Vary: Accept-Encoding} is
+     *             always set
+     */
+    @Transactional(readOnly = true)
+    public void writeProjectContactsCsv(UUID projectId, boolean gzip, HttpServletResponse response) {
+        Assert.notNull(projectId, "projectId is required - must not be NULL!");
+        if (!permissionManager.hasPrivileges(projectId, Privilege.ViewTeam)) {
+            throw newForbiddenError("You are not allowed to view or export the contacts of this project!");
+        }
+        String header = getLocalisedCsvHeader(sessionManager.getCurrentUser().getSettings().getLanguage());
+
+        response.setHeader("Content-disposition", "attachment;filename=contacts.csv");
+        response.setContentType("text/csv;charset=UTF-8");
+        // the body depends on Accept-Encoding, shared caches must not serve it to clients asking for another encoding
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        try (OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE, true) : response.getOutputStream();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+             Stream<ProjectContact> contacts = contactRepository.streamForExport(projectId)) {
+            writer.write(header);
+            // the header goes out before the first rows are fetched
+            writer.flush();
+            Iterator<ProjectContact> iterator = contacts.iterator();
+            while (iterator.hasNext()) {
+                ProjectContact contact = iterator.next();
+                writer.write('\n');
+                writer.write(contact.toCommaSeparated());
+                entityManager.detach(contact);
+            }
+        } catch (IOException e) {
+            throw newInternalServerError("Writing project contact csv : ", e);
+        }
+    }
+
+    /**
+     * Writes the active members and current contacts of a project as one vCard file to the response. Cards are written
+     * in windows of {@value #VCARD_WINDOW_SIZE}, whose avatar thumbnails are fetched in parallel on the
+     * {@code avatarFetchExecutor}.
+     */
+    @Transactional(readOnly = true)
+    public void writeProjectVCards(UUID projectId, HttpServletResponse response) {
+        Assert.notNull(projectId, "projectId is required - must not be NULL!");
+        if (!permissionManager.hasPrivileges(projectId, Privilege.ViewTeam)) {
+            throw newForbiddenError("You are not allowed to view or export the team of this project!");
+        }
+        List<TeamMembership> members = teamRepo.findTeamByState(projectId, Collections.singletonList(MembershipState.Active));
+
+        response.setHeader("Content-disposition", "attachment;filename=contacts.vcf");
+        response.setContentType("text/vcard;charset=UTF-8");
+        List<UUID> ids = new ArrayList<>(VCARD_WINDOW_SIZE);
+        List<vCardData> cards = new ArrayList<>(VCARD_WINDOW_SIZE);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+             VCardWriter vCardWriter = new VCardWriter(writer, VCardVersion.V3_0);
+             Stream<ProjectContact> contacts = contactRepository.streamForExport(projectId)) {
+            for (TeamMembership member : members) {
+                ids.add(member.getUser().getId());
+                cards.add(new vCardData(member.getUser()));
+                if (ids.size() == VCARD_WINDOW_SIZE) {
+                    writeVCards(ids, cards, vCardWriter);
+                }
+            }
+            Iterator<ProjectContact> iterator = contacts.iterator();
+            while (iterator.hasNext()) {
+                ProjectContact contact = iterator.next();
+                ids.add(contact.getId());
+                cards.add(new vCardData(contact));
+                entityManager.detach(contact);
+                if (ids.size() == VCARD_WINDOW_SIZE) {
+                    writeVCards(ids, cards, vCardWriter);
+                }
+            }
+            writeVCards(ids, cards, vCardWriter);
+        } catch (IOException e) {
+            throw newInternalServerError("Writing project vCards : ", e);
+        }
+    }
 
-        return getLocalisedCsvHeader(sessionManager.getCurrentUser().getSettings().getLanguage()) + "\n" + String.join("\n", contacts);
+    private void writeVCards(List<UUID> ids, List<vCardData> cards, VCardWriter writer) throws IOException {
+        List<CompletableFuture<Optional<byte[]>>> thumbnails = ids.stream()
+                .map(id -> CompletableFuture.supplyAsync(() -> avatarService.getThumbnailData(id), avatarFetchExecutor)
+                        .exceptionally(e -> {
+                            log.warn(String.format("Could not load the avatar thumbnail of <%s>, exporting the vCard without.", id), e);
+                            return Optional.empty();
+                        }))
+                .collect(Collectors.toList());
+        for (int i = 0; i < cards.size(); i++) {
+            vCardData card = cards.get(i);
+            thumbnails.get(i).join().ifPresent(card::withPhoto);
+            writer.write(vCardGenerator.toVCard(VCardVersion.V3_0, card));
+        }
+        writer.flush();
+        ids.clear();
+        cards.clear();
     }
 
     public String getLocalisedCsvHeader(String lang) {
@@ -215,10 +358,25 @@ public class ProjectContactService {
     }
 
     public List<ProjectContact> importContacts(ProjectContactImport projectContactImport) {
+        List<ProjectContact> projectContacts = new ArrayList<>();
+        importContacts(projectContactImport, projectContacts::add);
+        return projectContacts;
+    }
+
+    /**
+     * Imports the contacts of an uploaded CSV file in one pass over the stored file. Contacts are written in JDBC
+     * batches of {@value #IMPORT_BATCH_SIZE} and detached from the persistence context after every batch, so memory
+     * use does not grow with the size of the file. The import runs in one transaction: a failing row rolls back all
+     * contacts of the file.
+     *
+     * @param imported receives every written contact with its permissions, before it is detached
+     */
+    public ProjectContactImportResult importContacts(ProjectContactImport projectContactImport, Consumer<ProjectContact> imported) {
         Assert.notNull(projectContactImport, "Project contact import body- must not be NULL!");
         Map<String, Columns> columnsMap = projectContactImport.getColumnsMap();
         Assert.notEmpty(projectContactImport.getColumnsMap(), "Column mapping is required for contact import - must not be NULL or Empty!");
-        if (!permissionManager.hasPrivileges(projectContactImport.getProjectId(), Privilege.ManageTeam)) {
+        UUID projectId = projectContactImport.getProjectId();
+        if (!permissionManager.hasPrivileges(projectId, Privilege.ManageTeam)) {
             throw ExceptionHelper.newForbiddenError( "ManageTeam");
         }
         StorageAccessKey key = new StorageAccessKey(FileType.Temporary, projectContactImport.getFileId().toString());
@@ -232,50 +390,105 @@ public class ProjectContactService {
             columnsMap.containsValue(Columns.FirstName) || columnsMap.containsValue(Columns.LastName) || columnsMap.containsValue(Columns.Name))) {
             throw ExceptionHelper.newMissingRequiredValueError("Email or Company Name or User Name or First Name or Last Name");
         }
-        List<ProjectContact> newContacts = new ArrayList<>();
-
-        // Load CSV File
-        Path path = null;
-        try {
-            path = Files.createTempFile(UUID.randomUUID().toString(), "");
-            storageEngine.copyTo(key, path);
-
-            try (Reader reader = new InputStreamReader(new FileInputStream(path.toFile()), projectContactImport.getFileEncoding())) {
-
-                Set<String> csvHeaders = this.getCsvHeaders(path, projectContactImport.getDelimiter(),
-                    projectContactImport.getFileEncoding());
-
-                CSVFormat csvFormat = CSVFormat.newFormat(projectContactImport.getDelimiter());
-                CSVParser parser = new CSVParser(reader, csvFormat.withQuote('"').withSkipHeaderRecord()
-                        .withHeader(csvHeaders.toArray(new String[]{})));
-
-                Iterator<CSVRecord> iterator = parser.iterator();
-
-                iterator.forEachRemaining(record ->
-                        fetchContactFromCsvRecord(projectContactImport.getProjectId(), columnsMap, columns, record)
-                                .ifPresent(newContacts::add));
 
-                List<ProjectContact> projectContacts = contactRepository.saveAll(newContacts);
-                // Delete CSV File on Success
+        // the same for every contact of the project
+        List<ProjectContact.Permission> permissions = ProjectContact.permissionsIn(projectId, permissionManager);
+        ProjectContactImportResult result = new ProjectContactImportResult(projectContactImport.getFileId(), projectId);
+        if (runningImports.putIfAbsent(projectContactImport.getFileId(), result) != null) {
+            throw ExceptionHelper.newConflictError("Import of file " + projectContactImport.getFileId() + " is already running.");
+        }
+        try (Reader reader = new InputStreamReader(storageEngine.openStreamTo(key), projectContactImport.getFileEncoding());
+             CSVParser parser = new CSVParser(reader, CSVFormat.newFormat(projectContactImport.getDelimiter()).withQuote('"'))) {
+            Iterator<CSVRecord> iterator = parser.iterator();
+            if (!iterator.hasNext()) {
+                result.done();
                 storageEngine.delete(key);
-
-                return projectContacts.stream()
-                        .map(contact -> contact.withPermissions(permissionManager))
-                        .collect(Collectors.toList());
+                return result;
             }
+            Map<String, Integer> headers = headerIndex(iterator.next());
+
+            List<ProjectContact> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            int rows = 0;
+            int written = 0;
+            while (iterator.hasNext()) {
+                rows++;
+                Optional<ProjectContact> contact = fetchContactFromCsvRecord(projectId, columnsMap, columns, headers, iterator.next());
+                if (contact.isPresent()) {
+                    entityManager.persist(contact.get());
+                    batch.add(contact.get());
+                }
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    written += writeBatch(batch, permissions, imported);
+                    result.progress(rows, written);
+                    if (written % (IMPORT_BATCH_SIZE * 100) == 0) {
+                        log.debug("Imported {} contacts of {} rows from file <{}> into Project <{}>.", written, rows, key.getKey(), projectId);
+                    }
+                }
+            }
+            written += writeBatch(batch, permissions, imported);
+            result.progress(rows, written);
+            result.done();
+            log.debug("Imported {} contacts of {} rows from file <{}> into Project <{}>.", written, rows, key.getKey(), projectId);
+
+            // Delete CSV File on Success
+            storageEngine.delete(key);
+            return result;
         } catch (IOException e) {
             throw newInternalServerError("Reading project contact csv : ", e);
         } finally {
-            FileUtils.deleteTempFile(path);
+            runningImports.remove(projectContactImport.getFileId());
+        }
+    }
+
+    /**
+     * The progress of a running import of the given file. Progress is only kept by the instance running the import,
+     * other instances answer with not found.
+     */
+    @Transactional(readOnly = true)
+    public ProjectContactImportResult getImportProgress(UUID fileId) {
+        Assert.notNull(fileId, "fileId is required - must not be NULL!");
+        ProjectContactImportResult result = runningImports.get(fileId);
+        if (result == null) {
+            throw newResourceNotFoundError("Contact import", fileId);
+        }
+        if (!permissionManager.hasPrivileges(result.getProjectId(), Privilege.ManageTeam)) {
+            throw ExceptionHelper.newForbiddenError("ManageTeam");
+        }
+        return result;
+    }
+
+    private int writeBatch(List<ProjectContact> batch, List<ProjectContact.Permission> permissions, Consumer<ProjectContact> imported) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        entityManager.flush();
+        batch.forEach(contact -> imported.accept(contact.withPermissions(permissions)));
+        // only the batch, entities the caller loaded before the import stay managed
+        batch.forEach(entityManager::detach);
+        batch.clear();
+        return size;
+    }
+
+    // first occurrence wins, like the header lookup of CSVRecord
+    private static Map<String, Integer> headerIndex(CSVRecord header) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            index.putIfAbsent(header.get(i), i);
         }
+        return index;
     }
 
-    private Optional<ProjectContact> fetchContactFromCsvRecord(UUID projectId, Map<String, Columns> columnsMap, List<String> columns, CSVRecord record) {
+    private Optional<ProjectContact> fetchContactFromCsvRecord(UUID projectId, Map<String, Columns> columnsMap, List<String> columns,
+                                                               Map<String, Integer> headers, CSVRecord record) {
         ProjectContact contact = new ProjectContact();
         contact.setProjectId(projectId);
 
         columns.forEach(columnHeader -> {
-            String value = record.get(columnHeader);
+            Integer index = headers.get(columnHeader);
+            if (index == null || index >= record.size())
+                return;
+            String value = record.get(index);
             if (value == null)
                 return;
             value = value.trim();
@@ -417,18 +630,4 @@ public class ProjectContactService {
             throw newInternalServerError("Reading project contact csv : ", e);
         }
     }
-
-    private Set<String> getCsvHeaders(Path filePath, char delimiter, String fileEncoding) {
-        try (Reader reader = new InputStreamReader(new FileInputStream(filePath.toFile()), fileEncoding)) {
-            CSVFormat csvFormat = CSVFormat.newFormat(delimiter);
-            try (CSVParser parse = CSVParser.parse(reader, csvFormat.withQuote('"'))) {
-                CSVRecord next = parse.iterator().next();
-                Set<String> parsedColumns = new LinkedHashSet<>();
-                next.iterator().forEachRemaining(parsedColumns::add);
-                return parsedColumns;
-            }
-        } catch (IOException e) {
-            throw newInternalServerError("Parsing Headers", e);
-        }
-    }
 }
@@ -5,8 +5,8 @@ import com.docutools.chargebee.ChargebeeService;
 import com.docutools.exceptions.ErrorCodes;
 import com.docutools.exceptions.ExceptionHelper;
 import com.docutools.oauth2.ClientCredentialsService;
-import com.docutools.services.internal.InternalApiClient;
-import com.docutools.services.projects.resources.Project;
+import com.docutools.projects.ProjectMetadata;
+import com.docutools.projects.ProjectMetadataCache;
 import com.docutools.subscriptions.Account;
 import com.docutools.subscriptions.AccountRepository;
 import com.docutools.subscriptions.Subscription;
@@ -65,7 +65,7 @@ public class CustomerService {
     @Autowired
     private TeamMembershipRepo membershipRepo;
     @Autowired
-    private InternalApiClient internalApiClient;
+    private ProjectMetadataCache projectMetadataCache;
 
     @Value("${docutools.baseUrl}")
     private String baseUrl;
@@ -156,7 +156,7 @@ public class CustomerService {
 
         DocutoolsUser invitedBy = userRepository.getOne(customer.getOwner().getUserId()).getInvitedBy();
         if (invitedBy == null) {
-            Project project = internalApiClient.getProjectById(teamMembership.getProjectId()).get();
+            ProjectMetadata project = projectMetadataCache.get(teamMembership.getProjectId());
             boolean isInvited = teamMembership.getState().equals(MembershipState.Active) && project.isActive()
                 && !project.getOrganisationId().equals(customer.getOrganisationId());
             if (isInvited) {
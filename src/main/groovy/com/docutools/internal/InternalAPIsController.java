@@ -1,8 +1,11 @@
 package com.docutools.internal;
 
+import com.docutools.avatar.AvatarThumbnailCache;
+import com.docutools.projects.ProjectMetadataCache;
 import com.docutools.roles.PermissionManager;
 import com.docutools.roles.Privilege;
 import com.docutools.roles.PrivilegeCheckDTO;
+import com.docutools.roles.PrivilegeCheckRequestDTO;
 import com.docutools.team.TeamMembership;
 import com.docutools.team.TeamMembershipRepo;
 import com.docutools.users.UserRepo;
@@ -13,15 +16,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError;
 import static com.docutools.exceptions.ExceptionHelper.newResourceNotFoundError;
 import static com.docutools.exceptions.ExceptionHelper.newUnauthorizedError;
 
@@ -30,12 +37,18 @@ public class InternalAPIsController {
 
     private static final Logger log = LoggerFactory.getLogger(InternalAPIsController.class);
 
+    private static final int MAX_PRIVILEGE_CHECKS = 10_000;
+
     @Autowired
     private UserRepo userRepo;
     @Autowired
     private TeamMembershipRepo teamMembershipRepo;
     @Autowired
     private PermissionManager permissionManager;
+    @Autowired
+    private ProjectMetadataCache projectMetadataCache;
+    @Autowired
+    private AvatarThumbnailCache avatarThumbnailCache;
 
 
     @Value("${docutools.internal.apiKey:b7abbc58-ef02-4a1f-a85a-e47c4e25b2ce}")
@@ -84,6 +97,18 @@ public class InternalAPIsController {
         return permissionManager.checkPrivilegeInternal(userId, projectId, privileges, any);
     }
 
+    @PostMapping(path = "/api/internal/v2/checkPrivileges")
+    public List<PrivilegeCheckDTO> checkPrivileges(@RequestBody List<PrivilegeCheckRequestDTO> requests,
+                                                   @RequestHeader("X-AUTH-TOKEN") String apiKey) {
+        if (!this.apiKey.equals(apiKey)) {
+            throw newUnauthorizedError();
+        }
+        log.debug("POST /api/internal/v2/checkPrivileges with {} checks", requests.size());
+        if (requests.size() > MAX_PRIVILEGE_CHECKS) {
+            throw newInputValidationError("Cannot check more than <" + MAX_PRIVILEGE_CHECKS + "> privileges at once, not <" + requests.size() + ">!");
+        }
+        return permissionManager.checkPrivilegesInternal(requests);
+    }
 
     @GetMapping(path = "/api/internal/v2/checkMember")
     public boolean isMember(@RequestParam UUID projectId, @RequestParam UUID userId,
@@ -95,4 +120,30 @@ public class InternalAPIsController {
 
         return permissionManager.isMembershipExist(userId, projectId);
     }
+
+    @PostMapping(path = "/api/internal/v2/projects/{projectId}/invalidate")
+    public void invalidateProject(@PathVariable UUID projectId,
+                                  @RequestHeader("X-AUTH-TOKEN") String apiKey) {
+        if (!this.apiKey.equals(apiKey)) {
+            throw newUnauthorizedError();
+        }
+        log.debug("POST /api/internal/v2/projects/{}/invalidate", projectId);
+        projectMetadataCache.invalidate(projectId);
+    }
+
+    @GetMapping(path = "/api/internal/v2/projects/cache")
+    public Map<String, Object> getProjectCacheStats(@RequestHeader("X-AUTH-TOKEN") String apiKey) {
+        if (!this.apiKey.equals(apiKey)) {
+            throw newUnauthorizedError();
+        }
+        return projectMetadataCache.stats();
+    }
+
+    @GetMapping(path = "/api/internal/v2/avatars/cache")
+    public Map<String, Object> getAvatarCacheStats(@RequestHeader("X-AUTH-TOKEN") String apiKey) {
+        if (!this.apiKey.equals(apiKey)) {
+            throw newUnauthorizedError();
+        }
+        return avatarThumbnailCache.stats();
+    }
 }
@@ -0,0 +1,88 @@
+package com.docutools.outbox;
+
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * A row in the transactional outbox, written in the same transaction as the change it describes and deleted once the
+ * {@link ChangeEventRelay} published it.
+ */
+@Entity
+@Table(name = "change_events")
+public class ChangeEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "change_events_id_seq")
+    @SequenceGenerator(name = "change_events_id_seq", sequenceName = "change_events_id_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ChangeEventType type;
+    @Type(type = "pg-uuid")
+    @Column(nullable = false, name = "aggregate_id")
+    private UUID aggregateId;
+    @Type(type = "pg-uuid")
+    @Column(name = "project_id")
+    private UUID projectId;
+    @Column(nullable = false)
+    private String payload;
+    @Column(nullable = false)
+    private ZonedDateTime created = ZonedDateTime.now();
+
+    protected ChangeEvent() {
+    }
+
+    /**
+     * @param type what changed
+     * @param aggregateId id of the changed user or role, or of the target project of a
+     *                    {@link ChangeEventType#TeamCopied}; consumers see the events of one aggregate in order
+     * @param projectId the project the change applies to, {@code null} for organisation wide changes like roles
+     * @param payload JSON describing the state after the change
+     */
+    public ChangeEvent(ChangeEventType type, UUID aggregateId, UUID projectId, String payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.projectId = projectId;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public ChangeEventType getType() {
+        return type;
+    }
+
+    public UUID getAggregateId() {
+        return aggregateId;
+    }
+
+    public UUID getProjectId() {
+        return projectId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public ZonedDateTime getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{id=" + id + ", type=" + type + ", aggregateId=" + aggregateId + ", projectId=" + projectId + '}';
+    }
+}
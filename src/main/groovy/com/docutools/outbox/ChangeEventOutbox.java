@@ -0,0 +1,67 @@
+package com.docutools.outbox;
+
+import com.docutools.roles.Role;
+import com.docutools.team.TeamMembership;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Appends membership and role changes to the transactional outbox. Events are written in the caller's transaction, so
+ * they are published by the {@link ChangeEventRelay} exactly when the change itself commits.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class ChangeEventOutbox {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void membershipChanged(ChangeEventType type, TeamMembership membership) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", membership.getUser().getId());
+        payload.put("projectId", membership.getProjectId());
+        payload.put("state", membership.getState());
+        Role role = membership.getRole();
+        payload.put("roleId", role != null ? role.getId() : null);
+        payload.put("privileges", role != null ? role.getPrivileges() : null);
+        append(type, membership.getUser().getId(), membership.getProjectId(), payload);
+    }
+
+    public void teamCopied(UUID from, UUID to) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("from", from);
+        payload.put("projectId", to);
+        append(ChangeEventType.TeamCopied, to, to, payload);
+    }
+
+    public void roleChanged(ChangeEventType type, Role role) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("roleId", role.getId());
+        payload.put("organisationId", role.getOrganisation().getId());
+        payload.put("name", role.getName());
+        payload.put("roleType", role.getRoleType());
+        payload.put("active", role.isActive());
+        payload.put("privileges", role.getPrivileges());
+        append(type, role.getId(), null, payload);
+    }
+
+    private void append(ChangeEventType type, UUID aggregateId, UUID projectId, Map<String, Object> payload) {
+        try {
+            entityManager.persist(new ChangeEvent(type, aggregateId, projectId, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + type + " of " + aggregateId, e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.docutools.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the outbox to the {@link ChangeEventSink} in batches. Each batch is locked, published and deleted in one
+ * transaction, so a failed publication leaves the batch in the outbox for the next run.
+ */
+@Component
+public class ChangeEventRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeEventRelay.class);
+
+    private final ChangeEventRepo changeEventRepo;
+    private final ChangeEventSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public ChangeEventRelay(ChangeEventRepo changeEventRepo,
+                            ChangeEventSink sink,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${docutools.outbox.relay.batchSize:500}") int batchSize) {
+        this.changeEventRepo = changeEventRepo;
+        this.sink = sink;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${docutools.outbox.relay.delay:1000}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.error("Relaying change events failed, retrying with the next run.", e);
+        }
+    }
+
+    /**
+     * Publishes batches until the outbox is empty.
+     *
+     * @return the number of published events
+     */
+    public int relay() {
+        int published = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> relayBatch());
+            published += batch;
+        } while (batch == batchSize);
+        if (published > 0) {
+            log.debug("Relayed {} change events.", published);
+        }
+        return published;
+    }
+
+    private int relayBatch() {
+        List<ChangeEvent> events = changeEventRepo.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        sink.publish(events);
+        changeEventRepo.deleteByIds(events.stream().map(ChangeEvent::getId).collect(Collectors.toList()));
+        return events.size();
+    }
+}
@@ -0,0 +1,20 @@
+package com.docutools.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ChangeEventRepo extends JpaRepository<ChangeEvent, Long> {
+
+    // Rows locked by another relay instance are skipped, so instances never publish the same batch concurrently
+    @Query(nativeQuery = true, value = "SELECT * FROM change_events ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED")
+    List<ChangeEvent> lockNextBatch(@Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM ChangeEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
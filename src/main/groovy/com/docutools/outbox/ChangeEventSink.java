@@ -0,0 +1,19 @@
+package com.docutools.outbox;
+
+import java.util.List;
+
+/**
+ * Destination of the change events relayed from the outbox. Select the implementation with
+ * {@code docutools.outbox.sink}.
+ */
+public interface ChangeEventSink {
+
+    /**
+     * Publishes a batch of events in order. Delivery is at least once, a batch is published again when the relay fails
+     * to delete it afterwards.
+     *
+     * @param events the events, ordered by id
+     * @throws RuntimeException when the batch could not be published, it will be retried.
+     */
+    void publish(List<ChangeEvent> events);
+}
@@ -0,0 +1,31 @@
+package com.docutools.outbox;
+
+/**
+ * Kinds of changes published through the {@link ChangeEventOutbox}.
+ */
+public enum ChangeEventType {
+    /**
+     * A user became member of a project, the payload describes the membership.
+     */
+    MembershipAdded,
+    /**
+     * The state or role of a membership changed, the payload describes the membership.
+     */
+    MembershipUpdated,
+    /**
+     * A member was removed from a project, the payload describes the membership.
+     */
+    MembershipRemoved,
+    /**
+     * Members of one project were copied into another one, consumers should reload the target project's team.
+     */
+    TeamCopied,
+    /**
+     * A role was created, the payload describes the role.
+     */
+    RoleCreated,
+    /**
+     * The name, privileges or activation of a role changed, the payload describes the role.
+     */
+    RoleUpdated
+}
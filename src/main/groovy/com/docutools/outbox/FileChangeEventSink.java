@@ -0,0 +1,56 @@
+package com.docutools.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends published events as JSON lines to {@code docutools.outbox.file}.
+ */
+@Component
+@ConditionalOnProperty(name = "docutools.outbox.sink", havingValue = "file")
+public class FileChangeEventSink implements ChangeEventSink {
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public FileChangeEventSink(@Value("${docutools.outbox.file:change-events.jsonl}") String file, ObjectMapper objectMapper) {
+        this.file = Paths.get(file);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> events) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ChangeEvent event : events) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("id", event.getId());
+                line.put("type", event.getType());
+                line.put("aggregateId", event.getAggregateId());
+                line.put("projectId", event.getProjectId());
+                line.put("created", event.getCreated().toInstant().toString());
+                line.put("payload", objectMapper.readTree(event.getPayload()));
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append change events to " + file, e);
+        }
+    }
+}
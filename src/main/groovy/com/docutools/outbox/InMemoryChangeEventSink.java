@@ -0,0 +1,46 @@
+package com.docutools.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent published events in memory, for tests and local development.
+ */
+@Component
+@ConditionalOnProperty(name = "docutools.outbox.sink", havingValue = "memory", matchIfMissing = true)
+public class InMemoryChangeEventSink implements ChangeEventSink {
+
+    private final int capacity;
+    private final Deque<ChangeEvent> events = new ArrayDeque<>();
+
+    public InMemoryChangeEventSink(@Value("${docutools.outbox.memory.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> batch) {
+        for (ChangeEvent event : batch) {
+            if (events.size() == capacity) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    /**
+     * @return the retained events in publication order
+     */
+    public synchronized List<ChangeEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
@@ -0,0 +1,49 @@
+package com.docutools.projects;
+
+import com.docutools.services.projects.resources.Project;
+
+import java.util.UUID;
+
+/**
+ * The few, rarely changing attributes of a {@link Project} this service needs - kept by the
+ * {@link ProjectMetadataCache}.
+ */
+public final class ProjectMetadata {
+
+    private final UUID id;
+    private final UUID organisationId;
+    private final String name;
+    private final boolean active;
+
+    public ProjectMetadata(UUID id, UUID organisationId, String name, boolean active) {
+        this.id = id;
+        this.organisationId = organisationId;
+        this.name = name;
+        this.active = active;
+    }
+
+    public ProjectMetadata(Project project) {
+        this(project.getId(), project.getOrganisationId(), project.getName(), project.isActive());
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getOrganisationId() {
+        return organisationId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectMetadata (id: " + id + ", organisationId: " + organisationId + ", active: " + active + ")";
+    }
+}
@@ -0,0 +1,224 @@
+package com.docutools.projects;
+
+import com.docutools.services.internal.InternalApiClient;
+import com.docutools.services.projects.resources.Project;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.docutools.exceptions.ExceptionHelper.newResourceNotFoundError;
+
+/**
+ * Bounded cache of {@link ProjectMetadata} in front of the projects service. Organisation, name and active flag of a
+ * project hardly ever change, so they are kept for {@code docutools.projects.cache.ttlSeconds}. Projects the projects
+ * service does not know are remembered as missing for the shorter {@code docutools.projects.cache.missingTtlSeconds}.
+ *
+ * Concurrent lookups of the same project wait for a single remote call. Hits, misses and load times are recorded and
+ * logged periodically, see {@link #stats()}.
+ */
+@Service
+public class ProjectMetadataCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectMetadataCache.class);
+
+    private final InternalApiClient internalApiClient;
+    private final Ticker ticker;
+    private final long missingTtlNanos;
+    private final LoadingCache<UUID, Entry> cache;
+    private final LongAdder missingProjects = new LongAdder();
+
+    @Autowired
+    public ProjectMetadataCache(InternalApiClient internalApiClient,
+                                @Value("${docutools.projects.cache.maximumSize:10000}") long maximumSize,
+                                @Value("${docutools.projects.cache.ttlSeconds:600}") long ttlSeconds,
+                                @Value("${docutools.projects.cache.missingTtlSeconds:30}") long missingTtlSeconds) {
+        this(internalApiClient, maximumSize, ttlSeconds, missingTtlSeconds, Ticker.systemTicker());
+    }
+
+    ProjectMetadataCache(InternalApiClient internalApiClient, long maximumSize, long ttlSeconds,
+                         long missingTtlSeconds, Ticker ticker) {
+        this.internalApiClient = internalApiClient;
+        this.ticker = ticker;
+        this.missingTtlNanos = TimeUnit.SECONDS.toNanos(missingTtlSeconds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build(new CacheLoader<UUID, Entry>() {
+                    @Override
+                    public Entry load(@NotNull UUID projectId) {
+                        return new Entry(ProjectMetadataCache.this.load(projectId), ticker.read());
+                    }
+                });
+    }
+
+    /**
+     * Looks up the metadata of a project.
+     *
+     * @param projectId the project's id
+     * @return the {@link ProjectMetadata} or empty if the projects service does not know the project
+     */
+    public Optional<ProjectMetadata> find(UUID projectId) {
+        Entry entry = getEntry(projectId);
+        if (!entry.metadata.isPresent() && ticker.read() - entry.loadedAt > missingTtlNanos) {
+            cache.asMap().remove(projectId, entry);
+            entry = getEntry(projectId);
+        }
+        return entry.metadata;
+    }
+
+    /**
+     * Looks up the metadata of a project.
+     *
+     * @param projectId the project's id
+     * @return the {@link ProjectMetadata}
+     * @throws com.docutools.apierrors.ApiException when the project does not exist
+     */
+    public ProjectMetadata get(UUID projectId) {
+        return find(projectId).orElseThrow(() -> newResourceNotFoundError("Project", projectId));
+    }
+
+    /**
+     * Looks up a project through {@code project}, which calls the projects service with the current user's token, so
+     * the projects service still decides whether the user may see the project. Only the returned metadata is cached,
+     * for lookups that do not act on behalf of the user.
+     *
+     * @param projectId the project's id
+     * @param project fetches the project with the current user's token
+     * @return the {@link ProjectMetadata}
+     */
+    public ProjectMetadata getVisible(UUID projectId, Supplier<Project> project) {
+        ProjectMetadata metadata = new ProjectMetadata(project.get());
+        cache.put(projectId, new Entry(Optional.of(metadata), ticker.read()));
+        return metadata;
+    }
+
+    /**
+     * Looks up the metadata of many projects. Projects that are not cached are taken from {@code projects}, which
+     * fetches them from the projects service in one call, e.g. all projects of the current organisation. Only projects
+     * missing there are looked up one by one.
+     *
+     * @param projectIds the projects' ids
+     * @param projects fetches projects from the projects service, only called if some projects are not cached
+     * @return the {@link ProjectMetadata} by project id, in the order of {@code projectIds}
+     * @throws com.docutools.apierrors.ApiException when a project does not exist
+     */
+    public Map<UUID, ProjectMetadata> getAll(Collection<UUID> projectIds, Supplier<? extends Iterable<Project>> projects) {
+        Map<UUID, ProjectMetadata> found = new HashMap<>();
+        for (UUID projectId : projectIds) {
+            Entry entry = cache.getIfPresent(projectId);
+            if (entry != null && entry.metadata.isPresent()) {
+                found.put(projectId, entry.metadata.get());
+            }
+        }
+        if (found.size() < projectIds.size()) {
+            Set<UUID> wanted = new HashSet<>(projectIds);
+            Iterable<Project> fetched = projects.get();
+            if (fetched != null) {
+                for (Project project : fetched) {
+                    if (wanted.contains(project.getId()) && !found.containsKey(project.getId())) {
+                        ProjectMetadata metadata = new ProjectMetadata(project);
+                        cache.put(project.getId(), new Entry(Optional.of(metadata), ticker.read()));
+                        found.put(project.getId(), metadata);
+                    }
+                }
+            }
+        }
+        Map<UUID, ProjectMetadata> result = new LinkedHashMap<>();
+        for (UUID projectId : projectIds) {
+            result.put(projectId, found.containsKey(projectId) ? found.get(projectId) : get(projectId));
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached metadata of a project, e.g. after it was moved to another organisation or (de)activated.
+     *
+     * @param projectId the project's id
+     */
+    public void invalidate(UUID projectId) {
+        cache.invalidate(projectId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return hit/miss counts, load times and the size of the cache
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.size());
+        result.put("requests", stats.requestCount());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("loads", stats.loadCount());
+        result.put("loadFailures", stats.loadExceptionCount());
+        result.put("missingProjects", missingProjects.sum());
+        result.put("averageLoadMillis", TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty()));
+        result.put("totalLoadMillis", TimeUnit.NANOSECONDS.toMillis(stats.totalLoadTime()));
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    @Scheduled(fixedRateString = "${docutools.projects.cache.statsLogRate:900000}")
+    public void logStats() {
+        log.info("Project metadata cache: {}", stats());
+    }
+
+    private Optional<ProjectMetadata> load(UUID projectId) {
+        Optional<ProjectMetadata> metadata = internalApiClient.getProjectById(projectId).map(ProjectMetadata::new);
+        if (!metadata.isPresent()) {
+            log.debug("Project <{}> not found, caching as missing.", projectId);
+            missingProjects.increment();
+        }
+        return metadata;
+    }
+
+    private Entry getEntry(UUID projectId) {
+        try {
+            return cache.getUnchecked(projectId);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final Optional<ProjectMetadata> metadata;
+        private final long loadedAt;
+
+        private Entry(Optional<ProjectMetadata> metadata, long loadedAt) {
+            this.metadata = metadata;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -7,8 +7,11 @@ import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.stream.Collectors;
 import static com.docutools.exceptions.ExceptionHelper.*;
@@ -24,6 +27,8 @@ public class DefaultRoles {
 
     private List<DefaultRoleData> roleData;
     private List<RoleType> activeRoleTypes;
+    private final Map<RoleType, Set<Privilege>> privilegesByRoleType = new EnumMap<>(RoleType.class);
+    private final Map<RoleType, Long> privilegeMasksByRoleType = new EnumMap<>(RoleType.class);
 
     private DefaultRoles(){
         Resource resource = new ClassPathResource(DEFAULT_ROLE_DATA_RESOURCE_PATH);
@@ -32,6 +37,10 @@ public class DefaultRoles {
         } catch (IOException e) {
             throw newInternalServerError("Can not read default role data from file!");
         }
+        for (DefaultRoleData role : roleData) {
+            privilegesByRoleType.putIfAbsent(role.getRoleType(), role.getPrivileges());
+            privilegeMasksByRoleType.putIfAbsent(role.getRoleType(), PrivilegeMask.of(role.getPrivileges()));
+        }
     }
 
     public List<DefaultRoleData> getRoleData(){
@@ -52,10 +61,18 @@ public class DefaultRoles {
      * @return list of {@link Privilege}s
      */
     public Optional<Set<Privilege>> getPrivilegesForRoleType(RoleType type) {
-        return roleData.stream()
-                .filter(role -> role.getRoleType() == type)
-                .map(DefaultRoleData::getPrivileges)
-                .findAny();
+        return Optional.ofNullable(privilegesByRoleType.get(type));
+    }
+
+    /**
+     * Looks up the privileges of the {@link DefaultRoleData} for the given type as {@link PrivilegeMask}.
+     *
+     * @param type type of the {@link DefaultRoleData}
+     * @return the bitmask of the {@link Privilege}s
+     */
+    public OptionalLong getPrivilegeMaskForRoleType(RoleType type) {
+        Long mask = privilegeMasksByRoleType.get(type);
+        return mask != null ? OptionalLong.of(mask) : OptionalLong.empty();
     }
 
 }
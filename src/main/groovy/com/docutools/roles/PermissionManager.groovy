@@ -1,19 +1,21 @@
 package com.docutools.roles
 
+import com.docutools.projects.ProjectMetadataCache
 import com.docutools.services.internal.InternalApiClient
 import com.docutools.team.TeamMembership
 import com.docutools.team.TeamMembershipRepo
 import com.docutools.users.DocutoolsUser
 import com.docutools.users.SessionManager
 import com.docutools.users.UserRepo
+import com.docutools.utils.SqlArrays
+import com.google.common.collect.Lists
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
 import org.springframework.transaction.annotation.Transactional
 
-import java.util.stream.Collectors
-
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError
 import static com.docutools.exceptions.ExceptionHelper.newResourceNotFoundError
 
 /**
@@ -31,9 +33,14 @@ class PermissionManager {
     private UserRepo userRepo
     @Autowired
     private InternalApiClient internalApiClient
+    @Autowired
+    private ProjectMetadataCache projectMetadataCache
 
     private static final Logger log = LoggerFactory.getLogger(PermissionManager)
 
+    // keeps the IN lists of the bulk lookups well below the bind parameter limit
+    private static final int QUERY_BATCH_SIZE = 1000
+
 
     boolean hasPrivileges(UUID projectId, Privilege...privileges) {
         return checkPrivilege(projectId, privileges.toList(), false).check
@@ -44,7 +51,9 @@ class PermissionManager {
     }
 
     /**
-     * Checks whether the user has any or all of the supplied privileges in the referenced project.
+     * Checks whether the user has any or all of the supplied privileges in the referenced project. The user, the
+     * project's organisation, the membership and the result are memoized for the rest of the request, see
+     * {@link PrivilegeResolutionContext}.
      *
      * @param projectId the project's id
      * @param privileges array of privileges
@@ -52,19 +61,87 @@ class PermissionManager {
      * @return {@link PrivilegeCheckDTO}
      */
     PrivilegeCheckDTO checkPrivilege(UUID projectId, List<Privilege> privileges, boolean any = false) {
-        def user = sessionManager.currentUser
-        def project = internalApiClient.getProjectById(projectId).get()
+        def context = PrivilegeResolutionContext.current()
+        def user = context.currentUser { sessionManager.currentUser }
+        return context.check(user.id, projectId, privileges, any) {
+            resolve(context, user, { loadProjectOrganisation(context, projectId).get() }, projectId, privileges, any)
+        }
+    }
+
+    /**
+     * Remembers memberships of the current user, which the caller loaded in bulk, for the rest of the request. Projects
+     * without one of the memberships are remembered as projects the user is no member of.
+     *
+     * @param projectIds the projects the memberships were loaded for
+     * @param memberships the current user's memberships in these projects
+     */
+    void preloadMemberships(Collection<UUID> projectIds, Collection<TeamMembership> memberships) {
+        def context = PrivilegeResolutionContext.current()
+        def user = context.currentUser { sessionManager.currentUser }
+        Map<UUID, TeamMembership> membershipsByProject = memberships
+                .findAll { it.user.id == user.id }
+                .collectEntries { [(it.projectId): it] }
+        projectIds.each { UUID projectId ->
+            context.membership(user, projectId) { Optional.ofNullable(membershipsByProject[projectId]) }
+        }
+    }
+
+    /**
+     * Remembers the organisations of projects, which the caller already fetched from the projects service, for the
+     * rest of the request.
+     *
+     * @param organisationsByProject the organisation ids by project id
+     */
+    void preloadProjectOrganisations(Map<UUID, UUID> organisationsByProject) {
+        def context = PrivilegeResolutionContext.current()
+        organisationsByProject.each { UUID projectId, UUID organisationId ->
+            context.projectOrganisation(projectId) { Optional.ofNullable(organisationId) }
+        }
+    }
+
+    /**
+     * Filters projects of the current user's organisation down to those the user has any of the privileges in. The
+     * user's memberships are loaded with one query, no project is looked up.
+     *
+     * @param projectIds ids of projects that belong to the current user's organisation
+     * @param privileges the privileges to check
+     * @return the ids of the projects the user has any of the privileges in, in the given order
+     */
+    List<UUID> filterOrganisationProjects(Collection<UUID> projectIds, List<Privilege> privileges) {
+        def context = PrivilegeResolutionContext.current()
+        def user = context.currentUser { sessionManager.currentUser }
+        preloadProjectOrganisations(projectIds.collectEntries { [(it): user.organisation.id] })
+        if (!(user.settings.admin || user.organisationOwner || user.settings.projectCreator) && !projectIds.isEmpty()) {
+            preloadMemberships(projectIds, membershipRepo.findMembershipsOfUserInProjects(user.id, SqlArrays.uuidArray(projectIds)))
+        }
+        return projectIds.findAll { checkPrivilege(it, privileges, true).check }.toList()
+    }
+
+    /**
+     * Forgets memoized memberships and privilege checks of this project for the current request. Has to be called
+     * after the project's team changed in the same request.
+     *
+     * @param projectId the project's id
+     */
+    void evict(UUID projectId) {
+        PrivilegeResolutionContext.current().evict(projectId)
+    }
+
+    // the project's organisation is only looked up for users that might be privileged in it
+    private PrivilegeCheckDTO resolve(PrivilegeResolutionContext context, DocutoolsUser user, Closure<UUID> organisationId,
+                                      UUID projectId, List<Privilege> privileges, boolean any) {
         // TODO had to remove call to isProjectAdminForProject since project creators could not invite anymore
         if ((user.settings.admin || user.organisationOwner || user.settings.projectCreator)
-                && user.organisation.id == project.organisationId) {
+                && user.organisation.id == organisationId()) {
             def filteredPrivileges = filterByAccount(privileges, user, null)
             def check = any ? filteredPrivileges.size() > 0 : filteredPrivileges.size() == privileges.size()
             return new PrivilegeCheckDTO(privileges: filteredPrivileges, currentUserId: user.id, projectId: projectId, check: check, any: any)
         }
-        def response = membershipRepo.findMember(user, projectId)
+        def response = loadMember(context, user, projectId)
         if (response.present) {
             def membership = response.get()
-            def granted = privileges.findAll { membership.hasPrivilege(it) }
+            def roleMask = membership.role.privilegeMask
+            def granted = privileges.findAll { PrivilegeMask.contains(roleMask, it) }
             def filteredPrivileges = filterByAccount(granted, user, membership)
             def check = any ? filteredPrivileges.size() > 0 : filteredPrivileges.size() == privileges.size()
             return new PrivilegeCheckDTO(privileges: filteredPrivileges, currentUserId: user.id, projectId: projectId, check: check, any: any)
@@ -73,6 +150,16 @@ class PermissionManager {
         }
     }
 
+    private Optional<UUID> loadProjectOrganisation(PrivilegeResolutionContext context, UUID projectId) {
+        context.projectOrganisation(projectId) { UUID id ->
+            projectMetadataCache.find(id).map { it.organisationId }
+        }
+    }
+
+    private Optional<TeamMembership> loadMember(PrivilegeResolutionContext context, DocutoolsUser user, UUID projectId) {
+        context.membership(user, projectId) { membershipRepo.findMember(user, projectId) }
+    }
+
     private boolean isProjectAdminForProject(DocutoolsUser user, UUID projectId) {
         if (user.settings.projectCreator) {
             try {
@@ -100,9 +187,8 @@ class PermissionManager {
         if (user.hasActiveAccount()) {
             return privileges
         }
-        return new ArrayList<>(
-                DefaultRoles.instance.getPrivilegesForRoleType(RoleType.SubContractor)
-                .orElse( [] ).stream().filter{privilege-> privileges.contains(privilege)}.collect(Collectors.toSet()))
+        def freeUserMask = DefaultRoles.instance.getPrivilegeMaskForRoleType(RoleType.SubContractor).orElse(PrivilegeMask.NONE)
+        return privileges.findAll { PrivilegeMask.contains(freeUserMask, it) }.unique()
     }
 
     /**
@@ -113,15 +199,16 @@ class PermissionManager {
      * @return {@code true} when is member
      */
     boolean isMember(UUID projectId) {
-        def user = sessionManager.currentUser
-        def hasRole = membershipRepo.findMember(user, projectId)
+        def context = PrivilegeResolutionContext.current()
+        def user = context.currentUser { sessionManager.currentUser }
+        def hasRole = loadMember(context, user, projectId)
             .map({true})
             .orElse(false)
         if(hasRole) {
             return true
         } else if(user.settings.admin || user.settings.projectCreator) {
-            def project = internalApiClient.getProjectById(projectId).get()
-            if(project.getOrganisationId().equals(user.getOrganisation().getId())){
+            def organisationId = loadProjectOrganisation(context, projectId).get()
+            if(organisationId.equals(user.getOrganisation().getId())){
                 return true
             }
         }
@@ -130,31 +217,72 @@ class PermissionManager {
 
 
     PrivilegeCheckDTO checkPrivilegeInternal(UUID userId, UUID projectId, List<Privilege> privileges, boolean any) {
-        def optionalUser = userRepo.findById(userId)
+        return resolveInternal(PrivilegeResolutionContext.current(), userId, projectId, privileges, any)
+    }
+
+    /**
+     * Answers the privilege checks of many (user, project) pairs at once. Users and memberships are loaded with
+     * set-based queries up front and the organisation of every distinct project is looked up once, afterwards all
+     * checks are resolved from the {@link PrivilegeResolutionContext} without further lookups.
+     *
+     * @param requests the checks to answer, each with a user, a project and at least one privilege
+     * @return one {@link PrivilegeCheckDTO} per request, in the order of the requests
+     */
+    List<PrivilegeCheckDTO> checkPrivilegesInternal(List<PrivilegeCheckRequestDTO> requests) {
+        requests.eachWithIndex { request, index ->
+            if (request == null || request.userId == null || request.projectId == null) {
+                throw newInputValidationError("Privilege check <" + index + "> needs a userId and a projectId!")
+            }
+            if (!request.privileges) {
+                throw newInputValidationError("Privilege check <" + index + "> needs at least one privilege!")
+            }
+        }
+        def context = PrivilegeResolutionContext.current()
+        List<UUID> userIds = requests.collect { it.userId }.unique()
+        List<UUID> projectIds = requests.collect { it.projectId }.unique()
+
+        Map<UUID, DocutoolsUser> users = [:]
+        Lists.partition(userIds, QUERY_BATCH_SIZE).each { chunk ->
+            userRepo.findAllForPrivilegeCheck(chunk).each { users[it.id] = it }
+        }
+        userIds.each { UUID userId -> context.user(userId) { UUID id -> Optional.ofNullable(users[id]) } }
+
+        Map<List<UUID>, TeamMembership> memberships = [:]
+        Lists.partition(new ArrayList<>(users.keySet()), QUERY_BATCH_SIZE).each { userChunk ->
+            Lists.partition(projectIds, QUERY_BATCH_SIZE).each { projectChunk ->
+                membershipRepo.findMembersOfProjects(userChunk, projectChunk).each {
+                    memberships[[it.user.id, it.projectId]] = it
+                }
+            }
+        }
+        requests.each { request ->
+            def user = users[request.userId]
+            if (user) {
+                context.membership(user, request.projectId) {
+                    Optional.ofNullable(memberships[[user.id, request.projectId]])
+                }
+            }
+        }
+
+        // there is no bulk lookup for projects, but every project is only looked up once and mostly cached
+        projectIds.each { loadProjectOrganisation(context, it) }
+
+        return requests.collect { resolveInternal(context, it.userId, it.projectId, it.privileges, it.any) }
+    }
+
+    private PrivilegeCheckDTO resolveInternal(PrivilegeResolutionContext context, UUID userId, UUID projectId,
+                                              List<Privilege> privileges, boolean any) {
+        def optionalUser = context.user(userId) { UUID id -> userRepo.findById(id) }
         if (!optionalUser.isPresent()) {
             return new PrivilegeCheckDTO(privileges: [], currentUserId: userId, projectId: projectId, check: false, any: any)
         }
-        def optionalProject = internalApiClient.getProjectById(projectId);
-        if (!optionalProject.isPresent()) {
+        def optionalOrganisationId = loadProjectOrganisation(context, projectId)
+        if (!optionalOrganisationId.isPresent()) {
             return new PrivilegeCheckDTO(privileges: [], currentUserId: userId, projectId: projectId, check: false, any: any)
         }
         def user = optionalUser.get()
-        def orgId = optionalProject.get().getOrganisationId()
-        if ((user.settings.admin || user.organisationOwner || user.settings.projectCreator)
-                && user.organisation.id == orgId) {
-            def filteredPrivileges = filterByAccount(privileges, user, null)
-            def check = any ? filteredPrivileges.size() > 0 : filteredPrivileges.size() == privileges.size()
-            return new PrivilegeCheckDTO(privileges: filteredPrivileges, currentUserId: user.id, projectId: projectId, check: check, any: any)
-        }
-        def response = membershipRepo.findMember(user, projectId)
-        if (response.present) {
-            def membership = response.get()
-            def granted = privileges.findAll { membership.hasPrivilege(it) }
-            def filteredPrivileges = filterByAccount(granted, user, membership)
-            def check = any ? filteredPrivileges.size() > 0 : filteredPrivileges.size() == privileges.size()
-            return new PrivilegeCheckDTO(privileges: filteredPrivileges, currentUserId: user.id, projectId: projectId, check: check, any: any)
-        } else {
-            return new PrivilegeCheckDTO(privileges: [], currentUserId: user.id, projectId: projectId, check: false, any: any)
+        return context.check(user.id, projectId, privileges, any) {
+            resolve(context, user, { optionalOrganisationId.get() }, projectId, privileges, any)
         }
     }
 
@@ -0,0 +1,27 @@
+package com.docutools.roles
+
+import io.swagger.annotations.ApiModel
+import io.swagger.annotations.ApiModelProperty
+
+@ApiModel(value = "Privilege Check Request Resource")
+class PrivilegeCheckRequestDTO {
+
+    @ApiModelProperty(value = "Id of the User")
+    UUID userId
+    @ApiModelProperty(value = "Id of the Project")
+    UUID projectId
+    @ApiModelProperty(value = "List of the Privileges to check")
+    List<Privilege> privileges = []
+    @ApiModelProperty(value = "Whether if any/all privilege should result in checked")
+    boolean any
+
+    PrivilegeCheckRequestDTO(UUID userId, UUID projectId, List<Privilege> privileges, boolean any) {
+        this.userId = userId
+        this.projectId = projectId
+        this.privileges = privileges
+        this.any = any
+    }
+
+    PrivilegeCheckRequestDTO() {
+    }
+}
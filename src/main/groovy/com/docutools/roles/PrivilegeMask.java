@@ -0,0 +1,81 @@
+package com.docutools.roles;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Encodes sets of {@link Privilege}s as {@code long} bitmasks over the privileges' ordinals, so privilege checks are
+ * single bit operations instead of collection lookups.
+ *
+ * The masks depend on the declaration order of {@link Privilege} and must therefore never be persisted.
+ */
+public final class PrivilegeMask {
+
+    public static final long NONE = 0L;
+
+    private static final Privilege[] PRIVILEGES = Privilege.values();
+
+    static {
+        if (PRIVILEGES.length > Long.SIZE) {
+            throw new IllegalStateException("Privileges do not fit into a long bitmask anymore: " + PRIVILEGES.length);
+        }
+    }
+
+    private PrivilegeMask() {
+    }
+
+    public static long of(Privilege privilege) {
+        return 1L << privilege.ordinal();
+    }
+
+    public static long of(Privilege... privileges) {
+        long mask = NONE;
+        for (Privilege privilege : privileges) {
+            mask |= of(privilege);
+        }
+        return mask;
+    }
+
+    public static long of(Collection<Privilege> privileges) {
+        long mask = NONE;
+        if (privileges != null) {
+            for (Privilege privilege : privileges) {
+                mask |= of(privilege);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param mask the bitmask
+     * @param privilege the privilege to look for
+     * @return {@code true} when the privilege is part of the mask
+     */
+    public static boolean contains(long mask, Privilege privilege) {
+        return (mask & of(privilege)) != NONE;
+    }
+
+    /**
+     * @param mask the bitmask
+     * @param privileges the privileges to look for
+     * @return {@code true} when at least one of the privileges is part of the mask
+     */
+    public static boolean containsAny(long mask, long privileges) {
+        return (mask & privileges) != NONE;
+    }
+
+    /**
+     * @param mask the bitmask
+     * @return the privileges encoded in the mask
+     */
+    public static Set<Privilege> toSet(long mask) {
+        Set<Privilege> privileges = EnumSet.noneOf(Privilege.class);
+        for (Privilege privilege : PRIVILEGES) {
+            if (contains(mask, privilege)) {
+                privileges.add(privilege);
+            }
+        }
+        return privileges;
+    }
+}
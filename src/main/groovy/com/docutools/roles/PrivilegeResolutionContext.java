@@ -0,0 +1,159 @@
+package com.docutools.roles;
+
+import com.docutools.team.TeamMembership;
+import com.docutools.users.DocutoolsUser;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes everything {@link PermissionManager} needs to answer a privilege check - the current user, users by id, the
+ * organisation of each project, memberships and already computed {@link PrivilegeCheckDTO}s.
+ *
+ * The context is bound to the attributes of the current request, so listing endpoints checking the same project once
+ * per row only pay for the lookups once. Outside of a request every call gets a fresh, throw-away context.
+ */
+class PrivilegeResolutionContext {
+
+    private static final String ATTRIBUTE_NAME = PrivilegeResolutionContext.class.getName();
+
+    private DocutoolsUser currentUser;
+    private final Map<UUID, Optional<DocutoolsUser>> users = new HashMap<>();
+    private final Map<UUID, Optional<UUID>> projectOrganisations = new HashMap<>();
+    private final Map<MembershipKey, Optional<TeamMembership>> memberships = new HashMap<>();
+    private final Map<CheckKey, PrivilegeCheckDTO> checks = new HashMap<>();
+
+    /**
+     * Gets the context bound to the current request or a new unbound one when called outside of a request.
+     *
+     * @return the {@link PrivilegeResolutionContext}
+     */
+    static PrivilegeResolutionContext current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new PrivilegeResolutionContext();
+        }
+        PrivilegeResolutionContext context = (PrivilegeResolutionContext) attributes.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (context == null) {
+            context = new PrivilegeResolutionContext();
+            attributes.setAttribute(ATTRIBUTE_NAME, context, RequestAttributes.SCOPE_REQUEST);
+        }
+        return context;
+    }
+
+    DocutoolsUser currentUser(Supplier<DocutoolsUser> loader) {
+        if (currentUser == null) {
+            currentUser = loader.get();
+        }
+        return currentUser;
+    }
+
+    Optional<DocutoolsUser> user(UUID userId, Function<UUID, Optional<DocutoolsUser>> loader) {
+        Optional<DocutoolsUser> user = users.get(userId);
+        if (user == null) {
+            user = loader.apply(userId);
+            users.put(userId, user);
+        }
+        return user;
+    }
+
+    Optional<UUID> projectOrganisation(UUID projectId, Function<UUID, Optional<UUID>> loader) {
+        Optional<UUID> organisationId = projectOrganisations.get(projectId);
+        if (organisationId == null) {
+            organisationId = loader.apply(projectId);
+            projectOrganisations.put(projectId, organisationId);
+        }
+        return organisationId;
+    }
+
+    Optional<TeamMembership> membership(DocutoolsUser user, UUID projectId, Supplier<Optional<TeamMembership>> loader) {
+        MembershipKey key = new MembershipKey(user.getId(), projectId);
+        Optional<TeamMembership> membership = memberships.get(key);
+        if (membership == null) {
+            membership = loader.get();
+            memberships.put(key, membership);
+        }
+        return membership;
+    }
+
+    PrivilegeCheckDTO check(UUID userId, UUID projectId, Collection<Privilege> privileges, boolean any, Supplier<PrivilegeCheckDTO> resolver) {
+        CheckKey key = new CheckKey(userId, projectId, privileges, any);
+        PrivilegeCheckDTO check = checks.get(key);
+        if (check == null) {
+            check = resolver.get();
+            checks.put(key, check);
+        }
+        return check;
+    }
+
+    /**
+     * Forgets memberships and results for a project, e.g. after the team of this project changed.
+     *
+     * @param projectId the project's ID
+     */
+    void evict(UUID projectId) {
+        memberships.keySet().removeIf(key -> key.projectId.equals(projectId));
+        checks.keySet().removeIf(key -> key.projectId.equals(projectId));
+    }
+
+    private static final class MembershipKey {
+        private final UUID userId;
+        private final UUID projectId;
+
+        private MembershipKey(UUID userId, UUID projectId) {
+            this.userId = userId;
+            this.projectId = projectId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MembershipKey that = (MembershipKey) o;
+            return Objects.equals(userId, that.userId) && Objects.equals(projectId, that.projectId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, projectId);
+        }
+    }
+
+    private static final class CheckKey {
+        private final UUID userId;
+        private final UUID projectId;
+        private final List<Privilege> privileges;
+        private final boolean any;
+
+        private CheckKey(UUID userId, UUID projectId, Collection<Privilege> privileges, boolean any) {
+            this.userId = userId;
+            this.projectId = projectId;
+            this.privileges = new ArrayList<>(privileges);
+            this.any = any;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CheckKey that = (CheckKey) o;
+            return any == that.any && Objects.equals(userId, that.userId) && Objects.equals(projectId, that.projectId)
+                    && Objects.equals(privileges, that.privileges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, projectId, privileges, any);
+        }
+    }
+}
@@ -29,6 +29,9 @@ class Role {
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = 'role_privileges')
     private Set<Privilege> privileges;
+    // PrivilegeMask of the privileges above, calculated when they are set or on first use after loading
+    @Transient
+    private Long privilegeMask;
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private Organisation organisation;
     @ManyToOne(optional = false)
@@ -59,7 +62,7 @@ class Role {
     }
 
     boolean hasPrivilege(Privilege...privilege) {
-        getPrivileges().any {privilege.contains(it)}
+        PrivilegeMask.containsAny(getPrivilegeMask(), PrivilegeMask.of(privilege))
     }
 
     UUID getId() {
@@ -82,8 +85,23 @@ class Role {
             .orElse(privileges)
     }
 
+    /**
+     * @return the {@link PrivilegeMask} of {@link #getPrivileges()}
+     */
+    long getPrivilegeMask() {
+        def defaultMask = DefaultRoles.instance.getPrivilegeMaskForRoleType(this.roleType)
+        if (defaultMask.present) {
+            return defaultMask.asLong
+        }
+        if (privilegeMask == null) {
+            privilegeMask = PrivilegeMask.of(privileges ?: [])
+        }
+        return privilegeMask
+    }
+
     void setPrivileges(Set<Privilege> privileges) {
         this.privileges = privileges ? privileges : []
+        this.privilegeMask = PrivilegeMask.of(this.privileges)
     }
 
     Organisation getOrganisation() {
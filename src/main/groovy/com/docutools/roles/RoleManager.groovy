@@ -1,6 +1,8 @@
 package com.docutools.roles
 
 import com.docutools.exceptions.ErrorCodes
+import com.docutools.outbox.ChangeEventOutbox
+import com.docutools.outbox.ChangeEventType
 import com.docutools.users.SessionManager
 import com.docutools.users.Organisation
 import com.docutools.users.OrganisationRepo
@@ -34,6 +36,8 @@ class RoleManager {
     private SessionManager sessionManager
     @Autowired
     private OrganisationRepo organisationRepo
+    @Autowired
+    private ChangeEventOutbox changeEventOutbox
 
     private final DefaultRoles defaultRoles = DefaultRoles.instance
 
@@ -52,6 +56,7 @@ class RoleManager {
             throw newForbiddenError('Only organisation owner or admins can create roles.')
         }
         Role newRole = roleRepo.save(new Role(name, privileges, currentUser.organisation, currentUser))
+        changeEventOutbox.roleChanged(ChangeEventType.RoleCreated, newRole)
         return new RoleDTO(newRole)
     }
 
@@ -84,6 +89,7 @@ class RoleManager {
             role.active = update.active
         }
         def updatedRole = roleRepo.save(role)
+        changeEventOutbox.roleChanged(ChangeEventType.RoleUpdated, updatedRole)
         return new RoleDTO(updatedRole)
     }
 
@@ -184,7 +190,7 @@ class RoleManager {
                 .filter {role -> role.active}
                 .collect(Collectors.toList())
 
-        roleRepo.saveAll(roles)
+        saveDefaultRoles(roles)
     }
 
     private Optional<Collection<Role>> getNewDefaultRoles(Organisation organisation, Set<RoleType> newRoles){
@@ -197,7 +203,13 @@ class RoleManager {
                 .map {optional -> optional.get()}
                 .filter {role -> role.active}
                 .collect(Collectors.toList())
-        Optional.of(roleRepo.saveAll(newRoleList))
+        Optional.of(saveDefaultRoles(newRoleList))
+    }
+
+    private List<Role> saveDefaultRoles(List<Role> roles) {
+        def saved = roleRepo.saveAll(roles)
+        saved.each { changeEventOutbox.roleChanged(ChangeEventType.RoleCreated, it) }
+        return saved
     }
 
     private Optional<Role> getDefaultRole(Organisation organisation, RoleType roleType){
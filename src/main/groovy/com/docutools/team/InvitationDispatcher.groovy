@@ -0,0 +1,98 @@
+package com.docutools.team
+
+import com.docutools.emails.EmailTemplateType
+import com.docutools.emails.MailServer
+import com.docutools.notifications.NotificationCode
+import com.docutools.notifications.NotifyClient
+import com.docutools.projects.ProjectMetadata
+import com.docutools.users.DocutoolsUser
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.core.task.TaskExecutor
+import org.springframework.stereotype.Component
+import org.springframework.transaction.support.TransactionSynchronizationAdapter
+import org.springframework.transaction.support.TransactionSynchronizationManager
+
+/**
+ * Sends the invitation emails and notifications of bulk team changes as one background task on the
+ * {@code invitationExecutor}, once the transaction that created the memberships has been committed. Nothing is sent for
+ * rolled back invites. The emails of a batch are sent one after another, so big invites do not flood the mail server.
+ */
+@Component
+class InvitationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(InvitationDispatcher)
+
+    @Autowired
+    private MailServer mailServer
+    @Autowired
+    private NotifyClient notifyClient
+    @Autowired
+    @Qualifier("invitationExecutor")
+    private TaskExecutor invitationExecutor
+
+    /**
+     * Collects the emails and notifications of one bulk operation.
+     */
+    static class Batch {
+
+        private final List<Map<String, Object>> emails = []
+        private final List<Map<String, Object>> notifications = []
+
+        void inviteToProject(DocutoolsUser inviter, DocutoolsUser user, ProjectMetadata project) {
+            emails << [user: user, props: [inviter: inviter.name, projectName: project.name, receiver_mail: user.email]]
+        }
+
+        void notifyInvite(DocutoolsUser user, ProjectMetadata project) {
+            notifications << [userId: user.id, project: project]
+        }
+
+        boolean isEmpty() {
+            emails.isEmpty() && notifications.isEmpty()
+        }
+    }
+
+    Batch newBatch() {
+        new Batch()
+    }
+
+    void dispatch(Batch batch) {
+        if (batch.isEmpty()) {
+            return
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                void afterCommit() {
+                    send(batch)
+                }
+            })
+        } else {
+            send(batch)
+        }
+    }
+
+    private void send(Batch batch) {
+        invitationExecutor.execute {
+            log.debug("Sending {} invitation emails and {} notifications.", batch.emails.size(), batch.notifications.size())
+            batch.emails.each {
+                DocutoolsUser user = it.user as DocutoolsUser
+                try {
+                    mailServer.sendEmail(EmailTemplateType.InviteToProject, it.props as Map<String, Object>, user).join()
+                } catch (Exception e) {
+                    log.error("Could not send the project invitation to User <${user.id}>.", e)
+                }
+            }
+            batch.notifications.each {
+                ProjectMetadata project = it.project as ProjectMetadata
+                notifyClient.builder()
+                        .code(NotificationCode.USER_INVITE)
+                        .user(it.userId as UUID)
+                        .project(project.id, project.name)
+                        .build().sendAsync()
+            }
+        }
+    }
+}
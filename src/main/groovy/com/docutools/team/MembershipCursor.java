@@ -0,0 +1,71 @@
+package com.docutools.team;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError;
+
+/**
+ * Position in a user's memberships ordered by (last_modified, project_id). Clients only ever see it as an opaque
+ * continuation token, see {@link #encode()}.
+ */
+final class MembershipCursor {
+
+    /**
+     * Memberships without last_modified sort as the epoch, so start well before it whatever the JVM's time zone.
+     */
+    private static final Instant MIN_MODIFIED = Instant.parse("1900-01-01T00:00:00Z");
+
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
+
+    private final Instant lastModified;
+    private final UUID projectId;
+
+    MembershipCursor(Instant lastModified, UUID projectId) {
+        this.lastModified = lastModified;
+        this.projectId = projectId;
+    }
+
+    /**
+     * @return a cursor before every membership
+     */
+    static MembershipCursor first() {
+        return new MembershipCursor(MIN_MODIFIED, MIN_ID);
+    }
+
+    /**
+     * @param since exclusive lower bound for last_modified
+     * @return a cursor after every membership modified at or before {@code since}
+     */
+    static MembershipCursor after(Instant since) {
+        return new MembershipCursor(since, MAX_ID);
+    }
+
+    static MembershipCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            String[] instant = parts[0].split("\\.");
+            return new MembershipCursor(Instant.ofEpochSecond(Long.parseLong(instant[0]), Long.parseLong(instant[1])),
+                    UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw newInputValidationError("Invalid continuation token: " + token);
+        }
+    }
+
+    String encode() {
+        String value = lastModified.getEpochSecond() + "." + lastModified.getNano() + ":" + projectId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Timestamp getLastModified() {
+        return Timestamp.from(lastModified);
+    }
+
+    UUID getProjectId() {
+        return projectId;
+    }
+}
@@ -95,6 +95,15 @@ class MembershipsApi extends BaseController {
         return teamManager.getProjectIdListFromUserId(userId, page, size)
     }
 
+    @ApiOperation(value = "Get Project Ids of the Users Memberships by Continuation Token")
+    @GetMapping(path = "/users/{userId}/projects/all/projectId/slice")
+    ProjectIdSliceDTO getUsersMembershipProjectIdSlice(@PathVariable UUID userId,
+                                                       @RequestParam(required = false, defaultValue = '100') int size,
+                                                       @RequestParam(required = false) String next) {
+        log.info('GET /api/v2/users/{}/projects/all/projectId/slice?size={} by {}', userId, size, userName)
+        return teamManager.getProjectIdSliceFromUserId(userId, size, next)
+    }
+
     @GetMapping(path = "/me/memberships/all/roleMap")
     List<RoleMapDTO> getUsersMembershipRoleMap() {
         log.info('GET /api/v2/me/memberships/all/roleMap by {}', userName)
@@ -110,6 +119,16 @@ class MembershipsApi extends BaseController {
         return teamManager.getLeftProjectIdListFromUserId(userId, page, size, parseDateTime(since))
     }
 
+    @ApiOperation(value = "Get Project Ids of the Users Removed Memberships by Continuation Token")
+    @GetMapping(path = "/users/{userId}/projects/removed/projectId/slice")
+    ProjectIdSliceDTO getLeftUsersMembershipProjectIdSlice(@PathVariable UUID userId,
+                                                           @RequestParam(required = false, defaultValue = '100') int size,
+                                                           @RequestParam(required = false) String since,
+                                                           @RequestParam(required = false) String next) {
+        log.info('GET /api/v2/users/{}/projects/removed/projectId/slice?size={}&since={} by {}', userId, size, since, userName)
+        return teamManager.getLeftProjectIdSliceFromUserId(userId, size, parseDateTime(since), next)
+    }
+
     @ApiOperation(value = "Get the Team of a Project")
     @GetMapping(value = '/projects/{projectId}/team')
     List<TeamMemberDTO> getTeam(@PathVariable UUID projectId,
@@ -122,6 +141,20 @@ class MembershipsApi extends BaseController {
         teamManager.listTeam(projectId, quickFilter, stateFilter, sort, sortDir)
     }
 
+    @ApiOperation(value = "Get the Team of a Project Paged")
+    @GetMapping(value = '/projects/{projectId}/team/paged')
+    List<TeamMemberDTO> getTeam(@PathVariable UUID projectId,
+                                @RequestParam(required = false, defaultValue = "0") int page,
+                                @RequestParam(required = false, defaultValue = "50") int size,
+                                @RequestParam(required = false, defaultValue = 'Name') TeamMemberSort sort,
+                                @RequestParam(required = false, defaultValue = 'ASC') SortDirection sortDir,
+                                @RequestParam(required = false) StateFilter stateFilter,
+                                @RequestParam(required = false, defaultValue = 'All') TeamQuickFilter quickFilter) {
+        log.info('GET /api/v2/projects/{}/team/paged?page={}&size={}&filter={}&stateFilter={} by {}', projectId, page, size, quickFilter, stateFilter, userName)
+
+        teamManager.listTeam(projectId, page, size, quickFilter, stateFilter, sort, sortDir)
+    }
+
     @ApiOperation(value = "Create a Member in a Team", notes = "Required Attributes: userId")
     @PostMapping(value = '/projects/{projectId}/team')
     HttpEntity<TeamMemberDTO> createMember(@PathVariable UUID projectId,
@@ -205,13 +238,23 @@ class MembershipsApi extends BaseController {
         teamManager.addMembersInBulk(projectId, bulk)
     }
 
+    @ApiOperation(value = "Invite Members in Bulk", notes = "Required Attributes: none. Returns one result per user id and email, failed entries do not abort the invite.")
+    @PostMapping(value = '/projects/{projectId}/team/many/results', consumes = 'application/json')
+    List<TeamMemberBulkResultDTO> inviteMembersInBulk(@PathVariable UUID projectId, @RequestBody TeamMemberBulkDTO bulk) {
+        log.info('POST /api/v2/projects/{}/team/many/results by {}', projectId, userName)
+        log.debug('Request body: {}', bulk)
+
+        teamManager.inviteMembersInBulk(projectId, bulk)
+    }
+
     @ApiOperation(value = "Search Team")
     @GetMapping(value = '/team/search')
     List<TeamMemberDTO> searchTeam(@RequestParam(name = "search") String searchText,
-                                   @RequestParam(name = "for") UUID projectId) {
-        log.info('GET /api/v2/team/search?search={}&for={} by {}', searchText, projectId, userName)
+                                   @RequestParam(name = "for") UUID projectId,
+                                   @RequestParam(name = "mode", defaultValue = "Contains") TeamSearchMode mode) {
+        log.info('GET /api/v2/team/search?search={}&for={}&mode={} by {}', searchText, projectId, mode, userName)
 
-        teamManager.searchTeamMembers(projectId, searchText)
+        teamManager.searchTeamMembers(projectId, searchText, mode)
     }
 
     @ApiOperation(value = "Search Team (Paged)")
@@ -219,9 +262,10 @@ class MembershipsApi extends BaseController {
     Page<TeamMemberDTO> searchTeam(@RequestParam(name = "search") String searchText,
                                    @RequestParam(name = "for") UUID projectId,
                                    @RequestParam(name = "page", defaultValue = "0") int page,
-                                   @RequestParam(name = "size", defaultValue = "10") int size) {
+                                   @RequestParam(name = "size", defaultValue = "10") int size,
+                                   @RequestParam(name = "mode", defaultValue = "Contains") TeamSearchMode mode) {
         log.info('GET /api/v2/team/paged/search?search={}&for={}&page=0&size=10')
-        teamManager.searchTeamMembers(projectId, searchText, page, size)
+        teamManager.searchTeamMembers(projectId, searchText, page, size, mode)
     }
 
     @ApiOperation(value = "Get Users with other Organisations")
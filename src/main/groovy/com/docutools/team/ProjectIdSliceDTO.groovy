@@ -0,0 +1,21 @@
+package com.docutools.team
+
+import io.swagger.annotations.ApiModel
+import io.swagger.annotations.ApiModelProperty
+
+@ApiModel(value = "Project Id Slice Resource")
+class ProjectIdSliceDTO {
+
+    @ApiModelProperty(value = "Ids of the projects in this slice")
+    List<UUID> projectIds
+    @ApiModelProperty(value = "Continuation token for the next slice, null if this is the last one")
+    String next
+
+    ProjectIdSliceDTO() {
+    }
+
+    ProjectIdSliceDTO(List<UUID> projectIds, String next) {
+        this.projectIds = projectIds
+        this.next = next
+    }
+}
@@ -1,9 +1,14 @@
 package com.docutools.team
 
+import com.docutools.apierrors.ApiException
 import com.docutools.contacts.ProjectContact
 import com.docutools.contacts.ProjectContactRepository
 import com.docutools.notifications.NotificationCode
 import com.docutools.notifications.NotifyClient
+import com.docutools.outbox.ChangeEventOutbox
+import com.docutools.outbox.ChangeEventType
+import com.docutools.projects.ProjectMetadata
+import com.docutools.projects.ProjectMetadataCache
 import com.docutools.roles.PermissionManager
 import com.docutools.roles.Privilege
 import com.docutools.roles.Role
@@ -13,11 +18,14 @@ import com.docutools.roles.RoleType
 import com.docutools.services.core.resources.SortDirection
 import com.docutools.services.projects.ProjectApiClient
 import com.docutools.services.projects.resources.Project
+import com.docutools.users.BlockedEmails
 import com.docutools.users.DocutoolsUser
 import com.docutools.users.Organisation
 import com.docutools.users.SessionManager
 import com.docutools.users.UserManager
 import com.docutools.users.UserRepo
+import com.docutools.utils.Validator
+import com.google.common.collect.Lists
 import org.hibernate.exception.ConstraintViolationException
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -31,6 +39,9 @@ import org.springframework.transaction.annotation.Transactional
 import org.springframework.util.Assert
 import org.springframework.util.StringUtils
 
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
+import java.sql.Timestamp
 import java.time.Instant
 import java.time.ZoneId
 import java.time.ZonedDateTime
@@ -38,12 +49,15 @@ import java.util.stream.Collectors
 
 import static com.docutools.exceptions.ErrorCodes.CONTACT_NOT_SAME_PROJECT
 import static com.docutools.exceptions.ErrorCodes.DIFFERENT_ORGANISATION
+import static com.docutools.exceptions.ErrorCodes.EMAIL_BLOCKED
+import static com.docutools.exceptions.ErrorCodes.INVALID_RESOURCE
 import static com.docutools.exceptions.ErrorCodes.MISSING_REQUIRED_VALUE
 import static com.docutools.exceptions.ErrorCodes.RESOURCE_NOT_FOUND
 import static com.docutools.exceptions.ErrorCodes.USER_NOT_FOUND
 import static com.docutools.exceptions.ExceptionHelper.newBadRequestError
 import static com.docutools.exceptions.ExceptionHelper.newConflictError
 import static com.docutools.exceptions.ExceptionHelper.newForbiddenError
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError
 import static com.docutools.exceptions.ExceptionHelper.newInternalServerError
 import static com.docutools.exceptions.ExceptionHelper.newResourceNotFoundError
 import static com.docutools.exceptions.ExceptionHelper.newUnprivilegedError
@@ -58,6 +72,9 @@ class TeamManager {
     private static final Logger log = LoggerFactory.getLogger(TeamManager)
 
     private static final String USER_ALREADY_MEMBER = 'USER_ALREADY_MEMBER'
+    // keeps the IN lists of bulk lookups well below the bind parameter limit
+    private static final int QUERY_BATCH_SIZE = 1000
+    private static final int MAX_PAGE_SIZE = 1000
 
     @Autowired
     private UserRepo userRepo
@@ -72,6 +89,8 @@ class TeamManager {
     @Autowired
     private ProjectApiClient projectApi
     @Autowired
+    private ProjectMetadataCache projectMetadataCache
+    @Autowired
     private UserManager userManager
     @Autowired
     private RoleManager roleManager
@@ -79,6 +98,14 @@ class TeamManager {
     private PermissionManager permissionManager
     @Autowired
     private NotifyClient notifyClient
+    @Autowired
+    private BlockedEmails blockedEmails
+    @Autowired
+    private InvitationDispatcher invitationDispatcher
+    @Autowired
+    private ChangeEventOutbox changeEventOutbox
+    @PersistenceContext
+    private EntityManager entityManager
 
     /**
      * Checks whether a {@link DocutoolsUser} is member of a project.
@@ -157,7 +184,10 @@ class TeamManager {
             newMembership.role = role
             newMembership.lastModified = ZonedDateTime.now()
             newMembership.lastModifiedBy = sessionManager.currentUser.id
-            def teamMemberDTO = translate(teamRepo.save(newMembership))
+            def savedMembership = teamRepo.save(newMembership)
+            changeEventOutbox.membershipChanged(ChangeEventType.MembershipAdded, savedMembership)
+            permissionManager.evict(projectId)
+            def teamMemberDTO = translate(savedMembership)
             //Only send project invite notification to already existing user as for new user, we are already sending email while user create.
             if (!invitedUser.isNewCreated) {
                 sendUserInviteToProjectNotification(newMembership, project);
@@ -174,7 +204,7 @@ class TeamManager {
         }
     }
 
-    private void sendUserInviteToProjectNotification(TeamMembership membership, Project project) {
+    private void sendUserInviteToProjectNotification(TeamMembership membership, ProjectMetadata project) {
         notifyClient.builder()
                 .code(NotificationCode.USER_INVITE)
                 .user(membership.getUser().getId())
@@ -182,6 +212,15 @@ class TeamManager {
                 .build().sendAsync()
     }
 
+    /**
+     * Copies team members with their role from one project to another with {@code INSERT ... SELECT} statements,
+     * without loading the memberships.
+     *
+     * @param from the source project's id.
+     * @param to the target project's id.
+     * @param members the members to copy, or the members not to copy when {@code team} is set.
+     * @param team whether to copy the whole team (except the removed members).
+     */
     void copyMembers(UUID from, UUID to, List<UUID> members, boolean team) {
         Assert.notNull(from, "from is required - must not be NULL!")
         Assert.notNull(to, "to is required - must not be NULL!")
@@ -191,24 +230,23 @@ class TeamManager {
         if (!permissionManager.hasPrivileges(from, Privilege.ViewTeam)) {
             throw newForbiddenError("ViewTeam")
         }
-        if(team) {
-            // If team flag is True then copy all `from` Project memberships except the ones in the members list
-            teamRepo.findTeam(from).each { teamMembership ->
-                if (members == null || members.isEmpty() || !members.contains(teamMembership.user.id)) {
-                    def newTeamMember = new TeamMembership(teamMembership.user, to, teamMembership.state)
-                    newTeamMember.role = teamMembership.role
-                    teamRepo.save(newTeamMember)
-                }
-            }
+        int copied
+        if (team && !members) {
+            copied = teamRepo.copyTeam(from, to)
         } else {
-            if (members != null && !members.isEmpty()) {
-                teamRepo.findMembers(members, from).each { teamMembership ->
-                    def newTeamMember = new TeamMembership(teamMembership.user, to, teamMembership.state)
-                    newTeamMember.role = teamMembership.role
-                    teamRepo.save(newTeamMember)
-                }
+            def userIds = members ?: []
+            if (team) {
+                // If team flag is True then copy all `from` Project memberships except the ones in the members list
+                Set<UUID> excluded = new HashSet<>(members)
+                userIds = teamRepo.findUserIdsOfTeam(from).findAll { !excluded.contains(it) }
             }
+            copied = Lists.partition(userIds, QUERY_BATCH_SIZE).sum(0) { teamRepo.copyMembers(from, to, it) } as int
+        }
+        if (copied) {
+            changeEventOutbox.teamCopied(from, to)
         }
+        permissionManager.evict(to)
+        log.debug("Copied {} team members from Project <{}> to Project <{}>.", copied, from, to)
     }
 
     /**
@@ -236,24 +274,91 @@ class TeamManager {
         if(resource.roleId) {
             member.role = loadRole(resource.roleId, project)
         }
-        translate(teamRepo.save(member))
+        member.lastModified = ZonedDateTime.now()
+        member.lastModifiedBy = sessionManager.currentUser.id
+        def savedMember = teamRepo.save(member)
+        changeEventOutbox.membershipChanged(ChangeEventType.MembershipUpdated, savedMember)
+        permissionManager.evict(projectId)
+        translate(savedMember)
     }
 
+    /**
+     * Adds, updates or removes the memberships of one user in many projects. Per project {@code null} keeps a membership
+     * as it is, an empty list removes it and role ids grant the highest of those roles and make the membership Active
+     * again. Non members are added, with the Viewer role when no roles are given. Uncached projects are fetched with one
+     * call to the projects service, the memberships and roles are loaded in batches, privileges are checked once for all
+     * projects and the invite notifications are sent together after the commit.
+     *
+     * @param userId the user's id.
+     * @param memberships role ids by project id.
+     */
     void bulkUpdateMemberships(UUID userId, Map<UUID, List<UUID>> memberships) {
-        memberships.keySet().each {
-            if (isMember(it, userId)) {
-                if(memberships[it] == null){
-                    return
+        if (!memberships) {
+            return
+        }
+        if (!userRepo.existsById(userId)) {
+            // contacts are turned into users by addUser
+            memberships.each { projectId, roleIds -> addUser(projectId, new TeamMemberDTO(userId: userId, roleIds: roleIds)) }
+            return
+        }
+        def user = loadUser(userId)
+        def currentUser = sessionManager.currentUser
+        def projectIds = memberships.keySet().toList()
+        // projects of other organisations are looked up one by one
+        Map<UUID, ProjectMetadata> projects = projectMetadataCache.getAll(projectIds) { projectApi.getAllProjectsInCurrentOrganisation() }
+        Map<UUID, TeamMembership> existing = [:]
+        Lists.partition(projectIds, QUERY_BATCH_SIZE).each {
+            teamRepo.findMembershipsOfUser(userId, it).each { existing[it.projectId] = it }
+        }
+        Map<UUID, Role> roles = [:]
+        Lists.partition(memberships.values().findAll().flatten().unique() as List<UUID>, QUERY_BATCH_SIZE).each {
+            roleRepo.findAllById(it).each { roles[it.id] = it }
+        }
+
+        def isMember = { UUID projectId -> existing[projectId] && existing[projectId].state != MembershipState.Removed }
+        def changed = projectIds.findAll { !isMember(it) || memberships[it] != null }
+        // members may leave projects on their own
+        def leaving = { UUID projectId -> currentUser.id == userId && isMember(projectId) && memberships[projectId].isEmpty() }
+        canManageTeams(changed.findAll { !leaving(it) }.collect { projects[it] })
+
+        def now = ZonedDateTime.now()
+        def dispatch = invitationDispatcher.newBatch()
+        Map<UUID, Role> viewerRoles = [:]
+        changed.each { projectId ->
+            def project = projects[projectId]
+            def roleIds = memberships[projectId]
+            def membership = existing[projectId]
+            ChangeEventType change
+            if (!membership) {
+                membership = new TeamMembership(user, projectId, MembershipState.Active)
+                membership.role = roleIds ? highestRole(roleIds, project, roles) : viewerRoles.computeIfAbsent(project.organisationId) {
+                    roleManager.getUpdatedOrganisationRoles(it).find { it.roleType == RoleType.Viewer }
                 }
-                if(memberships[it].isEmpty()){
-                    removeMembership(it, userId)
-                } else {
-                    updateMembership(it, userId, new TeamMemberDTO(roleIds: memberships[it]))
+                entityManager.persist(membership)
+                dispatch.notifyInvite(user, project)
+                change = ChangeEventType.MembershipAdded
+            } else if (membership.state == MembershipState.Removed) {
+                membership.state = MembershipState.Active
+                if (roleIds) {
+                    membership.role = highestRole(roleIds, project, roles)
                 }
+                change = ChangeEventType.MembershipUpdated
+            } else if (roleIds.isEmpty()) {
+                membership.state = MembershipState.Removed
+                change = ChangeEventType.MembershipRemoved
             } else {
-                addUser(it, new TeamMemberDTO(userId: userId, roleIds: memberships[it]))
+                // like updateMembership with a TeamMemberDTO, whose state defaults to Active
+                membership.state = MembershipState.Active
+                membership.role = highestRole(roleIds, project, roles)
+                change = ChangeEventType.MembershipUpdated
             }
+            membership.lastModified = now
+            membership.lastModifiedBy = currentUser.id
+            changeEventOutbox.membershipChanged(change, membership)
+            permissionManager.evict(projectId)
         }
+        invitationDispatcher.dispatch(dispatch)
+        log.debug("Updated {} of {} memberships of User <{}>.", changed.size(), memberships.size(), userId)
     }
 
     /**
@@ -274,7 +379,9 @@ class TeamManager {
         member.state = MembershipState.Removed
         member.lastModified = ZonedDateTime.now()
         member.lastModifiedBy = sessionManager.currentUser.id
-        teamRepo.save(member)
+        def savedMember = teamRepo.save(member)
+        changeEventOutbox.membershipChanged(ChangeEventType.MembershipRemoved, savedMember)
+        permissionManager.evict(projectId)
     }
 
     @Transactional(readOnly = true)
@@ -309,20 +416,11 @@ class TeamManager {
         }
 
         if (!currentUser.admin && !currentUser.getSettings().isProjectCreator()) {
-            getProjectIdListFromUserId(user.getId()).stream().map {
-                def membership = teamRepo.findMember(user, it)
-                        .map { translate(it) }
-                        .orElse(translate(user, it))
-                return membership
-            }.sorted(teamMemberComparator(sort, sortDirection)).collect(Collectors.toList())
+            return translateMemberships(user, getProjectIdListFromUserId(user.getId()))
+                    .sort(teamMemberComparator(sort, sortDirection))
         } else {
-            return projectApi.getAllProjectsInCurrentOrganisation().stream().map {
-                def membership = teamRepo.findMember(user, it.id)
-                        .map { translate(it) }
-                        .orElse(translate(user, it.id))
-                membership.projectName = it.name
-                return membership
-            }.sorted(teamMemberComparator(sort, sortDirection)).collect(Collectors.toList())
+            return translateProjectMemberships(user, projectApi.getAllProjectsInCurrentOrganisation())
+                    .sort(teamMemberComparator(sort, sortDirection))
         }
     }
 
@@ -335,29 +433,59 @@ class TeamManager {
         }
 
         if (!currentUser.admin && !currentUser.getSettings().isProjectCreator()) {
-            return getProjectIdListFromUserId(user.getId(), page, size).content.collect {
-                def membership = teamRepo.findMember(user, it)
-                        .map { translate(it) }
-                        .orElse(translate(user, it))
-                return membership
-            }
+            return translateMemberships(user, getProjectIdListFromUserId(user.getId(), page, size).content)
         }
         if (search != null && !search.isEmpty()){
-            return projectApi.searchProject(page, size, search).collect {
-                def membership = teamRepo.findMember(user, it.id)
-                        .map { translate(it) }
-                        .orElse(translate(user, it.id))
-                membership.projectName = it.name
-                return membership
-            }
+            return translateProjectMemberships(user, projectApi.searchProject(page, size, search))
         }
 
-        return projectApi.getAllProjectsInCurrentOrganisation(page, size, Collections.emptyList()).collect {
-            def membership = teamRepo.findMember(user, it.id)
-                    .map { translate(it) }
-                    .orElse(translate(user, it.id))
-            membership.projectName = it.name
-            return membership
+        return translateProjectMemberships(user, projectApi.getAllProjectsInCurrentOrganisation(page, size, Collections.emptyList()))
+    }
+
+    /**
+     * Translates the memberships of a user in the given projects, including the project names. The projects'
+     * organisations are remembered for the permission checks, see {@link #translateMemberships(DocutoolsUser, List)}.
+     */
+    private List<TeamMemberDTO> translateProjectMemberships(DocutoolsUser user, Iterable<Project> projects) {
+        def projectList = projects.toList()
+        permissionManager.preloadProjectOrganisations(projectList.collectEntries { [(it.id): it.organisationId] })
+        def memberships = translateMemberships(user, projectList.collect { it.id })
+        memberships.eachWithIndex { TeamMemberDTO membership, int i -> membership.projectName = projectList[i].name }
+        return memberships
+    }
+
+    /**
+     * Translates the memberships of a user in the given projects, projects without membership are translated to
+     * {@link TeamMemberDTO}s without role. All memberships are loaded with one query (per 1000 projects) and the
+     * permissions of the current user are checked from memory.
+     *
+     * @param user the user.
+     * @param projectIds the projects.
+     * @return a {@link TeamMemberDTO} for every project, in the order of the projects.
+     */
+    private List<TeamMemberDTO> translateMemberships(DocutoolsUser user, List<UUID> projectIds) {
+        def currentUser = sessionManager.currentUser
+        Map<UUID, TeamMembership> memberships = [:]
+        Lists.partition(projectIds, QUERY_BATCH_SIZE).each { chunk ->
+            teamRepo.findMembersOfProjects([user.id], chunk).each { memberships[it.projectId] = it }
+        }
+        if (user.id == currentUser.id) {
+            permissionManager.preloadMemberships(projectIds, memberships.values())
+        }
+
+        def canEdit = currentUser.hasActiveAccount() && currentUser.isAdmin() && user.organisation.id == currentUser.organisation.id
+        return projectIds.collect { UUID projectId ->
+            def membership = memberships[projectId]
+            def dto = membership ? new TeamMemberDTO(membership) : new TeamMemberDTO(user, projectId)
+            def permissions = []
+            if (canEdit) {
+                permissions.add(TeamMemberPermissions.Edit)
+            }
+            if (permissionManager.hasPrivileges(projectId, Privilege.ManageTeam)) {
+                permissions.add(TeamMemberPermissions.Delete)
+            }
+            dto.permissions = permissions
+            return dto
         }
     }
 
@@ -436,6 +564,60 @@ class TeamManager {
         }
     }
 
+    /**
+     * Lists the projects a user is an active member of, one keyset slice at a time.
+     *
+     * @param userId the user's id
+     * @param size maximum number of project ids in the slice
+     * @param token continuation token of the previous slice or null for the first one
+     * @return the {@link ProjectIdSliceDTO}
+     */
+    @Transactional(readOnly = true)
+    ProjectIdSliceDTO getProjectIdSliceFromUserId(UUID userId, int size, String token) {
+        Assert.notNull(userId, "TeamManager.getProjectIdSliceFromUserId requires a user id.")
+        return getProjectIdSlice(userId, MembershipState.Active, size,
+                token ? MembershipCursor.decode(token) : MembershipCursor.first())
+    }
+
+    /**
+     * Lists the projects a user was removed from, one keyset slice at a time.
+     *
+     * @param userId the user's id
+     * @param size maximum number of project ids in the slice
+     * @param since only memberships removed after this instant, ignored when continuing with a token
+     * @param token continuation token of the previous slice or null for the first one
+     * @return the {@link ProjectIdSliceDTO}
+     */
+    @Transactional(readOnly = true)
+    ProjectIdSliceDTO getLeftProjectIdSliceFromUserId(UUID userId, int size, Instant since, String token) {
+        Assert.notNull(userId, "TeamManager.getLeftProjectIdSliceFromUserId requires a user id.")
+        def cursor = token ? MembershipCursor.decode(token)
+                : since != null ? MembershipCursor.after(since) : MembershipCursor.first()
+        return getProjectIdSlice(userId, MembershipState.Removed, size, cursor)
+    }
+
+    private ProjectIdSliceDTO getProjectIdSlice(UUID userId, MembershipState state, int size, MembershipCursor cursor) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw newInputValidationError("Slice size must be between 1 and ${MAX_PAGE_SIZE}.".toString())
+        }
+        def currentUser = sessionManager.currentUser
+        if (userId != currentUser.id && !currentUser.admin) {
+            throw newForbiddenError('User has no authority to list the user roles.')
+        }
+        // One extra row tells whether there is a next slice, without counting
+        List<Object[]> rows = teamRepo.findProjectIdSliceWithRolePresentForUser(userId, state.toString(),
+                cursor.lastModified, cursor.projectId, size + 1)
+        def hasNext = rows.size() > size
+        def slice = hasNext ? rows.subList(0, size) : rows
+        def projectIds = slice.collect { UUID.fromString(it[0] as String) }
+        String next = null
+        if (hasNext) {
+            def last = slice.last()
+            next = new MembershipCursor((last[1] as Timestamp).toInstant(), projectIds.last()).encode()
+        }
+        return new ProjectIdSliceDTO(projectIds, next)
+    }
+
 
 
     @Transactional(readOnly = true)
@@ -445,15 +627,7 @@ class TeamManager {
                                  TeamMemberSort sort,
                                  SortDirection sortDir) {
         def currentUser = sessionManager.currentUser
-        def project = projectApi.getProject(projectId)
-        if (currentUser.isUnprivileged() || project.organisationId != currentUser.organisation.id) {
-            boolean hasPrivilege = teamRepo.findMember(currentUser, projectId)
-                    .map { it.hasPrivilege(Privilege.ViewTeam, Privilege.ManageTeam) }
-                    .orElse(false)
-            if (!hasPrivilege) {
-                throw newUnprivilegedError("ViewTeam or ManageTeam")
-            }
-        }
+        canViewTeam(projectId, currentUser)
 
         def team = filterTeam(quickFilter, stateFilter, projectId, currentUser)
 
@@ -466,6 +640,63 @@ class TeamManager {
 
     }
 
+    /**
+     * Lists one page of a project's team. Filtering, sorting and the page window are applied by the database, the
+     * current user is always listed first.
+     *
+     * @param projectId the project's id
+     * @param page zero based page number
+     * @param size page size
+     * @return the {@link TeamMemberDTO}s of the page
+     */
+    @Transactional(readOnly = true)
+    List<TeamMemberDTO> listTeam(UUID projectId,
+                                 int page,
+                                 int size,
+                                 TeamQuickFilter quickFilter,
+                                 StateFilter stateFilter,
+                                 TeamMemberSort sort,
+                                 SortDirection sortDir) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw newInputValidationError("Page must not be negative and size must be between 1 and ${MAX_PAGE_SIZE}.".toString())
+        }
+        def currentUser = sessionManager.currentUser
+        canViewTeam(projectId, currentUser)
+
+        def states
+        switch (stateFilter) {
+            case StateFilter.Active:
+                states = [MembershipState.Active, MembershipState.Invited]
+                break
+            case StateFilter.Inactive:
+                states = [MembershipState.Inactive, MembershipState.Removed]
+                break
+            default:
+                states = MembershipState.values().toList()
+        }
+        return loadForListing(teamRepo.findTeamPageIds(projectId, states.collect { it.toString() },
+                (quickFilter ?: TeamQuickFilter.All).toString(), currentUser.organisation.id, currentUser.id,
+                (sort ?: TeamMemberSort.Name).toString(), (sortDir ?: SortDirection.ASC).toString(),
+                size, (long) page * size))
+                .collect { translate(it) }
+    }
+
+    private void canViewTeam(UUID projectId, DocutoolsUser currentUser) {
+        if (!mayViewTeam(projectId, currentUser)) {
+            throw newUnprivilegedError("ViewTeam or ManageTeam")
+        }
+    }
+
+    private boolean mayViewTeam(UUID projectId, DocutoolsUser currentUser) {
+        def project = loadProject(projectId)
+        if (currentUser.isUnprivileged() || project.organisationId != currentUser.organisation.id) {
+            return teamRepo.findMember(currentUser, projectId)
+                    .map { it.hasPrivilege(Privilege.ViewTeam, Privilege.ManageTeam) }
+                    .orElse(false)
+        }
+        return true
+    }
+
     static List<TeamMemberDTO> sortTeamMembers(List<TeamMemberDTO> members, TeamMemberSort sort, SortDirection sortDir){
         members.sort(teamMemberComparator(sort, sortDir))
         return members
@@ -514,13 +745,34 @@ class TeamManager {
     }
 
     /**
-     * Adds existing and new {@link DocutoolsUser}s as {@link TeamMembership}s to this project.
+     * Adds existing and new {@link DocutoolsUser}s as {@link TeamMembership}s to this project. Fails with the error of
+     * the first entry that could not be added, see {@link #inviteMembersInBulk} for per entry results.
      *
      * @param projectId the project's ID.
      * @param bulk the team members in Bulk.
      * @return list of added {@link TeamMembership}s as {@link TeamMemberDTO}
      */
     List<TeamMemberDTO> addMembersInBulk(UUID projectId, TeamMemberBulkDTO bulk) {
+        def results = inviteMembersInBulk(projectId, bulk)
+        def failed = results.find { it.status == TeamMemberBulkResultDTO.Status.Failed }
+        if (failed) {
+            throw failed.failure
+        }
+        return results.collect { it.member }
+    }
+
+    /**
+     * Adds existing and new {@link DocutoolsUser}s as {@link TeamMembership}s to this project. The team privileges are
+     * checked once, existing users and memberships are loaded with batched {@code IN} queries, new users and
+     * memberships are written with batched inserts. Invitation emails and notifications are sent in one go after the
+     * transaction committed.
+     *
+     * @param projectId the project's ID.
+     * @param bulk the team members in Bulk.
+     * @return one result per user id and email, in the order of the request (user ids first). Entries resolving to a
+     * user that was already given are reported as {@link TeamMemberBulkResultDTO.Status#Duplicate}.
+     */
+    List<TeamMemberBulkResultDTO> inviteMembersInBulk(UUID projectId, TeamMemberBulkDTO bulk) {
         Assert.notNull(bulk)
         log.debug("Adding {} team members to Project <{}>...", bulk.count(), projectId)
 
@@ -528,12 +780,12 @@ class TeamManager {
             log.debug("No entries found in TeamMemberBulkDTO, stopping import!")
             return []
         }
+        def project = loadProject(projectId)
+        canManageTeam(project)
         def state = bulk.active ? MembershipState.Active : MembershipState.Inactive
         log.debug("Settings all new team members to state <$state>.")
 
-        def project = projectApi.getProject(projectId)
-
-        def role
+        Role role
         if (!bulk.roleId) {
             role = roleManager.getUpdatedOrganisationRoles(project.organisationId).find {
                 it.roleType == RoleType.SubContractor
@@ -542,25 +794,134 @@ class TeamManager {
             role = roleRepo.findById(bulk.roleId)
                     .orElseThrow { newResourceNotFoundError('Role', bulk.roleId) }
         }
-
         if (role.organisation.id != project.organisationId) {
-            newForbiddenError()
+            throw newForbiddenError()
         }
         log.debug("Granting all new team members the role $role.name (id: $role.id)")
 
-        def addedUsers = bulk.collectUserIds {
-            addUser(projectId, new TeamMemberDTO(userId: it, state: state, roleIds: [role.id]))
-        }
-        log.debug("Added ${addedUsers.size()} existing users to the Project <$projectId>.")
+        // result -> user, entries without user either failed or were already handled by addUser
+        Map<TeamMemberBulkResultDTO, DocutoolsUser> users = new LinkedHashMap<>()
+        def userIdResults = resolveUserIds(projectId, bulk, state, role, users)
+        def emailResults = resolveEmails(bulk, users)
+        // a user given more than once, by id and email or repeatedly, is added once with its first entry
+        Set<UUID> seen = []
+        def duplicates = users.findAll { result, user -> !seen.add(user.id) }
+        duplicates.keySet().each { users.remove(it) }
 
-        def invitedUsers = bulk.collectEmails {
-            addUser(projectId, new TeamMemberDTO(email: it, state: state, roleIds: [role.id]))
+        def currentUser = sessionManager.currentUser
+        def dispatch = invitationDispatcher.newBatch()
+        Map<UUID, TeamMembership> memberships = [:]
+        Lists.partition(users.values().collect { it.id }.unique(), QUERY_BATCH_SIZE).each {
+            teamRepo.findMembers(it, projectId).each { memberships[it.user.id] = it }
         }
-        log.debug("Invited ${invitedUsers.size()} new users to the Project <$projectId>.")
+        def now = ZonedDateTime.now()
+        users.each { result, user ->
+            def membership = memberships[user.id]
+            if (membership) {
+                membership.state = state
+                membership.role = role
+                membership.lastModified = now
+                membership.lastModifiedBy = currentUser.id
+                changeEventOutbox.membershipChanged(ChangeEventType.MembershipUpdated, membership)
+                result.status = TeamMemberBulkResultDTO.Status.Updated
+            } else {
+                membership = new TeamMembership(user, projectId, state)
+                membership.role = role
+                membership.lastModified = now
+                membership.lastModifiedBy = currentUser.id
+                entityManager.persist(membership)
+                changeEventOutbox.membershipChanged(ChangeEventType.MembershipAdded, membership)
+                memberships[user.id] = membership
+                if (user.isNewCreated) {
+                    user.invitedBy = currentUser
+                    dispatch.inviteToProject(currentUser, user, project)
+                    result.status = TeamMemberBulkResultDTO.Status.Invited
+                } else {
+                    dispatch.notifyInvite(user, project)
+                    result.status = TeamMemberBulkResultDTO.Status.Added
+                }
+            }
+        }
+        entityManager.flush()
+        permissionManager.evict(projectId)
+        users.each { result, user -> result.member = translate(memberships[user.id]) }
+        duplicates.each { result, user ->
+            result.status = TeamMemberBulkResultDTO.Status.Duplicate
+            result.member = translate(memberships[user.id])
+        }
+        invitationDispatcher.dispatch(dispatch)
 
-        return addedUsers + invitedUsers
+        def results = userIdResults + emailResults
+        log.debug("Added {} of {} team members to the Project <{}>.",
+                results.count { it.status != TeamMemberBulkResultDTO.Status.Failed }, results.size(), projectId)
+        return results
+    }
+
+    private List<TeamMemberBulkResultDTO> resolveUserIds(UUID projectId, TeamMemberBulkDTO bulk, MembershipState state,
+                                                         Role role, Map<TeamMemberBulkResultDTO, DocutoolsUser> users) {
+        def userIds = bulk.userIds ?: []
+        Map<UUID, DocutoolsUser> existing = [:]
+        Lists.partition(userIds.unique(false), QUERY_BATCH_SIZE).each {
+            userRepo.findAllById(it).each { existing[it.id] = it }
+        }
+        userIds.collect { userId ->
+            def result = new TeamMemberBulkResultDTO(userId as String)
+            def user = existing[userId]
+            if (user) {
+                users[result] = user
+                return result
+            }
+            // Contacts are rare in bulk invites, they are turned into users one by one
+            try {
+                result.member = addUser(projectId, new TeamMemberDTO(userId: userId, state: state, roleIds: [role.id]))
+                result.status = TeamMemberBulkResultDTO.Status.Added
+            } catch (ApiException e) {
+                result.fail(e)
+            }
+            return result
+        }
     }
 
+    private List<TeamMemberBulkResultDTO> resolveEmails(TeamMemberBulkDTO bulk, Map<TeamMemberBulkResultDTO, DocutoolsUser> users) {
+        def results = (bulk.emails ?: []).collect { new TeamMemberBulkResultDTO(it) }
+        Map<TeamMemberBulkResultDTO, String> valid = [:]
+        results.each {
+            def email = it.entry?.trim()
+            if (StringUtils.isEmpty(email) || !Validator.isValidEmail(email)) {
+                it.fail(newBadRequestError(INVALID_RESOURCE, "Email: <$it.entry>"))
+            } else {
+                valid[it] = email
+            }
+        }
+
+        Map<String, DocutoolsUser> existing = [:]
+        Lists.partition(valid.values().collect { it.toLowerCase() }.unique(), QUERY_BATCH_SIZE).each {
+            def found = userRepo.findAllByUsernameIgnoreCase(it)
+            // a username match wins over a user having the address as contact email
+            found.each { user -> existing.putIfAbsent(user.username.toLowerCase(), user) }
+            found.findAll { it.email }.each { user -> existing.putIfAbsent(user.email.toLowerCase(), user) }
+        }
+
+        Map<String, List<TeamMemberBulkResultDTO>> missing = new LinkedHashMap<>()
+        valid.each { result, email ->
+            def user = existing[email.toLowerCase()]
+            if (user) {
+                users[result] = user
+            } else if (blockedEmails.isBlocked(email)) {
+                result.fail(newBadRequestError(EMAIL_BLOCKED))
+            } else {
+                missing.computeIfAbsent(email.toLowerCase()) { [] } << result
+            }
+        }
+        if (missing) {
+            def entries = missing.values().toList()
+            def created = userManager.createInvitedUsers(entries.collect { valid[it.first()] })
+            entries.eachWithIndex { List<TeamMemberBulkResultDTO> sameEmail, int i ->
+                sameEmail.each { users[it] = created[i] }
+            }
+        }
+        return results
+    }
     /**
      * Adds the current user (project creator) to the project as a team member
      * The current user has to be the project creator calling this method
@@ -573,7 +934,12 @@ class TeamManager {
         TeamMembership membership = new TeamMembership(currentUser, projectId, MembershipState.Active)
         membership.role = roleManager.getUpdatedOrganisationRoles(currentUser.organisation)
             .find {it.roleType == RoleType.PowerUser}
-        return translate(teamRepo.save(membership))
+        membership.lastModified = ZonedDateTime.now()
+        membership.lastModifiedBy = currentUser.id
+        def savedMembership = teamRepo.save(membership)
+        changeEventOutbox.membershipChanged(ChangeEventType.MembershipAdded, savedMembership)
+        permissionManager.evict(projectId)
+        return translate(savedMembership)
     }
 
     private List<TeamMembership> filterTeam(TeamQuickFilter quickFilter, StateFilter stateFilter, UUID projectId, DocutoolsUser currentUser) {
@@ -610,8 +976,9 @@ class TeamManager {
         }
     }
 
-    private Project loadProject(UUID projectId) {
-        projectApi.getProject(projectId)
+    // Goes through the current user's token, the projects service checks that the user may see the project
+    private ProjectMetadata loadProject(UUID projectId) {
+        projectMetadataCache.getVisible(projectId) { projectApi.getProject(projectId) }
     }
 
     private DocutoolsUser loadUser(UUID userId) {
@@ -619,7 +986,7 @@ class TeamManager {
                 .orElseThrow { newBadRequestError(USER_NOT_FOUND) }
     }
 
-    private void canManageTeam(Project project) {
+    private void canManageTeam(ProjectMetadata project) {
         def currentUser = sessionManager.currentUser
         if(project.organisationId == currentUser.organisation.id && (currentUser.admin || currentUser.settings.projectCreator))
             return
@@ -631,9 +998,50 @@ class TeamManager {
         }
     }
 
-    private Role loadRole(UUID roleId, Project project) {
+    /**
+     * Bulk variant of {@link #canManageTeam}, only the projects outside the current user's organisation or of
+     * unprivileged users need the current user's memberships, which are loaded in batches.
+     */
+    private void canManageTeams(Collection<ProjectMetadata> projects) {
+        def currentUser = sessionManager.currentUser
+        def privileged = currentUser.admin || currentUser.settings.projectCreator
+        def others = projects.findAll { !(privileged && it.organisationId == currentUser.organisation.id) }
+        if (!others) {
+            return
+        }
+        Map<UUID, TeamMembership> own = [:]
+        Lists.partition(others.collect { it.id }, QUERY_BATCH_SIZE).each {
+            teamRepo.findMembersOfProjects([currentUser.id], it).each { own[it.projectId] = it }
+        }
+        others.each {
+            def membership = own[it.id]
+            if (!membership) {
+                throw newForbiddenError()
+            }
+            if (!membership.hasPrivilege(Privilege.ManageTeam)) {
+                throw newForbiddenError("ManageTeam")
+            }
+        }
+    }
+
+    private Role loadRole(UUID roleId, ProjectMetadata project) {
         def role = roleRepo.findById(roleId)
                 .orElseThrow { newBadRequestError(RESOURCE_NOT_FOUND, "Role") }
+        checkRole(role, project)
+    }
+
+    // Bulk variant of loadRole for preloaded roles, picks the highest one like addUser and updateMembership
+    private Role highestRole(List<UUID> roleIds, ProjectMetadata project, Map<UUID, Role> roles) {
+        roleIds.collect {
+            def role = roles[it]
+            if (!role) {
+                throw newBadRequestError(RESOURCE_NOT_FOUND, "Role")
+            }
+            checkRole(role, project)
+        }.max { it.roleType.order }
+    }
+
+    private Role checkRole(Role role, ProjectMetadata project) {
         if (role.organisation.id != project.organisationId) {
             throw newBadRequestError(DIFFERENT_ORGANISATION)
         }
@@ -641,42 +1049,55 @@ class TeamManager {
     }
 
     @Transactional(readOnly = true)
-    List<TeamMemberDTO> searchTeamMembers(UUID projectId, String searchText) {
+    List<TeamMemberDTO> searchTeamMembers(UUID projectId, String searchText, TeamSearchMode mode = TeamSearchMode.Contains) {
         if (StringUtils.isEmpty(searchText)) {
             return Collections.emptyList()
         }
         def currentUser = sessionManager.currentUser
-        def project = projectApi.getProject(projectId)
-        if (currentUser.isUnprivileged() || project.organisationId != currentUser.organisation.id) {
-            boolean hasPrivilege = teamRepo.findMember(currentUser, projectId)
-                    .map { it.hasPrivilege(Privilege.ViewTeam, Privilege.ManageTeam) }
-                    .orElse(false)
-            if (!hasPrivilege) {
-               return Collections.emptyList()
-            }
+        if (!mayViewTeam(projectId, currentUser)) {
+            return Collections.emptyList()
         }
-        teamRepo.searchTeamMembers(projectId, searchText).collect { translate(it) }
+        if (mode == TeamSearchMode.Similarity) {
+            return searchTeamMembersBySimilarity(projectId, searchText, Integer.MAX_VALUE, 0L)
+        }
+        loadForListing(teamRepo.searchTeamMemberIds(projectId, searchText)).collect { translate(it) }
     }
 
     @Transactional(readOnly = true)
-    Page<TeamMemberDTO> searchTeamMembers(UUID projectId, String searchText, int page, int size) {
+    Page<TeamMemberDTO> searchTeamMembers(UUID projectId, String searchText, int page, int size,
+                                          TeamSearchMode mode = TeamSearchMode.Contains) {
         if (StringUtils.isEmpty(searchText)) {
             return new PageImpl<>(Collections.emptyList())
         }
         def currentUser = sessionManager.currentUser
-        def project = projectApi.getProject(projectId)
-        if (currentUser.isUnprivileged() || project.organisationId != currentUser.organisation.id) {
-            boolean hasPrivilege = teamRepo.findMember(currentUser, projectId)
-                    .map { it.hasPrivilege(Privilege.ViewTeam, Privilege.ManageTeam) }
-                    .orElse(false)
-            if (!hasPrivilege) {
-                return new PageImpl<>(Collections.emptyList())
-            }
+        if (!mayViewTeam(projectId, currentUser)) {
+            return new PageImpl<>(Collections.emptyList())
+        }
+        if (mode == TeamSearchMode.Similarity) {
+            return new PageImpl<>(searchTeamMembersBySimilarity(projectId, searchText, size, (long) page * size))
         }
-        def memberDTOS = teamRepo.searchTeamMembers(projectId, searchText, PageRequest.of(page, size)).collect { translate(it) }
+        def memberDTOS = loadForListing(teamRepo.searchTeamMemberIds(projectId, searchText, PageRequest.of(page, size)))
+                .collect { translate(it) }
         return new PageImpl<>(memberDTOS)
     }
 
+    private List<TeamMemberDTO> searchTeamMembersBySimilarity(UUID projectId, String searchText, int limit, long offset) {
+        def normalized = searchText.trim().toLowerCase(Locale.ROOT)
+        def pattern = '%' + normalized.replace('\\', '\\\\').replace('%', '\\%').replace('_', '\\_') + '%'
+        loadForListing(teamRepo.searchTeamMemberIdsBySimilarity(projectId, normalized, pattern, limit, offset))
+                .collect { translate(it) }
+    }
+
+    // The native listing queries only select ids, the members are fetched with their users in one query per batch
+    private List<TeamMembership> loadForListing(List<String> ids) {
+        List<UUID> membershipIds = ids.collect { UUID.fromString(it) }
+        Map<UUID, TeamMembership> memberships = [:]
+        Lists.partition(membershipIds, QUERY_BATCH_SIZE).each { chunk ->
+            teamRepo.findAllForListing(chunk).each { memberships[it.id] = it }
+        }
+        return membershipIds.collect { memberships[it] }
+    }
+
     @Transactional(readOnly = true)
     TeamMemberDTO getTeamMembership(UUID projectId, UUID userId) {
         Assert.notNull(projectId, "TeamManager.getTeamMembership requires a project id.")
@@ -0,0 +1,59 @@
+package com.docutools.team
+
+import com.docutools.apierrors.ApiException
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.fasterxml.jackson.annotation.JsonInclude
+import io.swagger.annotations.ApiModel
+import io.swagger.annotations.ApiModelProperty
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(value = "Team Member Bulk Result Resource")
+class TeamMemberBulkResultDTO {
+
+    enum Status {
+        /**
+         * An existing user was added to the team.
+         */
+        Added,
+        /**
+         * A new user was created and invited to the team.
+         */
+        Invited,
+        /**
+         * The user already had a membership, its state and role were updated.
+         */
+        Updated,
+        /**
+         * The entry resolved to a user given earlier in the request, it was handled with that entry.
+         */
+        Duplicate,
+        /**
+         * The entry could not be added, see error.
+         */
+        Failed
+    }
+
+    @ApiModelProperty(value = "The user id or email as given in the request")
+    String entry
+    @ApiModelProperty(value = "What happened to the entry")
+    Status status
+    @ApiModelProperty(value = "The resulting team member, unless the entry failed")
+    TeamMemberDTO member
+    @ApiModelProperty(value = "Why the entry failed")
+    String error
+    @JsonIgnore
+    ApiException failure
+
+    TeamMemberBulkResultDTO() {
+    }
+
+    TeamMemberBulkResultDTO(String entry) {
+        this.entry = entry
+    }
+
+    void fail(ApiException failure) {
+        this.status = Status.Failed
+        this.failure = failure
+        this.error = failure.message
+    }
+}
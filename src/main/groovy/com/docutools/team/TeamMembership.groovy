@@ -16,6 +16,9 @@ import javax.persistence.JoinColumn
 import javax.persistence.JoinTable
 import javax.persistence.ManyToMany
 import javax.persistence.ManyToOne
+import javax.persistence.NamedAttributeNode
+import javax.persistence.NamedEntityGraph
+import javax.persistence.NamedSubgraph
 import javax.persistence.Table
 import javax.persistence.UniqueConstraint
 import java.time.ZonedDateTime
@@ -28,8 +31,18 @@ import static com.docutools.exceptions.ExceptionHelper.*;
 @Entity
 @Table(name = 'team_memberships',
     uniqueConstraints = [@UniqueConstraint(columnNames = ['project_id', 'user_id'])])
+@NamedEntityGraph(name = TeamMembership.LISTING_GRAPH,
+        attributeNodes = [@NamedAttributeNode(value = 'user', subgraph = 'user'), @NamedAttributeNode('role')],
+        subgraphs = [@NamedSubgraph(name = 'user', attributeNodes = [@NamedAttributeNode(value = 'organisation', subgraph = 'organisation'),
+                                                                      @NamedAttributeNode('organisationName'),
+                                                                      @NamedAttributeNode(value = 'account', subgraph = 'account')]),
+                @NamedSubgraph(name = 'organisation', attributeNodes = [@NamedAttributeNode('subscription'), @NamedAttributeNode('owner')]),
+                @NamedSubgraph(name = 'account', attributeNodes = [@NamedAttributeNode('subscription')])])
 class TeamMembership {
 
+    // The members with everything TeamMemberDTO reads, like DocutoolsUser.LISTING_GRAPH
+    public static final String LISTING_GRAPH = 'TeamMembership.listing'
+
     @Id
     @Type(type = 'pg-uuid')
     private UUID id = UUID.randomUUID()
@@ -4,10 +4,13 @@ import com.docutools.users.DocutoolsUser
 import com.docutools.users.Organisation
 import org.springframework.data.domain.Page
 import org.springframework.data.domain.Pageable
+import org.springframework.data.jpa.repository.EntityGraph
 import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.jpa.repository.Modifying
 import org.springframework.data.jpa.repository.Query
 import org.springframework.data.repository.query.Param
 
+import java.sql.Timestamp
 import java.time.ZonedDateTime
 import java.util.stream.Stream
 
@@ -21,36 +24,44 @@ interface TeamMembershipRepo extends JpaRepository<TeamMembership, UUID> {
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user = :user')
     Optional<TeamMembership> findMemberAnyState(@Param("user") DocutoolsUser user, @Param("id") UUID projectId)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     Stream<TeamMembership> findByProjectId(UUID projectId);
     Stream<TeamMembership> findByProjectIdAndStateIsNot(UUID projectId, MembershipState excludeState)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.state != \'Removed\'')
     List<TeamMembership> findTeam(@Param('id') UUID project)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.state in :states')
     List<TeamMembership> findTeamByState(@Param('id') UUID project, @Param('states') List<MembershipState> states)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user.organisation = :org')
     List<TeamMembership> filterTeamByMyCompany(@Param('id') UUID project, @Param('org') Organisation org)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user.organisation = :org AND tm.state in :states')
     List<TeamMembership> filterTeamByMyCompanyAndState(@Param('id') UUID project, @Param('org') Organisation org, @Param('states') List<MembershipState> states)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user.organisation != :org ')
     List<TeamMembership> filterByOtherCompanies(@Param('id') UUID project, @Param('org') Organisation org)
 
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user.organisation != :org AND tm.state in :states')
     List<TeamMembership> filterByOtherCompaniesAndState(@Param('id') UUID project, @Param('org') Organisation org, @Param('states') List<MembershipState> states)
 
-    @Query(value = """select t.* from docutools_users AS u inner join team_memberships AS t on t.user_id = u.id 
+    // The listing queries below only select membership ids, see findAllForListing
+    @Query(value = """select CAST(t.id AS VARCHAR) from docutools_users AS u inner join team_memberships AS t on t.user_id = u.id 
                     inner join organisations as o on o.id = u.organisation_id 
                     where t.project_id=:projectId AND t.state='Active' AND (u.first_name ilike %:searchText% OR 
                     u.last_name ilike %:searchText% OR u.username ilike %:searchText%
                     OR u.job_title ilike %:searchText% OR o.name  ilike %:searchText%)""", nativeQuery = true)
-    List<TeamMembership> searchTeamMembers(@Param('projectId') UUID project,
-                                           @Param('searchText') String searchText)
+    List<String> searchTeamMemberIds(@Param('projectId') UUID project,
+                                     @Param('searchText') String searchText)
 
-    @Query(value = """select t.* from docutools_users AS u inner join team_memberships AS t on t.user_id = u.id 
+    @Query(value = """select CAST(t.id AS VARCHAR) from docutools_users AS u inner join team_memberships AS t on t.user_id = u.id 
                     inner join organisations as o on o.id = u.organisation_id 
                     where t.project_id=:projectId AND t.state='Active' AND (u.first_name ilike %:searchText% OR 
                     u.last_name ilike %:searchText% OR u.username ilike %:searchText%
@@ -61,9 +72,89 @@ interface TeamMembershipRepo extends JpaRepository<TeamMembership, UUID> {
                     u.last_name ilike %:searchText% OR u.username ilike %:searchText%
                     OR u.job_title ilike %:searchText% OR o.name  ilike %:searchText%)""",
             nativeQuery = true)
-    List<TeamMembership> searchTeamMembers(@Param('projectId') UUID project,
-                                           @Param('searchText') String searchText,
-                                           Pageable pageable)
+    List<String> searchTeamMemberIds(@Param('projectId') UUID project,
+                                     @Param('searchText') String searchText,
+                                     Pageable pageable)
+
+    /**
+     * Searches the active members of a project by substring or trigram word similarity of their names, username, job
+     * title and organisation name, best matches first. Backed by the pg_trgm indexes of V51.
+     *
+     * @param searchText the lower case search text
+     * @param pattern the lower case search text as LIKE pattern, i.e. escaped and wrapped in %
+     */
+    @Query(value = """select CAST(t.id AS VARCHAR) from team_memberships t
+                    inner join docutools_users u on u.id = t.user_id
+                    inner join organisations o on o.id = u.organisation_id
+                    where t.project_id = :projectId and t.state = 'Active'
+                    and (lower(u.first_name || ' ' || u.last_name || ' ' || u.username || ' ' || coalesce(u.job_title, '')) like :pattern
+                        or :searchText <% lower(u.first_name || ' ' || u.last_name || ' ' || u.username || ' ' || coalesce(u.job_title, ''))
+                        or lower(o.name) like :pattern
+                        or :searchText <% lower(o.name))
+                    order by greatest(word_similarity(:searchText, lower(u.first_name || ' ' || u.last_name || ' ' || u.username || ' ' || coalesce(u.job_title, ''))),
+                                      word_similarity(:searchText, lower(o.name))) desc, t.id
+                    limit :limit offset :offset""", nativeQuery = true)
+    List<String> searchTeamMemberIdsBySimilarity(@Param('projectId') UUID projectId,
+                                                 @Param('searchText') String searchText,
+                                                 @Param('pattern') String pattern,
+                                                 @Param('limit') int limit,
+                                                 @Param('offset') long offset)
+
+    /**
+     * One page of a project's team, filtered and sorted like {@link TeamManager#sortTeamMembers}, with the current user
+     * always first. The sort key and direction are passed as the names of {@link TeamMemberSort} and
+     * {@link com.docutools.services.core.resources.SortDirection}; ties are broken by the membership id so pages are
+     * stable. The role orders in the query mirror {@link com.docutools.roles.RoleType#getOrder()}, memberships from before
+     * V13 are ranked by their highest role in role_assignments like {@link TeamMembership#getRole()}.
+     *
+     * @param quickFilter name of the {@link TeamQuickFilter}, {@code organisationId} is the current user's organisation
+     * @param states names of the {@link MembershipState}s to include
+     */
+    @Query(value = """select CAST(t.id AS VARCHAR) from team_memberships t
+                    inner join docutools_users u on u.id = t.user_id
+                    inner join organisations o on o.id = u.organisation_id
+                    left join organisation_names n on n.id = u.organisation_name_id
+                    left join accounts a on a.user_id = u.id
+                    left join subscriptions s on s.id = a.subscription_id
+                    left join roles r on r.id = coalesce(t.role_id, (select ra.role_id from role_assignments ra join roles ar on ar.id = ra.role_id
+                        where ra.member_id = t.id order by case ar.role_type when 'PowerUser' then 10 when 'Custom' then 10
+                        when 'Assistant' then 5 when 'Viewer' then 0 else 1 end desc limit 1))
+                    where t.project_id = :projectId and t.state in (:states)
+                    and (:quickFilter = 'All' or (:quickFilter = 'MyCompany') = (u.organisation_id = :organisationId))
+                    order by t.user_id = :currentUserId desc,
+                    case when :sortDir = 'DESC' then null else case :sort
+                        when 'Name' then lower(u.first_name || ' ' || u.last_name)
+                        when 'Company' then lower(coalesce(n.name, o.name))
+                        when 'License' then lower(coalesce(s.type, 'Test')) end end asc,
+                    case when :sortDir = 'DESC' then case :sort
+                        when 'Name' then lower(u.first_name || ' ' || u.last_name)
+                        when 'Company' then lower(coalesce(n.name, o.name))
+                        when 'License' then lower(coalesce(s.type, 'Test')) end end desc,
+                    case when :sortDir = 'DESC' then null else case :sort
+                        when 'Role' then (case when r.id is not null then -(case r.role_type when 'PowerUser' then 10 when 'Custom' then 10 when 'Assistant' then 5 when 'Viewer' then 0 else 1 end) end)
+                        when 'Status' then (case when t.state = 'Active' and u.verification_required then 2 when t.state = 'Active' then 0 when t.state = 'Inactive' then 1 when t.state = 'Invited' then 2 else 3 end) end end asc,
+                    case when :sortDir = 'DESC' then case :sort
+                        when 'Role' then (case when r.id is not null then -(case r.role_type when 'PowerUser' then 10 when 'Custom' then 10 when 'Assistant' then 5 when 'Viewer' then 0 else 1 end) end)
+                        when 'Status' then (case when t.state = 'Active' and u.verification_required then 2 when t.state = 'Active' then 0 when t.state = 'Inactive' then 1 when t.state = 'Invited' then 2 else 3 end) end end desc,
+                    t.id
+                    limit :limit offset :offset""", nativeQuery = true)
+    List<String> findTeamPageIds(@Param('projectId') UUID projectId,
+                                 @Param('states') List<String> states,
+                                 @Param('quickFilter') String quickFilter,
+                                 @Param('organisationId') UUID organisationId,
+                                 @Param('currentUserId') UUID currentUserId,
+                                 @Param('sort') String sort,
+                                 @Param('sortDir') String sortDir,
+                                 @Param('limit') int limit,
+                                 @Param('offset') long offset)
+
+    /**
+     * Loads memberships found by the id-only listing queries, in no particular order, with their users and everything
+     * {@link TeamMemberDTO} reads in one query.
+     */
+    @EntityGraph(TeamMembership.LISTING_GRAPH)
+    @Query('SELECT tm FROM TeamMembership tm WHERE tm.id IN :ids')
+    List<TeamMembership> findAllForListing(@Param('ids') Collection<UUID> ids)
 
     Stream<TeamMembership> findByUser(DocutoolsUser user)
 
@@ -80,9 +171,71 @@ interface TeamMembershipRepo extends JpaRepository<TeamMembership, UUID> {
     @Query(value = "select CAST(m.project_id AS VARCHAR) from team_memberships m, docutools_users u where m.user_id = u.id and u.id=:userId and m.state =:state and m.last_modified >:since and (m.role_id is not null or exists(select 1 from role_assignments r where r.member_id=m.id))", nativeQuery = true)
     Stream<String> findProjectIdListFromRemovedMembershipsSinceWithRolePresentForUser(@Param('userId') UUID userId, @Param('state') String state, @Param('since') ZonedDateTime since)
 
+    /**
+     * Keyset page of the project ids of a user's memberships, ordered by (last_modified, project_id) and backed by
+     * team_memberships_user_state_modified_project_index.
+     *
+     * @return up to {@code limit} rows of project id (as text) and last_modified, both strictly after the given position
+     */
+    @Query(value = """select CAST(m.project_id AS VARCHAR), COALESCE(m.last_modified, TIMESTAMP '1970-01-01 00:00:00') from team_memberships m
+                    where m.user_id = :userId and m.state = :state
+                    and (COALESCE(m.last_modified, TIMESTAMP '1970-01-01 00:00:00'), m.project_id) > (:afterModified, :afterProjectId)
+                    and (m.role_id is not null or exists(select 1 from role_assignments r where r.member_id=m.id))
+                    order by COALESCE(m.last_modified, TIMESTAMP '1970-01-01 00:00:00'), m.project_id
+                    limit :limit""", nativeQuery = true)
+    List<Object[]> findProjectIdSliceWithRolePresentForUser(@Param('userId') UUID userId,
+                                                            @Param('state') String state,
+                                                            @Param('afterModified') Timestamp afterModified,
+                                                            @Param('afterProjectId') UUID afterProjectId,
+                                                            @Param('limit') int limit)
+
     @Query('SELECT tm FROM TeamMembership tm WHERE tm.projectId = :id AND tm.user.id = :userId')
     Optional<TeamMembership> findMembership(@Param("userId") UUID userId, @Param("id") UUID projectId)
 
+    @Query('SELECT tm FROM TeamMembership tm WHERE tm.user.id = :userId AND tm.projectId IN :projectIds')
+    List<TeamMembership> findMembershipsOfUser(@Param("userId") UUID userId, @Param("projectIds") Collection<UUID> projectIds)
+
+    // projectIds is an array literal, see SqlArrays.uuidArray
+    @Query(value = """SELECT t.* FROM team_memberships t WHERE t.user_id = :userId
+                       AND t.project_id = ANY(CAST(:projectIds AS uuid[])) AND t.state != 'Removed'""", nativeQuery = true)
+    List<TeamMembership> findMembershipsOfUserInProjects(@Param("userId") UUID userId, @Param("projectIds") String projectIds)
+
     @Query(value = """select t.* from team_memberships t where t.user_id in :userIds and t.project_id= :projectId""", nativeQuery = true)
     List<TeamMembership> findMembers(@Param("userIds") List<UUID> userIds, @Param("projectId") UUID projectId)
-}
\ No newline at end of file
+
+    @Query('SELECT tm.user.id FROM TeamMembership tm WHERE tm.projectId = :projectId AND tm.state != \'Removed\'')
+    List<UUID> findUserIdsOfTeam(@Param('projectId') UUID projectId)
+
+    // Set based copies of memberships with their role, copyTeam skips Removed members like findTeam. Memberships from
+    // before V13 have no role_id, like TeamMembership.getRole they get their highest order role from role_assignments.
+    @Modifying
+    @Query(value = """insert into team_memberships (id, user_id, project_id, invited, last_modified, state, role_id)
+        select gen_random_uuid(), t.user_id, :to, now(), now(), t.state,
+            coalesce(t.role_id, (select ra.role_id from role_assignments ra join roles r on r.id = ra.role_id
+                where ra.member_id = t.id order by case r.role_type when 'PowerUser' then 10 when 'Custom' then 10
+                when 'Assistant' then 5 when 'Viewer' then 0 else 1 end desc limit 1))
+        from team_memberships t
+        where t.project_id = :from and t.state != 'Removed'""", nativeQuery = true)
+    int copyTeam(@Param("from") UUID from, @Param("to") UUID to)
+
+    @Modifying
+    @Query(value = """insert into team_memberships (id, user_id, project_id, invited, last_modified, state, role_id)
+        select gen_random_uuid(), t.user_id, :to, now(), now(), t.state,
+            coalesce(t.role_id, (select ra.role_id from role_assignments ra join roles r on r.id = ra.role_id
+                where ra.member_id = t.id order by case r.role_type when 'PowerUser' then 10 when 'Custom' then 10
+                when 'Assistant' then 5 when 'Viewer' then 0 else 1 end desc limit 1))
+        from team_memberships t
+        where t.project_id = :from and t.user_id in :userIds""", nativeQuery = true)
+    int copyMembers(@Param("from") UUID from, @Param("to") UUID to, @Param("userIds") Collection<UUID> userIds)
+
+    @Query('SELECT tm FROM TeamMembership tm WHERE tm.user.id IN :userIds AND tm.projectId IN :projectIds AND tm.state != \'Removed\'')
+    List<TeamMembership> findMembersOfProjects(@Param("userIds") Collection<UUID> userIds,
+                                               @Param("projectIds") Collection<UUID> projectIds)
+
+    // Assignee delta sync, a member changes with its membership or its user, see V53__assignee_delta_indexes.sql
+    @Query('SELECT tm FROM TeamMembership tm JOIN FETCH tm.user WHERE tm.projectId = :projectId AND tm.lastModified > :since')
+    List<TeamMembership> findModifiedSince(@Param('projectId') UUID projectId, @Param('since') ZonedDateTime since)
+
+    @Query('SELECT tm FROM TeamMembership tm JOIN FETCH tm.user u WHERE tm.projectId = :projectId AND u.lastModified > :since')
+    List<TeamMembership> findWithUserModifiedSince(@Param('projectId') UUID projectId, @Param('since') ZonedDateTime since)
+}
@@ -0,0 +1,15 @@
+package com.docutools.team
+
+/**
+ * How {@link TeamManager#searchTeamMembers} matches the search text.
+ */
+enum TeamSearchMode {
+    /**
+     * Case insensitive substring match on names, username, job title and organisation name.
+     */
+    Contains,
+    /**
+     * Substring or trigram similarity match on the same fields, best matches first.
+     */
+    Similarity
+}
@@ -0,0 +1,81 @@
+package com.docutools.users;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Remembers the {@link DocutoolsUser} {@link SessionManager} resolved for the current principal, so it is only loaded
+ * once per request. Outside of a request the context is bound to the current transaction, without either every call
+ * gets a fresh, throw-away context.
+ */
+class CurrentUserContext {
+
+    private static final String ATTRIBUTE_NAME = CurrentUserContext.class.getName();
+
+    private String principal;
+    private DocutoolsUser user;
+    private int lookups;
+    private int avoidedLookups;
+
+    /**
+     * Gets the context bound to the current request or transaction or a new unbound one.
+     *
+     * @param onCompletion called with the context when the request or transaction it is bound to completes
+     * @return the {@link CurrentUserContext}
+     */
+    static CurrentUserContext current(Consumer<CurrentUserContext> onCompletion) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            CurrentUserContext context = (CurrentUserContext) attributes.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+            if (context == null) {
+                CurrentUserContext newContext = new CurrentUserContext();
+                attributes.setAttribute(ATTRIBUTE_NAME, newContext, RequestAttributes.SCOPE_REQUEST);
+                attributes.registerDestructionCallback(ATTRIBUTE_NAME, () -> onCompletion.accept(newContext), RequestAttributes.SCOPE_REQUEST);
+                context = newContext;
+            }
+            return context;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            CurrentUserContext context = (CurrentUserContext) TransactionSynchronizationManager.getResource(ATTRIBUTE_NAME);
+            if (context == null) {
+                CurrentUserContext newContext = new CurrentUserContext();
+                TransactionSynchronizationManager.bindResource(ATTRIBUTE_NAME, newContext);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(ATTRIBUTE_NAME);
+                        onCompletion.accept(newContext);
+                    }
+                });
+                context = newContext;
+            }
+            return context;
+        }
+        return new CurrentUserContext();
+    }
+
+    DocutoolsUser resolve(String principal, Function<String, DocutoolsUser> loader) {
+        if (user != null && Objects.equals(this.principal, principal)) {
+            avoidedLookups++;
+            return user;
+        }
+        lookups++;
+        user = loader.apply(principal);
+        this.principal = principal;
+        return user;
+    }
+
+    int getLookups() {
+        return lookups;
+    }
+
+    int getAvoidedLookups() {
+        return avoidedLookups;
+    }
+}
@@ -6,7 +6,6 @@ import com.docutools.subscriptions.Account
 import com.docutools.users.values.ChecksumAlgorithm
 import com.docutools.users.values.Password
 import com.docutools.users.values.PersonName
-import com.docutools.users.values.ProfilePicture
 import com.docutools.users.values.UserSettings
 import com.docutools.users.values.UserType
 import com.docutools.users.values.VerificationStatus
@@ -24,6 +23,9 @@ import javax.persistence.Enumerated
 import javax.persistence.Id
 import javax.persistence.JoinColumn
 import javax.persistence.ManyToOne
+import javax.persistence.NamedAttributeNode
+import javax.persistence.NamedEntityGraph
+import javax.persistence.NamedSubgraph
 import javax.persistence.OneToOne
 import javax.persistence.PrePersist
 import javax.persistence.Table
@@ -38,9 +40,18 @@ import static javax.persistence.FetchType.LAZY
  */
 @Entity
 @Table(name = 'docutools_users')
+@NamedEntityGraph(name = DocutoolsUser.LISTING_GRAPH,
+        attributeNodes = [@NamedAttributeNode(value = 'organisation', subgraph = 'organisation'),
+                @NamedAttributeNode('organisationName'),
+                @NamedAttributeNode(value = 'account', subgraph = 'account')],
+        subgraphs = [@NamedSubgraph(name = 'organisation', attributeNodes = [@NamedAttributeNode('subscription'), @NamedAttributeNode('owner')]),
+                @NamedSubgraph(name = 'account', attributeNodes = [@NamedAttributeNode('subscription')])])
 @ApiModel(value = "User Resource")
 class DocutoolsUser extends AuditedEntity{
 
+    // Everything UserDTO and TeamMemberDTO read, fetched with the users instead of one select per user
+    public static final String LISTING_GRAPH = 'DocutoolsUser.listing'
+
     @Id
     @ApiModelProperty(value = "Id of the User")
     @Type(type = "pg-uuid") UUID id = UUID.randomUUID()
@@ -81,8 +92,6 @@ class DocutoolsUser extends AuditedEntity{
     @Column(name = "password")
     private List<String> passwordLog = new ArrayList<>();
     @Embedded VerificationStatus  verificationStatus = new VerificationStatus()
-    @OneToOne(mappedBy = 'owner', fetch = LAZY, cascade = ALL, orphanRemoval = true)
-    ProfilePicture avatar
     @ApiModelProperty(value = "Timestamp of when the User was last invited")
     ZonedDateTime lastInvitationTime
     @ManyToOne
@@ -112,7 +121,7 @@ class DocutoolsUser extends AuditedEntity{
     boolean privacyPolicyAccepted
     @ApiModelProperty(value = "Whether the user accepted the Terms and Conditions")
     boolean termsAndConditionsAccepted
-    @OneToOne
+    @OneToOne(fetch = LAZY)
     DocutoolsUser invitedBy
 
     DocutoolsUser() {
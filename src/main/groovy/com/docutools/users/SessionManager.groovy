@@ -4,11 +4,14 @@ package com.docutools.users
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.scheduling.annotation.Scheduled
 import org.springframework.security.core.context.SecurityContextHolder
 import org.springframework.security.oauth2.provider.OAuth2Authentication
 import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails
 import org.springframework.stereotype.Service
 
+import java.util.concurrent.atomic.LongAdder
+
 import static com.docutools.exceptions.ExceptionHelper.*;
 
 /**
@@ -24,9 +27,12 @@ class SessionManager {
     @Autowired
     private OrganisationRepo organisationRepo
 
+    private final LongAdder lookups = new LongAdder()
+    private final LongAdder avoidedLookups = new LongAdder()
+
     /**
      * Tries to fetch the currently operatnig user from the spring security context and load the user details from
-     * database.
+     * database. The user is only loaded once per request (or transaction), see {@link CurrentUserContext}.
      *
      * @return {@link DocutoolsUser} entity for the current user.
      * @throws com.docutools.apierrors.ApiException if the principal does not exist in the database or is {@code null}.
@@ -37,6 +43,11 @@ class SessionManager {
                 getAuthentication()?.
                 getPrincipal()?.
                 toString()
+        CurrentUserContext.current { CurrentUserContext context -> record(context) }
+                .resolve(username) { String principal -> loadUser(principal) }
+    }
+
+    private DocutoolsUser loadUser(String username) {
         userRepo.findByUsernameIgnoreCase(username)
             .orElseGet {
             try {
@@ -52,6 +63,19 @@ class SessionManager {
         }
     }
 
+    private void record(CurrentUserContext context) {
+        lookups.add(context.lookups)
+        avoidedLookups.add(context.avoidedLookups)
+        if (context.avoidedLookups) {
+            log.debug('Loaded the current user {} time(s), avoided {} lookup(s).', context.lookups, context.avoidedLookups)
+        }
+    }
+
+    @Scheduled(fixedRateString = '${docutools.users.currentUser.statsLogRate:900000}')
+    void logStats() {
+        log.info('Current user lookups: {} loaded, {} avoided.', lookups.sum(), avoidedLookups.sum())
+    }
+
     static String getBearerToken() {
         // Get bearer token from security context
         def auth = SecurityContextHolder.getContext().getAuthentication()
@@ -0,0 +1,55 @@
+package com.docutools.users;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static com.docutools.exceptions.ExceptionHelper.newInputValidationError;
+
+/**
+ * Position in an organisation's users ordered by the sort keys of {@link UserSliceQuery} and the user id. Clients only ever see it as an opaque continuation token, see {@link #encode()}.
+ */
+final class UserCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final String firstKey;
+    private final String secondKey;
+    private final UUID userId;
+
+    UserCursor(String firstKey, String secondKey, UUID userId) {
+        this.firstKey = firstKey;
+        this.secondKey = secondKey;
+        this.userId = userId;
+    }
+
+    static UserCursor decode(String token) {
+        try {
+            String[] parts = token.split("\\.", -1);
+            return new UserCursor(decodePart(parts[0]), decodePart(parts[1]), UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw newInputValidationError("Invalid continuation token: " + token);
+        }
+    }
+
+    String encode() {
+        return ENCODER.encodeToString(firstKey.getBytes(StandardCharsets.UTF_8)) + "."
+                + ENCODER.encodeToString(secondKey.getBytes(StandardCharsets.UTF_8)) + "." + userId;
+    }
+
+    String getFirstKey() {
+        return firstKey;
+    }
+
+    String getSecondKey() {
+        return secondKey;
+    }
+
+    UUID getUserId() {
+        return userId;
+    }
+
+    private static String decodePart(String part) {
+        return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+    }
+}
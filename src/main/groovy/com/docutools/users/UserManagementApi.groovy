@@ -4,6 +4,7 @@ import com.docutools.users.resources.NotificationDTO
 import com.docutools.users.resources.UserBatchUpdate
 import com.docutools.users.resources.UserDTO
 import com.docutools.users.resources.UserFilter
+import com.docutools.users.resources.UserSliceDTO
 import io.swagger.annotations.ApiOperation
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -105,6 +106,20 @@ class UserManagementApi {
     }
 
 
+    @ApiOperation(value = "Get Users by Continuation Token")
+    @GetMapping(path = '/slice')
+    UserSliceDTO listUsersSlice(@RequestParam(defaultValue = '10', required = false) int size,
+                                @RequestParam(defaultValue = 'Any', required = false) UserFilter filter,
+                                @RequestParam(defaultValue = 'name', required = false) String sort,
+                                @RequestParam(defaultValue = 'ASC', required = false) Sort.Direction sortDirection,
+                                @RequestParam(defaultValue = '', required = false) String search,
+                                @RequestParam(required = false) String next,
+                                @RequestParam(defaultValue = 'false', required = false) boolean count) {
+        log.info('GET /api/v2/users/slice?size={} by {}', size, currentActor)
+
+        manager.listOrganisationUsersSlice(size, sort, sortDirection, filter, search, next, count)
+    }
+
     @ApiOperation(value = "Export a User as a VCard")
     @GetMapping(value = '/{id}/vcard', produces = 'text/x-vcard')
     @PreAuthorize("hasAnyAuthority('admin', 'project_creator')")
@@ -6,6 +6,7 @@ import com.docutools.emails.ChangeEmailService
 import com.docutools.emails.EmailTemplateType
 import com.docutools.emails.MailServer
 import com.docutools.password.PasswordPolicies
+import com.docutools.projects.ProjectMetadataCache
 import com.docutools.roles.PermissionManager
 import com.docutools.roles.Privilege
 import com.docutools.services.projects.ProjectApiClient
@@ -17,18 +18,24 @@ import com.docutools.team.TeamMembershipRepo
 import com.docutools.users.resources.NotificationDTO
 import com.docutools.users.resources.UserDTO
 import com.docutools.users.resources.UserFilter
+import com.docutools.users.resources.UserSliceDTO
 import com.docutools.users.values.PersonName
 import com.docutools.users.values.UserSettings
 import com.docutools.users.values.UserType
 import com.docutools.users.values.VerificationStatus
+import com.docutools.utils.SqlArrays
 import com.docutools.utils.Validator
 import com.docutools.vcard.vCardGenerator
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.collect.Lists
 import ezvcard.VCardVersion
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageImpl
 import org.springframework.data.domain.PageRequest
 import org.springframework.data.domain.Sort
 import org.springframework.data.jpa.domain.JpaSort
@@ -37,10 +44,12 @@ import org.springframework.stereotype.Service
 import org.springframework.transaction.annotation.Transactional
 import org.springframework.util.StringUtils
 
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
 import java.time.LocalDate
 import java.time.ZoneId
 import java.time.ZonedDateTime
-import java.util.stream.Collectors
+import java.util.concurrent.TimeUnit
 
 import static com.docutools.exceptions.ErrorCodes.EMAIL_BLOCKED
 import static com.docutools.exceptions.ErrorCodes.INCORRECT_PASSWORD
@@ -66,6 +75,15 @@ class UserManager {
     private static final Logger log = LoggerFactory.getLogger(UserManager)
     private static
     final String[] userSortProperties = ['id', 'name', 'license', 'licensed_since', 'licensed_until', 'admin', 'projectCreator', 'paid']
+    private static final int MAX_SLICE_SIZE = 1000
+    // keeps the IN lists of the bulk lookups well below the bind parameter limit
+    private static final int QUERY_BATCH_SIZE = 1000
+
+    // Totals of listOrganisationUsersSlice by organisation, filter and search, a minute old at most
+    private final Cache<List<Object>, Long> organisationUserCounts = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build()
 
     @Autowired
     OrganisationRepo orgRepo
@@ -93,6 +111,8 @@ class UserManager {
     @Autowired
     private ProjectApiClient projectApiClient
     @Autowired
+    private ProjectMetadataCache projectMetadataCache
+    @Autowired
     private TeamMembershipRepo teamMembershipRepo
     @Autowired
     private AvatarService avatarService
@@ -103,6 +123,8 @@ class UserManager {
     private BlockedEmails blockedEmails
     @Autowired
     private PasswordPolicies passwordPolicies
+    @PersistenceContext
+    private EntityManager entityManager
 
 
     /**
@@ -235,7 +257,7 @@ class UserManager {
         }
 
         if (projectId) {
-            def project = projectApiClient.getProject(projectId)
+            def project = projectMetadataCache.find(projectId).orElse(null)
             mailServer.sendEmail(EmailTemplateType.InviteToProject, [inviter: currentUser.name, projectName: project?.name, receiver_mail: user.email], user)
         } else {
             mailServer.sendEmail(EmailTemplateType.Invitation,
@@ -245,6 +267,31 @@ class UserManager {
         return user
     }
 
+    /**
+     * Bulk variant of {@link #loadOrCreateUser} for users invited without organisation. Every user gets a new
+     * organisation it owns, all of them are persisted with batched inserts. Unlike {@link #loadOrCreateUser} no emails
+     * are sent, the users are flagged as {@code isNewCreated} and the caller has to invite them.
+     *
+     * @param emails valid, not blocked and not yet registered email addresses.
+     * @return the new {@link DocutoolsUser}s in the order of the emails.
+     */
+    List<DocutoolsUser> createInvitedUsers(Collection<String> emails) {
+        def currentUser = sessionManager.currentUser
+        def users = emails.collect { email ->
+            def organisation = new Organisation(name: '')
+            entityManager.persist(organisation)
+            def user = new DocutoolsUser(organisation: organisation, username: email,
+                    settings: new UserSettings(admin: true, language: currentUser.settings.language))
+            setPersonName(user)
+            entityManager.persist(user)
+            organisation.owner = user
+            user.isNewCreated = true
+            return user
+        }
+        log.debug("Created {} invited users.", users.size())
+        return users
+    }
+
     Page<DocutoolsUser> listOrganisationUsers(int page = 0,
                                               int pageSize = 10,
                                               String sort = 'id',
@@ -275,8 +322,75 @@ class UserManager {
                 return userRepo.findByOrganisationAndLicense(org, "%$search%", LocalDate.now().minusDays(1), false, pageRequest)
             case UserFilter.Licensed:
                 return userRepo.findByOrganisationAndLicense(org, "%$search%", LocalDate.now().minusDays(1), true, pageRequest)
-            default: return userRepo.findByOrganisationId(org.id, "%$search%", pageRequest)
+            default: return loadForListing(userRepo.findIdsByOrganisationId(org.id, "%$search%", pageRequest))
+        }
+    }
+
+    /**
+     * Lists the users of the current user's organisation one keyset slice at a time, ordered by the sort and then by
+     * id. Unlike {@link #listOrganisationUsers} no page count is needed, so the users are not counted unless asked.
+     *
+     * @param size maximum number of users in the slice
+     * @param sort one of the supported sort properties
+     * @param sortDir sort direction
+     * @param filter license filter
+     * @param search part of the users' names
+     * @param token continuation token of the previous slice or null for the first one, sort, filter and search must
+     * not change while continuing
+     * @param count whether to include the total, it may be up to a minute old
+     * @return the {@link UserSliceDTO}
+     */
+    @Transactional(readOnly = true)
+    UserSliceDTO listOrganisationUsersSlice(int size = 10,
+                                            String sort = 'name',
+                                            Sort.Direction sortDir = Sort.Direction.ASC,
+                                            UserFilter filter = UserFilter.Any,
+                                            String search = '',
+                                            String token = null,
+                                            boolean count = false) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw newInputValidationError("Slice size must be between 1 and ${MAX_SLICE_SIZE}.".toString())
+        }
+        if (!userSortProperties.contains(sort)) {
+            throw newBadRequestError(INVALID_RESOURCE, "sort")
         }
+        def orgId = sessionManager.currentUser.organisation.id
+        def pattern = "%${search ? search.toUpperCase() : ''}%".toString()
+        def currentDate = LocalDate.now().minusDays(1)
+        def cursor = token ? UserCursor.decode(token) : null
+        // One extra row tells whether there is a next slice, without counting
+        List<Object[]> rows = UserSliceQuery.find(entityManager, orgId, sort, sortDir == Sort.Direction.DESC, filter,
+                pattern, currentDate, cursor, size + 1)
+        def hasNext = rows.size() > size
+        def slice = hasNext ? rows.subList(0, size) : rows
+        def ids = slice.collect { UUID.fromString(it[0] as String) }
+        def users = loadForListing(ids).collect { new UserDTO(it) }
+        String next = null
+        if (hasNext) {
+            def last = slice.last()
+            next = new UserCursor(last[1] as String, last[2] as String, ids.last()).encode()
+        }
+        Long total = null
+        if (count) {
+            total = organisationUserCounts.get([orgId, filter, pattern], {
+                userRepo.countOrganisationUsers(orgId, pattern, filter.name(), currentDate)
+            })
+        }
+        return new UserSliceDTO(users, next, total)
+    }
+
+    // The native listing queries only select ids, the users are fetched with UserDTO's associations in one query
+    private List<DocutoolsUser> loadForListing(List<UUID> ids) {
+        Map<UUID, DocutoolsUser> users = [:]
+        Lists.partition(ids, QUERY_BATCH_SIZE).each { chunk ->
+            userRepo.findAllForListing(chunk).each { users[it.id] = it }
+        }
+        return ids.collect { users[it] }
+    }
+
+    private Page<DocutoolsUser> loadForListing(Page<String> ids) {
+        def users = loadForListing(ids.content.collect { UUID.fromString(it) })
+        return new PageImpl<>(users, ids.pageable, ids.totalElements)
     }
 
     private static Sort toSort(Sort.Direction sortDir, String sort){
@@ -379,10 +493,16 @@ class UserManager {
      */
     DocutoolsUser updateUser(DocutoolsUser user, UserDTO update) {
         def currentUser = sessionManager.currentUser
+        applyUpdate(currentUser, user, update)
+        // Save entity
+        userRepo.save(user)
+    }
+
+    private void applyUpdate(DocutoolsUser currentUser, DocutoolsUser user, UserDTO update) {
         if(update.updatesOrganisationNameOnly()){
-            canUpdateOrganisationName(user)
+            canUpdateOrganisationName(currentUser, user)
         } else {
-            canUpdate(user)
+            canUpdate(currentUser, user)
         }
         // Update fields
         if (update.firstName != null) user.name.firstName = update.firstName
@@ -437,21 +557,33 @@ class UserManager {
             user.termsAndConditionsAccepted = update.termsAndConditionsAccepted
             user.privacyPolicyAccepted = update.privacyPolicyAccepted
         }
-        // Save entity
-        userRepo.save(user)
     }
 
     /**
      * Updates all users with the same properties.
      *
+     * The users are loaded in batches and checked against the current user in memory, the changed rows are flushed as
+     * JDBC batches when the transaction commits. Nothing is updated if any of the users may not be updated.
+     *
      * @param ids IDs of the users to update.
      * @param update properties to update.
      * @return updated {@link DocutoolsUser}s
      */
     @Transactional
     List<DocutoolsUser> updateAll(List<UUID> ids, UserDTO update) {
-        ids.collect { loadUserById(it) }
-                .collect { updateUser(it, update) }
+        def currentUser = sessionManager.currentUser
+        Map<UUID, DocutoolsUser> users = [:]
+        Lists.partition(ids.unique(false), QUERY_BATCH_SIZE).each { chunk ->
+            userRepo.findAllForListing(chunk).each { users[it.id] = it }
+        }
+        ids.collect { UUID id ->
+            def user = users[id]
+            if (user == null) {
+                throw newResourceNotFoundError(String.format("User with id: %s", id.toString()))
+            }
+            applyUpdate(currentUser, user, update)
+            return user
+        }
     }
 
     /**
@@ -582,7 +714,10 @@ class UserManager {
      * @param user user to test for.
      */
     private void canUpdate(DocutoolsUser user) {
-        def currentUser = sessionManager.currentUser
+        canUpdate(sessionManager.currentUser, user)
+    }
+
+    private static void canUpdate(DocutoolsUser currentUser, DocutoolsUser user) {
         if (currentUser.organisation.id != user.organisation.id) {
             throw newForbiddenError('Only users in the same organisation can update each other.')
         }
@@ -598,13 +733,13 @@ class UserManager {
     }
 
     /**
-     * Checks if the {@link SessionManager#getCurrentUser()} is allowed to update the organisation name of the
-     * specific user, if not a {@link com.docutools.apierrors.ApiException} is thrown.
+     * Checks if the current user is allowed to update the organisation name of the specific user, if not a
+     * {@link com.docutools.apierrors.ApiException} is thrown.
      *
+     * @param currentUser the {@link SessionManager#getCurrentUser()}
      * @param user user to test for.
      */
-    private void canUpdateOrganisationName(DocutoolsUser user){
-        def currentUser = sessionManager.currentUser
+    private static void canUpdateOrganisationName(DocutoolsUser currentUser, DocutoolsUser user){
         if (currentUser.organisation.id != user.organisation.id) {
             throw newForbiddenError('Only users in the same organisation can update each other.')
         }
@@ -644,11 +779,10 @@ class UserManager {
         if (search) {
             search = search.toUpperCase()
         }
-        def projectIds = projectApiClient.getAllProjectsInCurrentOrganisation().stream()
-                .filter{project->permissionManager.checkPrivilege(project.id,Collections.singletonList(Privilege.ViewTeam),true).check}
-                .map{project->project.id}.collect(Collectors.toList())
-        userRepo.findUsers(projectIds,
-                        sessionManager.currentUser.organisation.id,"%$search%",pageRequest)
+        def projectIds = permissionManager.filterOrganisationProjects(
+                projectApiClient.getAllProjectsInCurrentOrganisation().collect { it.id }, [Privilege.ViewTeam])
+        loadForListing(userRepo.findUserIds(SqlArrays.uuidArray(projectIds),
+                        sessionManager.currentUser.organisation.id,"%$search%",pageRequest))
     }
 
     void reSendInvitationEmail(UUID id) {
@@ -2,6 +2,7 @@ package com.docutools.users
 
 import org.springframework.data.domain.Page
 import org.springframework.data.domain.Pageable
+import org.springframework.data.jpa.repository.EntityGraph
 import org.springframework.data.jpa.repository.JpaRepository
 import org.springframework.data.jpa.repository.Query
 import org.springframework.data.repository.query.Param
@@ -10,12 +11,30 @@ import java.time.LocalDate
 
 interface UserRepo extends JpaRepository<DocutoolsUser, UUID> {
 
-    @Query("SELECT u FROM DocutoolsUser u WHERE UPPER(u.username) = UPPER(:username) OR UPPER(u.email) = UPPER(:username)")
+    //Matches the LOWER() indexes on username and email, see V48__user_lookup_indexes.sql
+    @Query("SELECT u FROM DocutoolsUser u WHERE LOWER(u.username) = LOWER(:username) OR LOWER(u.email) = LOWER(:username)")
     Optional<DocutoolsUser> findByUsernameIgnoreCase(@Param("username") String username)
 
+    //Bulk variant of findByUsernameIgnoreCase, expects lower case usernames
+    @Query("SELECT u FROM DocutoolsUser u WHERE LOWER(u.username) IN :usernames OR LOWER(u.email) IN :usernames")
+    List<DocutoolsUser> findAllByUsernameIgnoreCase(@Param("usernames") Collection<String> usernames)
+
     Optional<DocutoolsUser> findByVerificationStatusToken(String token)
 
-    @Query(value = """SELECT * FROM docutools_users u 
+    //Fetches organisation and account along with the users, they are needed for every privilege check
+    @Query("SELECT u FROM DocutoolsUser u JOIN FETCH u.organisation LEFT JOIN FETCH u.account WHERE u.id IN :ids")
+    List<DocutoolsUser> findAllForPrivilegeCheck(@Param("ids") Collection<UUID> ids)
+
+    /**
+     * Loads users found by the id-only listing queries, in no particular order, with everything {@link
+     * com.docutools.users.resources.UserDTO} reads in one query.
+     */
+    @EntityGraph(DocutoolsUser.LISTING_GRAPH)
+    @Query("SELECT u FROM DocutoolsUser u WHERE u.id IN :ids")
+    List<DocutoolsUser> findAllForListing(@Param("ids") Collection<UUID> ids)
+
+    // Only selects the ids, see findAllForListing
+    @Query(value = """SELECT CAST(u.id AS VARCHAR) FROM docutools_users u 
                                         LEFT JOIN accounts account ON account.user_id=u.id 
                                         LEFT JOIN subscriptions subscription ON subscription.id=account.subscription_id 
              WHERE u.organisation_id = :org AND UPPER(CONCAT(u.first_name, ' ', u.last_name)) LIKE :search""",
@@ -24,22 +43,46 @@ interface UserRepo extends JpaRepository<DocutoolsUser, UUID> {
                                         LEFT JOIN subscriptions s ON s.id=a.subscription_id 
              WHERE u.organisation_id = :org AND UPPER(CONCAT(u.first_name, ' ', u.last_name)) LIKE :search""",
              nativeQuery = true)
-    Page<DocutoolsUser> findByOrganisationId(@Param('org') UUID organisationId,
-                                             @Param('search') String search,
-                                             Pageable pageable)
+    Page<String> findIdsByOrganisationId(@Param('org') UUID organisationId,
+                                         @Param('search') String search,
+                                         Pageable pageable)
+
 
+    // Total of UserManager.listOrganisationUsersSlice, whose queries are built by UserSliceQuery
+    @Query(value = """SELECT count(*) FROM docutools_users u
+                                        JOIN organisations o ON o.id = u.organisation_id
+                                        LEFT JOIN accounts a ON a.user_id = u.id
+                                        LEFT JOIN subscriptions s ON s.id = a.subscription_id
+             WHERE u.organisation_id = :org
+               AND UPPER(COALESCE(u.first_name, '') || ' ' || COALESCE(u.last_name, '')) LIKE :search
+               AND (:filter = 'Any' OR :filter = CASE WHEN (u.id = o.owner_id AND a.id IS NULL)
+                                                         OR (a.id IS NOT NULL AND (s.until IS NULL OR s.until > :currentDate))
+                                                       THEN 'Licensed' ELSE 'WithoutLicense' END)""", nativeQuery = true)
+    long countOrganisationUsers(@Param('org') UUID organisationId,
+                                @Param('search') String search,
+                                @Param('filter') String filter,
+                                @Param('currentDate') LocalDate currentDate)
 
-    @Query("""SELECT DISTINCT dtu FROM DocutoolsUser dtu LEFT JOIN TeamMembership tmb  ON  dtu.id = tmb.user.id
-              WHERE (dtu.organisation.id =:orgId OR tmb.projectId IN :projectIds) 
-               AND ( UPPER(CONCAT(dtu.name.firstName, ' ', dtu.name.lastName)) LIKE :search OR UPPER(dtu.username) LIKE :search)""")
-    Page<DocutoolsUser> findUsers(
-            @Param('projectIds') List<UUID> projectIds,
+    // projectIds is an array literal, see SqlArrays.uuidArray, EXISTS instead of a join needs no DISTINCT
+    // Only selects the ids, see findAllForListing
+    @Query(value = """SELECT CAST(u.id AS VARCHAR) FROM docutools_users u
+             WHERE (u.organisation_id = :orgId OR EXISTS (SELECT 1 FROM team_memberships t
+                                                          WHERE t.user_id = u.id AND t.project_id = ANY(CAST(:projectIds AS uuid[]))))
+               AND (UPPER(CONCAT(u.first_name, ' ', u.last_name)) LIKE :search OR UPPER(u.username) LIKE :search)""",
+           countQuery = """SELECT count(*) FROM docutools_users u
+             WHERE (u.organisation_id = :orgId OR EXISTS (SELECT 1 FROM team_memberships t
+                                                          WHERE t.user_id = u.id AND t.project_id = ANY(CAST(:projectIds AS uuid[]))))
+               AND (UPPER(CONCAT(u.first_name, ' ', u.last_name)) LIKE :search OR UPPER(u.username) LIKE :search)""",
+           nativeQuery = true)
+    Page<String> findUserIds(
+            @Param('projectIds') String projectIds,
             @Param('orgId') UUID orgId, @Param('search') String search, Pageable pageable)
 
     long countByOrganisationName(OrganisationName organisationName)
 
     //Hibernate keeps intermediate proxy objects to lazy load on demand, So to load Account and Subscription Eagerly used Joins
     //Used CASE so do not need to write exact invert expression of Licensed
+    @EntityGraph(DocutoolsUser.LISTING_GRAPH)
     @Query("""SELECT u FROM DocutoolsUser u LEFT JOIN Account a ON a.user=u LEFT JOIN Subscription s ON s=a.subscription
                WHERE u.organisation = :org AND UPPER(CONCAT(u.name.firstName, ' ', u.name.lastName)) LIKE :search
                AND ((CASE WHEN ((u.id = u.organisation.owner.id AND a IS NULL) 
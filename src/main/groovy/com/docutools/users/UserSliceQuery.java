@@ -0,0 +1,129 @@
+package com.docutools.users;
+
+import com.docutools.users.resources.UserFilter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Native keyset queries of {@link UserManager#listOrganisationUsersSlice}. There is one query per sort, direction and
+ * license filter, with and without search and cursor. Each has a plain {@code ORDER BY} on the sort keys and the user
+ * id and continues after the cursor with a row comparison on the same columns.
+ * <p>
+ * The sorts on docutools_users columns read their {@code (organisation_id, <sort keys>, id)} index of V57 in order,
+ * backwards for descending slices, and stop after the slice. The sorts on the subscription can't be indexed, they still
+ * sort the organisation's matching users. The search expression matches docutools_users_search_name_trgm_index, the
+ * license state is computed like in {@link UserRepo#findByOrganisationAndLicense}.
+ */
+final class UserSliceQuery {
+
+    // sort keys by sort property, the user id is always the last key
+    private static final Map<String, List<String>> KEYS = new HashMap<>();
+    private static final Set<String> BOOLEAN_SORTS = new HashSet<>(Arrays.asList("admin", "projectCreator"));
+    private static final Set<String> SUBSCRIPTION_SORTS = new HashSet<>(Arrays.asList("license", "paid", "licensed_since", "licensed_until"));
+
+    static {
+        KEYS.put("id", Collections.emptyList());
+        KEYS.put("name", Arrays.asList("LOWER(u.last_name)", "LOWER(u.first_name)"));
+        KEYS.put("admin", Arrays.asList("u.admin", "u.project_creator"));
+        KEYS.put("projectCreator", Arrays.asList("u.project_creator", "u.admin"));
+        KEYS.put("license", Collections.singletonList("COALESCE(s.type, '')"));
+        KEYS.put("paid", Collections.singletonList("COALESCE(s.type, '')"));
+        KEYS.put("licensed_since", Collections.singletonList("COALESCE(TO_CHAR(COALESCE(s.since, u.created), 'YYYY-MM-DD HH24:MI:SS.US'), '')"));
+        KEYS.put("licensed_until", Collections.singletonList("COALESCE(TO_CHAR(s.until, 'YYYY-MM-DD HH24:MI:SS.US'), '')"));
+    }
+
+    private static final String LICENSE_STATE = "CASE WHEN (u.id = o.owner_id AND a.id IS NULL)" +
+            " OR (a.id IS NOT NULL AND (s.until IS NULL OR s.until > :currentDate)) THEN 'Licensed' ELSE 'WithoutLicense' END";
+
+    private UserSliceQuery() {
+    }
+
+    /**
+     * Finds the next slice of an organisation's users. Rows are returned as {@code [id, firstKey, secondKey]}, unused
+     * keys are empty, the last row is the cursor of the next slice.
+     *
+     * @param sort one of {@link UserManager#userSortProperties}
+     * @param search upper case LIKE pattern of the users' names, {@code %%} matches all
+     * @param cursor the last row of the previous slice or {@code null} for the first one
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object[]> find(EntityManager entityManager, UUID organisationId, String sort, boolean descending,
+                               UserFilter filter, String search, LocalDate currentDate, UserCursor cursor, int limit) {
+        boolean searching = !"%%".equals(search);
+        Query query = entityManager.createNativeQuery(sql(sort, descending, filter, searching, cursor != null));
+        query.setParameter("org", organisationId);
+        if (searching) {
+            query.setParameter("search", search);
+        }
+        if (filter != UserFilter.Any) {
+            query.setParameter("filter", filter.name());
+            query.setParameter("currentDate", currentDate);
+        }
+        if (cursor != null) {
+            int keys = KEYS.get(sort).size();
+            if (keys > 0) {
+                query.setParameter("k1", cursor.getFirstKey());
+            }
+            if (keys > 1) {
+                query.setParameter("k2", cursor.getSecondKey());
+            }
+            query.setParameter("afterId", cursor.getUserId().toString());
+        }
+        query.setParameter("limit", limit);
+        return (List<Object[]>) query.getResultList();
+    }
+
+    static String sql(String sort, boolean descending, UserFilter filter, boolean searching, boolean continuing) {
+        List<String> keys = KEYS.get(sort);
+        if (keys == null) {
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        boolean filtering = filter != UserFilter.Any;
+        StringBuilder sql = new StringBuilder("SELECT CAST(u.id AS VARCHAR)");
+        for (int i = 0; i < 2; i++) {
+            sql.append(i < keys.size() ? ", CAST(" + keys.get(i) + " AS VARCHAR)" : ", ''");
+        }
+        sql.append(" FROM docutools_users u");
+        if (filtering) {
+            sql.append(" JOIN organisations o ON o.id = u.organisation_id");
+        }
+        if (filtering || SUBSCRIPTION_SORTS.contains(sort)) {
+            sql.append(" LEFT JOIN accounts a ON a.user_id = u.id LEFT JOIN subscriptions s ON s.id = a.subscription_id");
+        }
+        sql.append(" WHERE u.organisation_id = :org");
+        if (searching) {
+            sql.append(" AND UPPER(COALESCE(u.first_name, '') || ' ' || COALESCE(u.last_name, '')) LIKE :search");
+        }
+        if (filtering) {
+            sql.append(" AND ").append(LICENSE_STATE).append(" = :filter");
+        }
+        if (continuing) {
+            List<String> columns = new ArrayList<>(keys);
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                String parameter = ":k" + (i + 1);
+                values.add(BOOLEAN_SORTS.contains(sort) ? "CAST(" + parameter + " AS boolean)" : parameter);
+            }
+            columns.add("u.id");
+            values.add("CAST(:afterId AS uuid)");
+            sql.append(" AND (").append(String.join(", ", columns)).append(descending ? ") < (" : ") > (")
+                    .append(String.join(", ", values)).append(")");
+        }
+        List<String> order = new ArrayList<>(keys);
+        order.add("u.id");
+        sql.append(" ORDER BY ").append(String.join(descending ? " DESC, " : ", ", order)).append(descending ? " DESC" : "");
+        sql.append(" LIMIT :limit");
+        return sql.toString();
+    }
+}
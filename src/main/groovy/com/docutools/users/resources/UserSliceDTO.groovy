@@ -0,0 +1,24 @@
+package com.docutools.users.resources
+
+import io.swagger.annotations.ApiModel
+import io.swagger.annotations.ApiModelProperty
+
+@ApiModel(value = "User Slice Resource")
+class UserSliceDTO {
+
+    @ApiModelProperty(value = "Users in this slice")
+    List<UserDTO> users
+    @ApiModelProperty(value = "Continuation token for the next slice, null if this is the last one")
+    String next
+    @ApiModelProperty(value = "Number of users matching the filter and search, only set when requested")
+    Long total
+
+    UserSliceDTO() {
+    }
+
+    UserSliceDTO(List<UserDTO> users, String next, Long total) {
+        this.users = users
+        this.next = next
+        this.total = total
+    }
+}
@@ -0,0 +1,19 @@
+package com.docutools.utils;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Binds id lists of native queries as one PostgreSQL array literal, used as {@code = ANY(CAST(:ids AS uuid[]))}.
+ * Unlike an {@code IN} expansion the statement has a single bind parameter, whatever the number of ids.
+ */
+public class SqlArrays {
+
+    private SqlArrays() {
+    }
+
+    public static String uuidArray(Collection<UUID> ids) {
+        return ids.stream().map(UUID::toString).collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -67,6 +67,12 @@ public class vCardData {
     }
 
     public vCardData(DocutoolsUser user, AvatarService avatarService){
+        this(user);
+        avatarService.getAvatarData(user.getId())
+                .ifPresent(this::withPhoto);
+    }
+
+    public vCardData(DocutoolsUser user){
         if(user.getName() != null){
             StructuredName structuredName = new StructuredName();
             if(user.getName().getFirstName() != null){
@@ -119,12 +125,14 @@ public class vCardData {
             }
             this.organization = organization;
         }
+    }
 
-        avatarService.getAvatarData(user.getId())
-                .ifPresent(data -> {
-                    this.photo = new Photo(data, ImageType.JPEG);
-                });
-
+    /**
+     * Adds a JPEG photo, e.g. an avatar thumbnail.
+     */
+    public vCardData withPhoto(byte[] jpeg){
+        this.photo = new Photo(jpeg, ImageType.JPEG);
+        return this;
     }
 
     public StructuredName getStructuredName() {
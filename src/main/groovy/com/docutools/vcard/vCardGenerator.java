@@ -11,6 +11,12 @@ import ezvcard.parameter.TelephoneType;
 
 public class vCardGenerator {
     public static String generateVCard(VCardVersion version, vCardData data){
+        return Ezvcard.write(toVCard(version, data))
+                .version(version)
+                .go();
+    }
+
+    public static VCard toVCard(VCardVersion version, vCardData data){
         VCard vCard = new VCard(version);
 
         if(data.getStructuredName() != null) {
@@ -41,9 +47,7 @@ public class vCardGenerator {
             vCard.addPhoto(data.getPhoto());
         }
 
-        return Ezvcard.write(vCard)
-                .version(version)
-                .go();
+        return vCard;
     }
 
     public static String generateVCard(VCardVersion version, ProjectContact contact){
@@ -0,0 +1,4 @@
+-- Case insensitive lookup of users by username or email, see UserRepo.findByUsernameIgnoreCase.
+-- The indexes are on the expressions, so there are no extra columns to backfill or keep in sync.
+CREATE INDEX docutools_users_lower_username_index ON docutools_users (LOWER(username));
+CREATE INDEX docutools_users_lower_email_index ON docutools_users (LOWER(email));
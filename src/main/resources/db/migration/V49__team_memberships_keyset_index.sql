@@ -0,0 +1,4 @@
+-- Keyset pagination of a user's membership project ids, see TeamMembershipRepo.findProjectIdSliceWithRolePresentForUser.
+-- last_modified is NULL for memberships older than V36, those sort as the epoch.
+CREATE INDEX team_memberships_user_state_modified_project_index
+    ON team_memberships (user_id, state, COALESCE(last_modified, TIMESTAMP '1970-01-01 00:00:00'), project_id);
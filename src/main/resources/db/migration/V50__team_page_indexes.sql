@@ -0,0 +1,5 @@
+-- Paged team listing, see TeamMembershipRepo.findTeamPage.
+-- The project's memberships are found by project and state, user_id lets the join to docutools_users skip the heap.
+CREATE INDEX team_memberships_project_state_user_index ON team_memberships (project_id, state, user_id);
+-- Licenses are joined per user for the License sort.
+CREATE INDEX accounts_user_index ON accounts (user_id);
@@ -0,0 +1,6 @@
+-- Similarity search of team members, see TeamMembershipRepo.searchTeamMembersBySimilarity.
+-- The indexed expressions must match the query exactly, they serve LIKE '%term%' as well as the <% operator.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX docutools_users_search_trgm_index ON docutools_users
+    USING gin (LOWER(first_name || ' ' || last_name || ' ' || username || ' ' || COALESCE(job_title, '')) gin_trgm_ops);
+CREATE INDEX organisations_name_trgm_index ON organisations USING gin (LOWER(name) gin_trgm_ops);
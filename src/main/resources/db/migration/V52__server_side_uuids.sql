@@ -0,0 +1,2 @@
+-- gen_random_uuid() for rows copied with INSERT ... SELECT, see TeamMembershipRepo.copyTeam and ProjectContactRepository.copyContacts.
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
@@ -0,0 +1,5 @@
+-- Assignee delta sync, see AssigneesService.listAssigneeDelta. Users are probed globally by last_modified and joined
+-- to the project through the (user_id, project_id) unique constraint.
+CREATE INDEX team_memberships_project_modified_index ON team_memberships (project_id, last_modified);
+CREATE INDEX project_contacts_project_modified_index ON project_contacts (project_id, last_modified);
+CREATE INDEX docutools_users_last_modified_index ON docutools_users (last_modified);
@@ -0,0 +1,11 @@
+-- Transactional outbox for membership and role changes, see ChangeEventOutbox and ChangeEventRelay.
+-- Rows are deleted once published, so the table stays small and needs no index besides the primary key.
+CREATE SEQUENCE change_events_id_seq INCREMENT BY 50;
+CREATE TABLE change_events (
+    id bigint PRIMARY KEY NOT NULL,
+    type text NOT NULL,
+    aggregate_id uuid NOT NULL,
+    project_id uuid,
+    payload text NOT NULL,
+    created timestamp NOT NULL
+);
@@ -0,0 +1,5 @@
+-- Organisation user slices, see UserRepo.findOrganisationUserSlice and UserRepo.countOrganisationUsers.
+-- The search index covers exactly the searched expression, it serves LIKE '%term%'.
+CREATE INDEX docutools_users_organisation_index ON docutools_users (organisation_id);
+CREATE INDEX docutools_users_search_name_trgm_index ON docutools_users
+    USING gin (UPPER(COALESCE(first_name, '') || ' ' || COALESCE(last_name, '')) gin_trgm_ops);
@@ -0,0 +1,11 @@
+-- Search of project contacts, see ProjectContactRepository.searchInProject.
+-- The indexed expression must match ProjectContactRepository.SEARCH_TEXT exactly, it serves LIKE '%term%' as well as
+-- the <% operator. btree_gin lets the project id be part of the same index, replaced contacts are never searched.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+CREATE INDEX project_contacts_search_trgm_index ON project_contacts
+    USING gin (project_id, LOWER(COALESCE(email, '') || ' ' || COALESCE(company_name, '') || ' ' ||
+        COALESCE(first_name, '') || ' ' || COALESCE(last_name, '') || ' ' || COALESCE(phone, '') || ' ' ||
+        COALESCE(fax, '') || ' ' || COALESCE(job_title, '') || ' ' || COALESCE(department, '') || ' ' ||
+        COALESCE(internal_id, '') || ' ' || COALESCE(street, '') || ' ' || COALESCE(city, '') || ' ' ||
+        COALESCE(country_code, '')) gin_trgm_ops)
+    WHERE replaced IS FALSE;
@@ -0,0 +1,7 @@
+-- Keyset slices of an organisation's users, see UserSliceQuery. Each sort on docutools_users columns reads its index
+-- in order, backwards for descending slices. (organisation_id, id) replaces the plain organisation index of V55.
+CREATE INDEX docutools_users_organisation_id_index ON docutools_users (organisation_id, id);
+CREATE INDEX docutools_users_organisation_name_index ON docutools_users (organisation_id, LOWER(last_name), LOWER(first_name), id);
+CREATE INDEX docutools_users_organisation_admin_index ON docutools_users (organisation_id, admin, project_creator, id);
+CREATE INDEX docutools_users_organisation_project_creator_index ON docutools_users (organisation_id, project_creator, admin, id);
+DROP INDEX docutools_users_organisation_index;
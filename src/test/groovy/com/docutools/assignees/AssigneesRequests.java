@@ -22,6 +22,7 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.UUID;
 
@@ -251,4 +252,57 @@ public class AssigneesRequests {
                 new Assignee(userB, MembershipState.Removed)));
     }
 
+    @Test
+    @DisplayName("List assignee delta with tombstones.")
+    public void listAssigneeDelta() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+
+        DocutoolsUser userA = testUserHelper.newTestUser();
+        TeamMembership membershipA = new TeamMembership(userA, projectId, MembershipState.Active);
+        membershipA.setLastModified(ZonedDateTime.now());
+        membershipRepository.save(membershipA);
+
+        ProjectContact contact = new ProjectContact(projectId);
+        contact.setCompanyName("Teuner AV");
+        contactRepository.save(contact);
+
+        String watermark = given()
+                .accept("application/json")
+                .auth().oauth2(token)
+        .when()
+                .get("/api/v2/projects/{projectId}/assignees/delta", projectId)
+        .then()
+                .statusCode(200)
+                .body("assignees.id", hasItems(userA.getId().toString(), contact.getId().toString()))
+                .body("removed", empty())
+                .extract().path("watermark");
+
+        membershipA.setState(MembershipState.Removed);
+        membershipA.setLastModified(ZonedDateTime.now());
+        membershipRepository.save(membershipA);
+        DocutoolsUser userB = testUserHelper.newTestUser();
+        TeamMembership membershipB = new TeamMembership(userB, projectId, MembershipState.Active);
+        membershipB.setLastModified(ZonedDateTime.now());
+        membershipRepository.save(membershipB);
+        contact.replaceBy(userB);
+        contactRepository.save(contact);
+
+        // Act & Assert
+        given()
+                .accept("application/json")
+                .queryParam("watermark", watermark)
+                .auth().oauth2(token)
+                .log().all()
+        .when()
+                .get("/api/v2/projects/{projectId}/assignees/delta", projectId)
+        .then()
+                .log().all()
+                .statusCode(200)
+                .body("assignees.id", hasItem(userB.getId().toString()))
+                .body("assignees.id", not(hasItem(userA.getId().toString())))
+                .body("removed", containsInAnyOrder(userA.getId().toString(), contact.getId().toString()))
+                .body("watermark", not(isEmptyOrNullString()));
+    }
+
 }
@@ -0,0 +1,59 @@
+package com.docutools.avatar;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+@Tag("unit")
+public class AvatarRenditionsUnitTest {
+
+    @Test
+    public void testPicksClosestLargerWidth() {
+        Assertions.assertEquals(AvatarService.THUMBNAIL_WIDTH, AvatarRenditions.closestWidth(null));
+        Assertions.assertEquals(32, AvatarRenditions.closestWidth(1));
+        Assertions.assertEquals(32, AvatarRenditions.closestWidth(32));
+        Assertions.assertEquals(64, AvatarRenditions.closestWidth(33));
+        Assertions.assertEquals(128, AvatarRenditions.closestWidth(100));
+        Assertions.assertEquals(AvatarService.THUMBNAIL_WIDTH, AvatarRenditions.closestWidth(2000));
+    }
+
+    @Test
+    public void testScalesDownKeepingAspectRatio() {
+        // Arrange
+        BufferedImage image = new BufferedImage(1000, 750, BufferedImage.TYPE_INT_ARGB);
+        // Act
+        BufferedImage scaled = AvatarRenditions.scaleToWidth(image, 64);
+        // Assert
+        Assertions.assertEquals(64, scaled.getWidth());
+        Assertions.assertEquals(48, scaled.getHeight());
+        Assertions.assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    @Test
+    public void testDoesNotScaleUp() {
+        // Arrange
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        // Act
+        BufferedImage scaled = AvatarRenditions.scaleToWidth(image, 64);
+        // Assert
+        Assertions.assertEquals(20, scaled.getWidth());
+        Assertions.assertEquals(10, scaled.getHeight());
+    }
+
+    @Test
+    public void testEncodesReadableJpeg() throws IOException {
+        // Arrange
+        BufferedImage image = new BufferedImage(128, 96, BufferedImage.TYPE_INT_ARGB);
+        // Act
+        byte[] jpeg = AvatarRenditions.toProgressiveJpeg(image);
+        // Assert
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+        Assertions.assertEquals(128, decoded.getWidth());
+        Assertions.assertEquals(96, decoded.getHeight());
+    }
+}
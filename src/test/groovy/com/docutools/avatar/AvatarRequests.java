@@ -4,7 +4,6 @@ import com.docutools.roles.PrivilegeCheckDTO;
 import com.docutools.contacts.ProjectContact;
 import com.docutools.users.values.ProfilePicture;
 import com.docutools.contacts.ProjectContactRepository;
-import com.docutools.users.UserRepo;
 import com.docutools.roles.PermissionManager;
 import com.docutools.test.DocutoolsTestUser;
 import com.docutools.test.TestUserHelper;
@@ -45,7 +44,7 @@ public class AvatarRequests {
     @Autowired
     private ProjectContactRepository contactRepository;
     @Autowired
-    private UserRepo usersRepository;
+    private ProfilePictureRepo profilePictureRepo;
 
     @MockBean
     private PermissionManager permissionManager;
@@ -136,8 +135,7 @@ public class AvatarRequests {
         InputStream in = testImage.getInputStream();
         profilePicture.setData(StreamUtils.copyToByteArray(in));
         in.close();
-        user.setAvatar(profilePicture);
-        usersRepository.save(user);
+        profilePictureRepo.save(profilePicture);
         // Act
         given()
                 .accept("image/jpeg")
@@ -0,0 +1,158 @@
+package com.docutools.avatar;
+
+import com.docutools.storage.FileType;
+import com.docutools.storage.StorageAccessKey;
+import com.docutools.storage.StorageEngine;
+import com.docutools.test.TestUserHelper;
+import com.docutools.users.DocutoolsUser;
+import com.docutools.users.SessionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@Transactional
+@DisplayName("AvatarServiceTest")
+public class AvatarServiceTest {
+
+    @Autowired
+    private AvatarService avatarService;
+    @Autowired
+    private StorageEngine storageEngine;
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @MockBean
+    private SessionManager sessionManager;
+    @MockBean(name = "avatarRenditionExecutor")
+    private TaskExecutor renditionExecutor;
+
+    private DocutoolsUser user;
+
+    @BeforeEach
+    public void setup() {
+        user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+    }
+
+    @Test
+    public void thumbnailsAreServedFromTheClosestRendition() throws IOException {
+        //GIVEN
+        runRenditions();
+        avatarService.uploadAvatar(user.getId(), avatar());
+
+        //WHEN
+        int smallest = thumbnailWidth(1);
+        int small = thumbnailWidth(40);
+        int thumbnail = thumbnailWidth(null);
+        int large = thumbnailWidth(2000);
+
+        //THEN
+        assertEquals(32, smallest);
+        assertEquals(64, small);
+        assertEquals(AvatarService.THUMBNAIL_WIDTH, thumbnail);
+        assertEquals(AvatarService.THUMBNAIL_WIDTH, large);
+    }
+
+    @Test
+    public void missingRenditionsAreRescheduledAndServedFromTheThumbnail() throws IOException {
+        //GIVEN
+        Mockito.doThrow(new TaskRejectedException("full")).when(renditionExecutor).execute(Mockito.any());
+        avatarService.uploadAvatar(user.getId(), avatar());
+        runRenditions();
+
+        //WHEN
+        int fallback = thumbnailWidth(32);
+        int rendition = thumbnailWidth(32);
+
+        //THEN
+        Mockito.verify(renditionExecutor, Mockito.times(2)).execute(Mockito.any());
+        assertEquals(AvatarService.THUMBNAIL_WIDTH, fallback);
+        assertEquals(32, rendition);
+    }
+
+    @Test
+    public void renditionsAreDeletedOnUploadAndRemove() throws IOException {
+        //GIVEN
+        runRenditions();
+        avatarService.uploadAvatar(user.getId(), avatar());
+        boolean generated = renditionsExist();
+
+        //WHEN
+        Mockito.doThrow(new TaskRejectedException("full")).when(renditionExecutor).execute(Mockito.any());
+        avatarService.uploadAvatar(user.getId(), avatar());
+        boolean keptOnUpload = renditionsExist();
+        runRenditions();
+        thumbnailWidth(32);
+        boolean regenerated = renditionsExist();
+        avatarService.removeAvatar(user.getId());
+
+        //THEN
+        assertTrue(generated);
+        assertFalse(keptOnUpload);
+        assertTrue(regenerated);
+        assertFalse(renditionsExist());
+        assertEquals(204, thumbnailResponse(32).getStatus());
+    }
+
+    private void runRenditions() {
+        Mockito.doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(renditionExecutor).execute(Mockito.any());
+    }
+
+    private MockMultipartFile avatar() throws IOException {
+        try (InputStream in = new ClassPathResource("logo.jpg").getInputStream()) {
+            return new MockMultipartFile("avatar", "avatar.jpg", "image/jpeg", in);
+        }
+    }
+
+    private int thumbnailWidth(Integer size) throws IOException {
+        MockHttpServletResponse response = thumbnailResponse(size);
+        assertEquals(200, response.getStatus());
+        return ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray())).getWidth();
+    }
+
+    private MockHttpServletResponse thumbnailResponse(Integer size) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        avatarService.writeThumbnailToResponse(user.getId(), size, response, new MockHttpServletRequest());
+        return response;
+    }
+
+    private boolean renditionsExist() {
+        for (int width : new int[]{32, 64, 128}) {
+            StorageAccessKey key = new StorageAccessKey(FileType.Misc, String.format("users/avatars/%d/%s.jpg", width, user.getId()));
+            if (!storageEngine.exists(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
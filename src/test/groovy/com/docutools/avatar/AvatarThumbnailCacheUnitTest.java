@@ -0,0 +1,150 @@
+package com.docutools.avatar;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Tag("unit")
+public class AvatarThumbnailCacheUnitTest {
+
+    private AtomicLong nanos;
+    private AvatarThumbnailCache cache;
+
+    @BeforeEach
+    public void setup() {
+        nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        cache = new AvatarThumbnailCache(100_000, 3600, 30, ticker);
+    }
+
+    @Test
+    public void testCachesThumbnails() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<byte[]>> loader = () -> {
+            loads.incrementAndGet();
+            return Optional.of(new byte[]{1, 2, 3});
+        };
+        // Act
+        cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader);
+        AvatarThumbnailCache.Thumbnail thumbnail = cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader).orElse(null);
+        // Assert
+        Assertions.assertNotNull(thumbnail);
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, thumbnail.getData());
+        Assertions.assertEquals("5289df737df57326fcdd22597afb1fac", thumbnail.getChecksum());
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1L, cache.stats().get("hits"));
+        Assertions.assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    public void testCachesMissingThumbnails() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<byte[]>> loader = () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        };
+        // Act & Assert
+        Assertions.assertFalse(cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader).isPresent());
+        Assertions.assertFalse(cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader).isPresent());
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testDoesNotCacheFallbacks() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<AvatarThumbnailCache.Thumbnail>> loader = () -> {
+            loads.incrementAndGet();
+            return Optional.of(new AvatarThumbnailCache.Thumbnail(new byte[]{1, 2, 3}).asFallback());
+        };
+        // Act
+        AvatarThumbnailCache.Thumbnail fallback = cache.load(id, 32, loader).orElse(null);
+        cache.load(id, 32, loader);
+        Optional<AvatarThumbnailCache.Thumbnail> rendition = cache.get(id, 32, () -> Optional.of(new byte[]{4}));
+        // Assert
+        Assertions.assertNotNull(fallback);
+        Assertions.assertTrue(fallback.isFallback());
+        Assertions.assertEquals("5289df737df57326fcdd22597afb1fac", fallback.getChecksum());
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertArrayEquals(new byte[]{4}, rendition.get().getData());
+    }
+
+    @Test
+    public void testExpiresMissingThumbnailsAfterMissingTtl() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(id, AvatarService.THUMBNAIL_WIDTH, () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        // Act
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        Optional<AvatarThumbnailCache.Thumbnail> thumbnail = cache.get(id, AvatarService.THUMBNAIL_WIDTH, () -> {
+            loads.incrementAndGet();
+            return Optional.of(new byte[]{1});
+        });
+        // Assert
+        Assertions.assertTrue(thumbnail.isPresent());
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        cache.get(id, AvatarService.THUMBNAIL_WIDTH, Optional::empty);
+        // Act
+        cache.invalidate(id);
+        Optional<AvatarThumbnailCache.Thumbnail> thumbnail = cache.get(id, AvatarService.THUMBNAIL_WIDTH, () -> Optional.of(new byte[]{1}));
+        // Assert
+        Assertions.assertTrue(thumbnail.isPresent());
+    }
+
+    @Test
+    public void testExpiresThumbnailsAfterTtl() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<byte[]>> loader = () -> {
+            loads.incrementAndGet();
+            return Optional.of(new byte[]{1});
+        };
+        cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader);
+        // Act
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(3601));
+        cache.get(id, AvatarService.THUMBNAIL_WIDTH, loader);
+        // Assert
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEvictsByBytes() {
+        // Act
+        for (int i = 0; i < 100; i++) {
+            cache.get(UUID.randomUUID(), AvatarService.THUMBNAIL_WIDTH, () -> Optional.of(new byte[10_000]));
+        }
+        // Assert
+        Assertions.assertTrue((long) cache.stats().get("bytes") <= 100_000L);
+        Assertions.assertTrue((long) cache.stats().get("evictions") > 0L);
+    }
+}
@@ -0,0 +1,23 @@
+package com.docutools.contacts;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class ProjectContactControllerUnitTest {
+
+    @Test
+    public void testAcceptsGzip() {
+        // Act & Assert
+        Assertions.assertTrue(ProjectContactController.acceptsGzip("gzip"));
+        Assertions.assertTrue(ProjectContactController.acceptsGzip("deflate, GZIP;q=0.5"));
+        Assertions.assertTrue(ProjectContactController.acceptsGzip("br;q=1.0, *;q=0.1"));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip(""));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip("identity"));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip("gzip;q=0"));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip("gzip; q=0.000, *"));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip("x-gzipped"));
+        Assertions.assertFalse(ProjectContactController.acceptsGzip("*;q=0"));
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -127,7 +128,7 @@ public class ProjectContactCrud {
         projectContactRepository.save(replacedContact);
 
         // Act
-        List<ProjectContact> contacts = projectContactRepository.searchInProject(replacedContact.getProjectId(), "")
+        List<ProjectContact> contacts = projectContactRepository.searchInProject(replacedContact.getProjectId(), "", "%%")
                 .collect(Collectors.toList());
 
         // Assert
@@ -151,9 +152,31 @@ public class ProjectContactCrud {
         }
 
         // WHEN
-        List<ProjectContact> projectContacts = projectContactRepository.searchInProject(projectId, "Web", PageRequest.of(page, size)).collect(Collectors.toList());
+        List<ProjectContact> projectContacts = projectContactRepository.searchInProject(projectId, "web", "%web%", PageRequest.of(page, size)).collect(Collectors.toList());
 
         // THEN
         assert projectContacts.size() == size;
     }
+
+    @Test
+    public void searchContactInProjectBySimilarity() {
+        // GIVEN
+        UUID projectId = UUID.randomUUID();
+        ProjectContact wendelin = new ProjectContact(projectId);
+        wendelin.setFirstName("Wendelin");
+        wendelin.setLastName("Peleska");
+        wendelin.setCompanyName("Holzbau Gruber");
+        ProjectContact sarah = new ProjectContact(projectId);
+        sarah.setFirstName("Sarah");
+        sarah.setLastName("Wiener");
+        projectContactRepository.saveAll(Arrays.asList(wendelin, sarah));
+        projectContactRepository.flush();
+
+        // WHEN
+        List<ProjectContact> projectContacts = projectContactRepository.searchInProject(projectId, "holzbau gruba", "%holzbau gruba%")
+                .collect(Collectors.toList());
+
+        // THEN
+        assertThat(projectContacts, contains(wendelin));
+    }
 }
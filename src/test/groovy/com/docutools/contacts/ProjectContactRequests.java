@@ -1,6 +1,7 @@
 package com.docutools.contacts;
 
 import com.docutools.roles.PermissionManager;
+import com.docutools.roles.Privilege;
 import com.docutools.roles.PrivilegeCheckDTO;
 import com.docutools.test.TestUserHelper;
 import com.docutools.users.ImportedFileDTO;
@@ -24,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,7 @@ import java.util.UUID;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -40,6 +43,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -174,6 +178,94 @@ public class ProjectContactRequests {
         assertThat(contactRepository.existsById(contact.getId()), is(false));
     }
 
+    @Test
+    @DisplayName("Hide Project Contacts from Users without Team Privileges")
+    public void hideContactsWithoutPrivileges() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        when(permissionManager.checkPrivilege(eq(projectId), anyList(), anyBoolean()))
+                .thenReturn(new PrivilegeCheckDTO(Collections.emptyList(), projectId, true, false));
+        ProjectContact contact = newContact(projectId);
+
+        // Act
+        int status = getContactStatus(contact.getId());
+        ProjectContact[] projectContacts = listContacts(projectId);
+
+        // Assert
+        assertThat(status, is(404));
+        assertThat(projectContacts.length, is(0));
+    }
+
+    @Test
+    @DisplayName("Show Project Contacts read-only to Users with ViewTeam")
+    public void showContactsWithViewTeam() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        when(permissionManager.checkPrivilege(eq(projectId), anyList(), anyBoolean()))
+                .thenReturn(new PrivilegeCheckDTO(Collections.singletonList(Privilege.ViewTeam), projectId, true, true));
+        ProjectContact contact = newContact(projectId);
+
+        // Act
+        List<String> permissions = given()
+                .accept("application/json")
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts/{id}", contact.getId()) //
+        .then()
+                .log().all()
+                .statusCode(200)
+                .extract().path("permissions");
+        List<List<String>> listedPermissions = given()
+                .accept("application/json")
+                .queryParam("projectId", projectId)
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts") //
+        .then()
+                .log().all()
+                .statusCode(200)
+                .extract().path("permissions");
+
+        // Assert
+        assertThat(permissions, containsInAnyOrder("View"));
+        assertThat(listedPermissions.size(), is(1));
+        assertThat(listedPermissions.get(0), containsInAnyOrder("View"));
+    }
+
+    private ProjectContact newContact(UUID projectId) {
+        ProjectContact resource = new ProjectContact(projectId);
+        resource.setCompanyName("Porr AG");
+        return contactRepository.saveAndFlush(resource);
+    }
+
+    private int getContactStatus(UUID id) {
+        return given()
+                .accept("application/json")
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts/{id}", id) //
+        .then()
+                .log().all()
+                .extract().statusCode();
+    }
+
+    private ProjectContact[] listContacts(UUID projectId) {
+        return given()
+                .accept("application/json")
+                .queryParam("projectId", projectId)
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts") //
+        .then()
+                .log().all()
+                .statusCode(200)
+                .extract().as(ProjectContact[].class);
+    }
+
     @Test
     @DisplayName("Search Projects Contacts")
     public void searchProjectsContacts() {
@@ -216,6 +308,92 @@ public class ProjectContactRequests {
         assertThat(Arrays.asList(projectContacts), containsInAnyOrder(sarahWiener, arminWolf));
     }
 
+    @Test
+    @DisplayName("Export Project Contacts as gzipped CSV")
+    public void exportProjectContactsCsv() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        ProjectContact sarahWiener = new ProjectContact(projectId);
+        sarahWiener.setFirstName("Sarah");
+        sarahWiener.setLastName("Wiener");
+        ProjectContact arminWolf = new ProjectContact(projectId);
+        arminWolf.setFirstName("Armin");
+        arminWolf.setLastName("Wolf");
+        contactRepository.saveAll(Arrays.asList(sarahWiener, arminWolf));
+
+        // Act
+        String csv = given()
+                .header("Accept-Encoding", "gzip")
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts/{projectId}/csv", projectId) //
+        .then()
+                .log().all()
+                .statusCode(200)
+                .header("Content-Encoding", "gzip")
+                .header("Vary", "Accept-Encoding")
+                .extract().asString();
+
+        // Assert
+        String[] lines = csv.split("\n");
+        assertThat(lines.length, is(3));
+        assertThat(Arrays.asList(lines).subList(1, 3), containsInAnyOrder(sarahWiener.toCommaSeparated(), arminWolf.toCommaSeparated()));
+    }
+
+    @Test
+    @DisplayName("Deny the CSV Export to Users without ViewTeam")
+    public void denyProjectContactsCsvWithoutViewTeam() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        when(permissionManager.hasPrivileges(eq(projectId), any()))
+                .thenReturn(false);
+        ProjectContact sarahWiener = new ProjectContact(projectId);
+        sarahWiener.setFirstName("Sarah");
+        sarahWiener.setLastName("Wiener");
+        contactRepository.save(sarahWiener);
+
+        // Act & Assert
+        given()
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts/{projectId}/csv", projectId) //
+        .then()
+                .log().all()
+                .statusCode(403);
+    }
+
+    @Test
+    @DisplayName("Export Project Contacts as one VCard file")
+    public void exportProjectVCards() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        ProjectContact sarahWiener = new ProjectContact(projectId);
+        sarahWiener.setFirstName("Sarah");
+        sarahWiener.setLastName("Wiener");
+        ProjectContact arminWolf = new ProjectContact(projectId);
+        arminWolf.setFirstName("Armin");
+        arminWolf.setLastName("Wolf");
+        contactRepository.saveAll(Arrays.asList(sarahWiener, arminWolf));
+
+        // Act
+        String vCards = given()
+                .auth().oauth2(token)
+                .log().all() //
+        .when()
+                .get("/api/v2/contacts/{projectId}/vcf", projectId) //
+        .then()
+                .log().all()
+                .statusCode(200)
+                .extract().asString();
+
+        // Assert
+        assertThat(vCards.split("BEGIN:VCARD").length - 1, is(2));
+        assertThat(vCards, containsString("N:Wiener;Sarah"));
+        assertThat(vCards, containsString("N:Wolf;Armin"));
+    }
+
     @Test
     @DisplayName("Export Contact as VCard")
     public void exportVCard(){
@@ -306,6 +484,47 @@ public class ProjectContactRequests {
         assertEquals(projectContacts.length,3);
     }
 
+    @Test
+    @DisplayName("Import Project Contact File and return a summary.")
+    public void importContactSummary() throws IOException {
+        File file = new ClassPathResource("contacts.csv").getFile();
+        ImportedFileDTO importedFileDTO = given()
+            .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
+            .multiPart("file", file, "text/csv")
+            .accept("application/json")
+            .auth().oauth2(token)
+            .queryParam("delimiter", ";")
+            .queryParam("projectId", UUID.randomUUID())
+            .when()
+            .post("/api/v2/contacts/import/file")
+            .then()
+            .statusCode(200)
+            .extract().as(ImportedFileDTO.class);
+
+        Map<String,Columns> columnsMap = new HashMap<>();
+        columnsMap.put("email",Columns.Email);
+        columnsMap.put("first",Columns.FirstName);
+        columnsMap.put("company",Columns.CompanyName);
+        ProjectContactImport projectContactImport = new ProjectContactImport(importedFileDTO.getId(),UUID.randomUUID(), ';',columnsMap,"UTF-8");
+
+        // Act
+        given()
+            .contentType("application/json")
+            .accept("application/json")
+            .auth().oauth2(token)
+            .body(projectContactImport)
+            .log().all() //
+            .when()
+            .post("/api/v2/contacts/import/summary") //
+            .then()
+            .log().all()
+            .statusCode(200)
+            // Assert
+            .body("rows", equalTo(3))
+            .body("imported", equalTo(3))
+            .body("done", equalTo(true));
+    }
+
     @Test
     @DisplayName("Deny a Contact CSV File with line breaks in Header Row.")
     public void denyAContactCSVWithLineBReaksInHeaderRow() throws IOException {
@@ -1,5 +1,7 @@
 package com.docutools.internal;
 
+import com.docutools.roles.Privilege;
+import com.docutools.roles.PrivilegeCheckRequestDTO;
 import com.docutools.team.MembershipState;
 import com.docutools.team.TeamMembership;
 import com.docutools.team.TeamMembershipRepo;
@@ -7,24 +9,34 @@ import com.docutools.test.DocutoolsTestUser;
 import com.docutools.test.TestUserHelper;
 import com.docutools.users.DocutoolsUser;
 import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("integration")
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @ActiveProfiles({"dev"})
 @ExtendWith(SpringExtension.class)
 public class InternalApiRequests {
@@ -32,11 +44,17 @@ public class InternalApiRequests {
     @LocalServerPort
     private int port;
 
+    @Value("${docutools.internal.apiKey:b7abbc58-ef02-4a1f-a85a-e47c4e25b2ce}")
+    private String apiKey;
+
     @Autowired
     private TeamMembershipRepo membershipRepository;
 
     @Autowired
     private TestUserHelper testUserHelper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
     private DocutoolsTestUser user;
     private String token;
 
@@ -76,4 +94,81 @@ public class InternalApiRequests {
         assertThat("Is Member", isMember);
     }
 
+    @Test
+    @DisplayName("Reject bulk privilege checks without user or project.")
+    public void checkPrivilegesWithoutUserOrProject() {
+        // Arrange
+        PrivilegeCheckRequestDTO withoutUser = new PrivilegeCheckRequestDTO(null, UUID.randomUUID(),
+            Collections.singletonList(Privilege.ViewTeam), false);
+        PrivilegeCheckRequestDTO withoutProject = new PrivilegeCheckRequestDTO(user.getId(), null,
+            Collections.singletonList(Privilege.ViewTeam), false);
+
+        // Act & Assert
+        for (PrivilegeCheckRequestDTO request : new PrivilegeCheckRequestDTO[]{withoutUser, withoutProject}) {
+            given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .header("X-AUTH-TOKEN", apiKey)
+                .body(Collections.singletonList(request))
+                .log().all()
+                .when()
+                .post("/api/internal/v2/checkPrivileges")
+                .then()
+                .log().all()
+                .statusCode(400);
+        }
+    }
+
+    @Test
+    @DisplayName("Reject bulk privilege checks without privileges.")
+    public void checkPrivilegesWithoutPrivileges() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        membershipRepository.save(new TeamMembership(user, projectId, MembershipState.Active));
+        PrivilegeCheckRequestDTO withoutPrivileges = new PrivilegeCheckRequestDTO(user.getId(), projectId,
+            Collections.emptyList(), false);
+
+        // Act & Assert
+        given()
+            .contentType(ContentType.JSON)
+            .accept(ContentType.JSON)
+            .header("X-AUTH-TOKEN", apiKey)
+            .body(Collections.singletonList(withoutPrivileges))
+            .log().all()
+            .when()
+            .post("/api/internal/v2/checkPrivileges")
+            .then()
+            .log().all()
+            .statusCode(400);
+    }
+
+    @Test
+    @DisplayName("List a project team with a constant number of statements.")
+    public void getTeamCostsConstantStatements() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        // every member in an organisation of its own
+        for (int i = 0; i < 50; i++) {
+            membershipRepository.save(new TeamMembership(testUserHelper.newTestUser(), projectId, MembershipState.Active));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act
+        List<String> team = given()
+            .accept(ContentType.JSON)
+            .header("X-AUTH-TOKEN", apiKey)
+            .log().all()
+            .when()
+            .get("/api/internal/v2/team/{projectId}", projectId)
+            .then()
+            .log().all()
+            .statusCode(200)
+            .extract().jsonPath().getList("userId");
+
+        // Assert
+        assertEquals(50, team.size());
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+            "Expected a constant number of statements, but were " + statistics.getPrepareStatementCount());
+    }
 }
@@ -0,0 +1,144 @@
+package com.docutools.internal;
+
+import com.docutools.roles.PermissionManager;
+import com.docutools.roles.Privilege;
+import com.docutools.roles.PrivilegeCheckDTO;
+import com.docutools.roles.PrivilegeCheckRequestDTO;
+import com.docutools.roles.Role;
+import com.docutools.roles.RoleRepo;
+import com.docutools.roles.RoleType;
+import com.docutools.services.internal.InternalApiClient;
+import com.docutools.services.projects.resources.Project;
+import com.docutools.team.MembershipState;
+import com.docutools.team.TeamMembership;
+import com.docutools.team.TeamMembershipRepo;
+import com.docutools.test.TestUserHelper;
+import com.docutools.users.DocutoolsUser;
+import com.docutools.users.Organisation;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link PermissionManager#checkPrivilegesInternal(List)} needs the same number of SQL statements for
+ * different batch sizes. Timings are measured by the PrivilegeBulkCheckBenchmark in src/jmh.
+ */
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@DisplayName("PrivilegeBulkCheckTest")
+public class PrivilegeBulkCheckTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PrivilegeBulkCheckTest.class);
+
+    private static final int USERS = 100;
+    private static final int PROJECTS = 100;
+
+    @Autowired
+    private PermissionManager permissionManager;
+    @Autowired
+    private TestUserHelper testUserHelper;
+    @Autowired
+    private RoleRepo roleRepository;
+    @Autowired
+    private TeamMembershipRepo teamMembershipRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private InternalApiClient internalApiClient;
+
+    private List<PrivilegeCheckRequestDTO> tuples;
+
+    @BeforeEach
+    public void setup() {
+        DocutoolsUser owner = testUserHelper.newTestUser();
+        Organisation organisation = owner.getOrganisation();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), organisation, owner, RoleType.Viewer, true));
+
+        Mockito.when(internalApiClient.getProjectById(Mockito.any())).thenAnswer(invocation -> {
+            Project project = new Project();
+            project.setId(invocation.getArgument(0));
+            project.setOrganisationId(UUID.randomUUID());
+            return Optional.of(project);
+        });
+
+        List<UUID> projectIds = new ArrayList<>();
+        for (int i = 0; i < PROJECTS; i++) {
+            projectIds.add(UUID.randomUUID());
+        }
+
+        tuples = new ArrayList<>();
+        List<TeamMembership> memberships = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            DocutoolsUser user = testUserHelper.newTestUser(organisation, false, false, false);
+            for (int j = 0; j < PROJECTS; j++) {
+                UUID projectId = projectIds.get(j);
+                if (j % 2 == 0) {
+                    TeamMembership membership = new TeamMembership(user, projectId, MembershipState.Active);
+                    membership.setRole(viewer);
+                    memberships.add(membership);
+                }
+                tuples.add(new PrivilegeCheckRequestDTO(user.getId(), projectId,
+                        Arrays.asList(Privilege.ViewTeam, Privilege.ManageTeam), true));
+            }
+        }
+        teamMembershipRepo.saveAll(memberships);
+    }
+
+    @Test
+    public void statementsDoNotGrowWithBatchSize() {
+        //GIVEN
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        permissionManager.checkPrivilegesInternal(tuples.subList(0, 100)); // warm up
+
+        //WHEN
+        long statementsForHundred = countStatements(statistics, tuples.subList(0, 100));
+        long statementsForTenThousand = countStatements(statistics, tuples);
+
+        //THEN
+        List<PrivilegeCheckDTO> results = permissionManager.checkPrivilegesInternal(tuples);
+        assertEquals(tuples.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(tuples.get(i).getProjectId(), results.get(i).getProjectId());
+            assertEquals(tuples.get(i).getUserId(), results.get(i).getCurrentUserId());
+            assertEquals(i % PROJECTS % 2 == 0, results.get(i).isCheck());
+        }
+        assertTrue(statementsForHundred < 20,
+                "Expected a constant number of statements for 100 checks, but were " + statementsForHundred);
+        assertTrue(statementsForTenThousand < 20,
+                "Expected a constant number of statements for 10000 checks, but were " + statementsForTenThousand);
+    }
+
+    private long countStatements(Statistics statistics, List<PrivilegeCheckRequestDTO> batch) {
+        statistics.clear();
+        permissionManager.checkPrivilegesInternal(batch);
+        long statements = statistics.getPrepareStatementCount();
+        log.info("Batch size {}: {} statements", batch.size(), statements);
+        return statements;
+    }
+}
@@ -0,0 +1,178 @@
+package com.docutools.projects;
+
+import com.docutools.services.internal.InternalApiClient;
+import com.docutools.services.projects.resources.Project;
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Tag("unit")
+public class ProjectMetadataCacheUnitTest {
+
+    private InternalApiClient internalApiClient;
+    private AtomicLong nanos;
+    private ProjectMetadataCache cache;
+
+    @BeforeEach
+    public void setup() {
+        internalApiClient = Mockito.mock(InternalApiClient.class);
+        nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        cache = new ProjectMetadataCache(internalApiClient, 100, 600, 30, ticker);
+    }
+
+    @Test
+    public void testCachesProjects() {
+        // Arrange
+        Project project = project();
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+        // Act
+        cache.get(project.getId());
+        ProjectMetadata metadata = cache.get(project.getId());
+        // Assert
+        Assertions.assertEquals(project.getOrganisationId(), metadata.getOrganisationId());
+        Mockito.verify(internalApiClient, Mockito.times(1)).getProjectById(project.getId());
+        Assertions.assertEquals(1L, cache.stats().get("hits"));
+        Assertions.assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    public void testVisibleProjectsAreAlwaysFetchedAndCached() {
+        // Arrange
+        Project project = project();
+        AtomicLong fetched = new AtomicLong();
+        // Act
+        cache.getVisible(project.getId(), () -> {
+            fetched.incrementAndGet();
+            return project;
+        });
+        ProjectMetadata metadata = cache.getVisible(project.getId(), () -> {
+            fetched.incrementAndGet();
+            return project;
+        });
+        ProjectMetadata cached = cache.get(project.getId());
+        // Assert
+        Assertions.assertEquals(2L, fetched.get());
+        Assertions.assertEquals(project.getOrganisationId(), metadata.getOrganisationId());
+        Assertions.assertEquals(project.getOrganisationId(), cached.getOrganisationId());
+        Mockito.verify(internalApiClient, Mockito.never()).getProjectById(project.getId());
+    }
+
+    @Test
+    public void testExpiresProjectsAfterTtl() {
+        // Arrange
+        Project project = project();
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+        cache.get(project.getId());
+        // Act
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+        cache.get(project.getId());
+        // Assert
+        Mockito.verify(internalApiClient, Mockito.times(2)).getProjectById(project.getId());
+    }
+
+    @Test
+    public void testCachesMissingProjectsShortly() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.empty());
+        // Act & Assert
+        Assertions.assertFalse(cache.find(projectId).isPresent());
+        Assertions.assertFalse(cache.find(projectId).isPresent());
+        Mockito.verify(internalApiClient, Mockito.times(1)).getProjectById(projectId);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        Assertions.assertFalse(cache.find(projectId).isPresent());
+        Mockito.verify(internalApiClient, Mockito.times(2)).getProjectById(projectId);
+        Assertions.assertEquals(2L, cache.stats().get("missingProjects"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        // Arrange
+        Project project = project();
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+        cache.get(project.getId());
+        // Act
+        cache.invalidate(project.getId());
+        cache.get(project.getId());
+        // Assert
+        Mockito.verify(internalApiClient, Mockito.times(2)).getProjectById(project.getId());
+    }
+
+    @Test
+    public void testGetAllFetchesUncachedProjectsInOneCall() {
+        // Arrange
+        Project cached = project();
+        Project fetched = project();
+        Project other = project();
+        Mockito.when(internalApiClient.getProjectById(cached.getId())).thenReturn(Optional.of(cached));
+        Mockito.when(internalApiClient.getProjectById(other.getId())).thenReturn(Optional.of(other));
+        cache.get(cached.getId());
+        AtomicLong calls = new AtomicLong();
+        // Act
+        Map<UUID, ProjectMetadata> projects = cache.getAll(Arrays.asList(other.getId(), fetched.getId(), cached.getId()), () -> {
+            calls.incrementAndGet();
+            return Arrays.asList(fetched, project());
+        });
+        cache.get(fetched.getId());
+        // Assert
+        Assertions.assertEquals(Arrays.asList(other.getId(), fetched.getId(), cached.getId()), new ArrayList<>(projects.keySet()));
+        Assertions.assertEquals(fetched.getOrganisationId(), projects.get(fetched.getId()).getOrganisationId());
+        Assertions.assertEquals(1L, calls.get());
+        Mockito.verify(internalApiClient, Mockito.never()).getProjectById(fetched.getId());
+        Mockito.verify(internalApiClient, Mockito.times(1)).getProjectById(other.getId());
+    }
+
+    @Test
+    public void testCollapsesConcurrentLookups() throws Exception {
+        // Arrange
+        Project project = project();
+        CountDownLatch loading = new CountDownLatch(1);
+        Mockito.when(internalApiClient.getProjectById(project.getId())).then(args -> {
+            loading.await(1, TimeUnit.SECONDS);
+            return Optional.of(project);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // Act
+        List<Future<ProjectMetadata>> lookups = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            lookups.add(executor.submit(() -> cache.get(project.getId())));
+        }
+        loading.countDown();
+        for (Future<ProjectMetadata> lookup : lookups) {
+            Assertions.assertEquals(project.getId(), lookup.get().getId());
+        }
+        executor.shutdown();
+        // Assert
+        Mockito.verify(internalApiClient, Mockito.times(1)).getProjectById(project.getId());
+    }
+
+    private static Project project() {
+        Project project = new Project();
+        project.setId(UUID.randomUUID());
+        project.setOrganisationId(UUID.randomUUID());
+        return project;
+    }
+}
@@ -0,0 +1,187 @@
+package com.docutools.roles;
+
+import com.docutools.services.internal.InternalApiClient;
+import com.docutools.services.projects.resources.Project;
+import com.docutools.team.MembershipState;
+import com.docutools.team.TeamMembership;
+import com.docutools.team.TeamMembershipRepo;
+import com.docutools.test.TestUserHelper;
+import com.docutools.users.DocutoolsUser;
+import com.docutools.users.SessionManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@DisplayName("PermissionManagerTest")
+public class PermissionManagerTest {
+
+    private static final int TEAM_SIZE = 500;
+
+    @Autowired
+    private PermissionManager permissionManager;
+    @Autowired
+    private TestUserHelper testUserHelper;
+    @Autowired
+    private RoleRepo roleRepository;
+    @Autowired
+    private TeamMembershipRepo teamMembershipRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private SessionManager sessionManager;
+    @MockBean
+    private InternalApiClient internalApiClient;
+
+    @BeforeEach
+    public void bindRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    public void unbindRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void privilegeChecksPerRowCostConstantRoundTrips() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+
+        Project project = new Project();
+        project.setId(UUID.randomUUID());
+        project.setOrganisationId(UUID.randomUUID());
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+
+        TeamMembership membership = new TeamMembership(user, project.getId(), MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        for (int i = 0; i < TEAM_SIZE; i++) {
+            permissionManager.hasPrivileges(project.getId(), Privilege.ManageTeam);
+            permissionManager.hasAnyPrivileges(project.getId(), Privilege.ViewTeam, Privilege.ManageTeam);
+            permissionManager.isMember(project.getId());
+        }
+
+        //THEN
+        assertTrue(permissionManager.hasPrivileges(project.getId(), Privilege.ViewTeam));
+        assertFalse(permissionManager.hasPrivileges(project.getId(), Privilege.ManageTeam));
+        Mockito.verify(sessionManager, Mockito.times(1)).getCurrentUser();
+        // plain members are resolved from their membership, the project is never looked up
+        Mockito.verify(internalApiClient, Mockito.never()).getProjectById(project.getId());
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+                "Expected a constant number of statements, but were " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void privilegeChecksOfAdminLookUpProjectOnce() {
+        //GIVEN
+        DocutoolsUser admin = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(admin);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), admin.getOrganisation(), admin, RoleType.Viewer, true));
+
+        Project project = new Project();
+        project.setId(UUID.randomUUID());
+        project.setOrganisationId(UUID.randomUUID());
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+
+        TeamMembership membership = new TeamMembership(admin, project.getId(), MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+
+        //WHEN
+        for (int i = 0; i < TEAM_SIZE; i++) {
+            permissionManager.hasPrivileges(project.getId(), Privilege.ManageTeam);
+            permissionManager.hasAnyPrivileges(project.getId(), Privilege.ViewTeam, Privilege.ManageTeam);
+        }
+
+        //THEN
+        assertTrue(permissionManager.hasPrivileges(project.getId(), Privilege.ViewTeam));
+        assertFalse(permissionManager.hasPrivileges(project.getId(), Privilege.ManageTeam));
+        Mockito.verify(internalApiClient, Mockito.times(1)).getProjectById(project.getId());
+    }
+
+    @Test
+    public void evictReloadsMembershipAfterTeamChange() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+
+        Project project = new Project();
+        project.setId(UUID.randomUUID());
+        project.setOrganisationId(UUID.randomUUID());
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
+        assertFalse(permissionManager.isMember(project.getId()));
+
+        //WHEN
+        TeamMembership membership = new TeamMembership(user, project.getId(), MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+        permissionManager.evict(project.getId());
+
+        //THEN
+        assertTrue(permissionManager.isMember(project.getId()));
+    }
+
+    @Test
+    public void filterOrganisationProjectsLoadsMembershipsOnce() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        List<UUID> projectIds = new ArrayList<>();
+        for (int i = 0; i < TEAM_SIZE; i++) {
+            projectIds.add(UUID.randomUUID());
+        }
+        TeamMembership membership = new TeamMembership(user, projectIds.get(42), MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        List<UUID> visible = permissionManager.filterOrganisationProjects(projectIds, Collections.singletonList(Privilege.ViewTeam));
+
+        //THEN
+        assertEquals(Collections.singletonList(projectIds.get(42)), visible);
+        Mockito.verifyZeroInteractions(internalApiClient);
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+                "Expected a constant number of statements, but were " + statistics.getPrepareStatementCount());
+    }
+}
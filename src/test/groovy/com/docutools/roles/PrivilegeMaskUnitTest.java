@@ -0,0 +1,44 @@
+package com.docutools.roles;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+@Tag("unit")
+public class PrivilegeMaskUnitTest {
+
+    @Test
+    public void testMaskRoundTrip() {
+        // Arrange
+        Set<Privilege> privileges = Privilege.getViewerPrivileges();
+        // Act
+        long mask = PrivilegeMask.of(privileges);
+        // Assert
+        Assertions.assertEquals(privileges, PrivilegeMask.toSet(mask));
+        Assertions.assertEquals(EnumSet.allOf(Privilege.class), PrivilegeMask.toSet(PrivilegeMask.of(Privilege.values())));
+    }
+
+    @Test
+    public void testContainsAny() {
+        // Arrange
+        long mask = PrivilegeMask.of(Privilege.ViewTeam, Privilege.ViewTasks);
+        // Act & Assert
+        Assertions.assertTrue(PrivilegeMask.contains(mask, Privilege.ViewTeam));
+        Assertions.assertFalse(PrivilegeMask.contains(mask, Privilege.ManageTeam));
+        Assertions.assertTrue(PrivilegeMask.containsAny(mask, PrivilegeMask.of(Privilege.ManageTeam, Privilege.ViewTasks)));
+        Assertions.assertFalse(PrivilegeMask.containsAny(mask, PrivilegeMask.of(Privilege.ManageTeam, Privilege.RejectTasks)));
+        Assertions.assertFalse(PrivilegeMask.containsAny(mask, PrivilegeMask.NONE));
+    }
+
+    @Test
+    public void testDefaultRoleMasksMatchPrivileges() {
+        for (RoleType roleType : DefaultRoles.instance.getActiveDefaultRoleTypes()) {
+            Set<Privilege> privileges = DefaultRoles.instance.getPrivilegesForRoleType(roleType).get();
+            long mask = DefaultRoles.instance.getPrivilegeMaskForRoleType(roleType).getAsLong();
+            Assertions.assertEquals(privileges, PrivilegeMask.toSet(mask), roleType.name());
+        }
+    }
+}
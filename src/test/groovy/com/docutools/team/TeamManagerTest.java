@@ -1,9 +1,20 @@
 package com.docutools.team;
 
+import com.docutools.apierrors.ApiException;
+import com.docutools.exceptions.ExceptionHelper;
+import com.docutools.outbox.ChangeEvent;
+import com.docutools.outbox.ChangeEventRelay;
+import com.docutools.outbox.ChangeEventType;
+import com.docutools.outbox.InMemoryChangeEventSink;
+import com.docutools.projects.ProjectMetadataCache;
 import com.docutools.roles.DefaultRoles;
+import com.docutools.roles.Privilege;
 import com.docutools.roles.Role;
+import com.docutools.roles.RoleManager;
 import com.docutools.roles.RoleRepo;
 import com.docutools.roles.RoleType;
+import com.docutools.services.core.resources.SortDirection;
+import com.docutools.services.internal.InternalApiClient;
 import com.docutools.services.projects.ProjectApiClient;
 import com.docutools.services.projects.resources.Project;
 import com.docutools.test.TestUserHelper;
@@ -11,6 +22,9 @@ import com.docutools.users.DocutoolsUser;
 import com.docutools.users.Organisation;
 import com.docutools.users.OrganisationRepo;
 import com.docutools.users.SessionManager;
+import com.docutools.users.UserRepo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -19,16 +33,24 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.util.CollectionUtils;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -36,7 +58,8 @@ import java.util.stream.IntStream;
 import static org.junit.jupiter.api.Assertions.*;
 
 @Tag("integration")
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @ActiveProfiles({"dev"})
 @ExtendWith(SpringExtension.class)
 @DisplayName("TeamManagerTest")
@@ -53,18 +76,42 @@ public class TeamManagerTest {
     @Autowired
     private RoleRepo roleRepository;
 
+    @Autowired
+    private RoleManager roleManager;
+
+    @Autowired
+    private ProjectMetadataCache projectMetadataCache;
+
     @Autowired
     private TeamMembershipRepo teamMembershipRepo;
 
     @Autowired
     private OrganisationRepo organisationRepo;
 
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ChangeEventRelay changeEventRelay;
+
+    @Autowired
+    private InMemoryChangeEventSink changeEventSink;
+
     @MockBean
     private SessionManager sessionManager;
 
     @MockBean
     private ProjectApiClient projectApi;
 
+    @MockBean
+    private InternalApiClient internalApiClient;
+
+    @MockBean
+    private InvitationDispatcher invitationDispatcher;
+
     @Test
     public void getProjectIdListFromUserIdInExpectedTime() {
         //GIVEN
@@ -154,6 +201,197 @@ public class TeamManagerTest {
         assertEquals(pageSize, leftProjectIdListFromUserId.size());
     }
 
+    @Test
+    public void getUserProjectsWithRemovedMembershipsBySlices() {
+        int sliceSize = 10;
+        int totalMemberships = 25;
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        // several memberships share a timestamp, so the project id has to break the ties
+        ZonedDateTime removedAt = ZonedDateTime.now();
+        List<UUID> expected = IntStream.range(0, totalMemberships).mapToObj(i -> {
+            TeamMembership membership = new TeamMembership(user, UUID.randomUUID(), MembershipState.Removed);
+            membership.setRole(viewer);
+            membership.setLastModifiedBy(user.getId());
+            membership.setLastModified(removedAt.plusSeconds(i / 5));
+            return teamMembershipRepo.save(membership).getProjectId();
+        }).collect(Collectors.toList());
+
+        //WHEN
+        List<UUID> projectIds = new ArrayList<>();
+        ProjectIdSliceDTO slice = teamManager.getLeftProjectIdSliceFromUserId(user.getId(), sliceSize, removedAt.minusSeconds(1).toInstant(), null);
+        projectIds.addAll(slice.getProjectIds());
+        while (slice.getNext() != null) {
+            slice = teamManager.getLeftProjectIdSliceFromUserId(user.getId(), sliceSize, null, slice.getNext());
+            projectIds.addAll(slice.getProjectIds());
+        }
+
+        //THEN
+        assertEquals(totalMemberships, projectIds.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(projectIds));
+        assertTrue(teamManager.getLeftProjectIdSliceFromUserId(user.getId(), sliceSize, removedAt.plusSeconds(10).toInstant(), null)
+                .getProjectIds().isEmpty());
+    }
+
+    @Test
+    public void getUserProjectsBySlicesIncludesUnmodifiedMemberships() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        List<UUID> expected = IntStream.range(0, 3).mapToObj(i -> {
+            TeamMembership membership = new TeamMembership(user, UUID.randomUUID(), MembershipState.Active);
+            membership.setRole(viewer);
+            if (i > 0) {
+                membership.setLastModified(ZonedDateTime.now());
+            }
+            return teamMembershipRepo.save(membership).getProjectId();
+        }).collect(Collectors.toList());
+
+        //WHEN
+        ProjectIdSliceDTO first = teamManager.getProjectIdSliceFromUserId(user.getId(), 2, null);
+        ProjectIdSliceDTO second = teamManager.getProjectIdSliceFromUserId(user.getId(), 2, first.getNext());
+
+        //THEN
+        assertEquals(expected.get(0), first.getProjectIds().get(0));
+        assertEquals(2, first.getProjectIds().size());
+        assertNotNull(first.getNext());
+        assertEquals(1, second.getProjectIds().size());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void listTeamPagedSortsInDatabaseWithCurrentUserFirst() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+
+        List<DocutoolsUser> members = new ArrayList<>();
+        members.add(user);
+        for (String lastName : Arrays.asList("Delta", "alpha", "Charlie", "bravo")) {
+            DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+            member.getName().setFirstName("Team");
+            member.getName().setLastName(lastName);
+            members.add(userRepo.save(member));
+        }
+        members.forEach(member -> {
+            TeamMembership membership = new TeamMembership(member, projectId, MembershipState.Active);
+            membership.setRole(viewer);
+            teamMembershipRepo.save(membership);
+        });
+
+        //WHEN
+        List<TeamMemberDTO> first = teamManager.listTeam(projectId, 0, 3, TeamQuickFilter.All, null, TeamMemberSort.Name, SortDirection.ASC);
+        List<TeamMemberDTO> second = teamManager.listTeam(projectId, 1, 3, TeamQuickFilter.All, null, TeamMemberSort.Name, SortDirection.ASC);
+        List<TeamMemberDTO> descending = teamManager.listTeam(projectId, 0, 2, TeamQuickFilter.All, null, TeamMemberSort.Name, SortDirection.DESC);
+        List<TeamMemberDTO> otherCompanies = teamManager.listTeam(projectId, 0, 10, TeamQuickFilter.OtherCompanies, null, TeamMemberSort.Name, SortDirection.ASC);
+
+        //THEN
+        assertEquals(Arrays.asList(user.getId(), members.get(2).getId(), members.get(4).getId()),
+                first.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(members.get(3).getId(), members.get(1).getId()),
+                second.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(user.getId(), members.get(1).getId()),
+                descending.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+        assertTrue(otherCompanies.isEmpty());
+    }
+
+    @Test
+    public void listTeamAsksTheProjectsServiceWithTheUsersToken() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        projectMetadataCache.get(projectId);
+        Mockito.when(projectApi.getProject(projectId)).thenThrow(ExceptionHelper.newForbiddenError("Project"));
+
+        //WHEN & THEN
+        assertThrows(ApiException.class,
+                () -> teamManager.listTeam(projectId, 0, 10, TeamQuickFilter.All, null, TeamMemberSort.Name, SortDirection.ASC));
+        Mockito.verify(projectApi).getProject(projectId);
+    }
+
+    @Test
+    public void listTeamPagedSortsOldMembershipsByRoleAssignments() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        Role assistant = roleRepository.save(new Role("Assistant", Collections.emptySet(), user.getOrganisation(), user, RoleType.Assistant, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        TeamMembership admin = new TeamMembership(user, projectId, MembershipState.Active);
+        admin.setRole(viewer);
+        teamMembershipRepo.save(admin);
+        DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        TeamMembership membership = new TeamMembership(member, projectId, MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+        // memberships from before V13 only have their roles in role_assignments
+        DocutoolsUser old = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        TeamMembership oldMembership = new TeamMembership(old, projectId, MembershipState.Active);
+        oldMembership.setRoles(new HashSet<>(Arrays.asList(viewer, assistant)));
+        teamMembershipRepo.save(oldMembership);
+
+        //WHEN
+        List<TeamMemberDTO> ascending = teamManager.listTeam(projectId, 0, 10, TeamQuickFilter.All, null, TeamMemberSort.Role, SortDirection.ASC);
+        List<TeamMemberDTO> descending = teamManager.listTeam(projectId, 0, 10, TeamQuickFilter.All, null, TeamMemberSort.Role, SortDirection.DESC);
+
+        //THEN
+        assertEquals(Arrays.asList(user.getId(), old.getId(), member.getId()),
+                ascending.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(user.getId(), member.getId(), old.getId()),
+                descending.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void listTeamPagedCostsConstantStatements() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        // every member in an organisation of its own
+        IntStream.range(0, 50).forEach(i -> {
+            TeamMembership membership = new TeamMembership(testUserHelper.newTestUser(), projectId, MembershipState.Active);
+            membership.setRole(viewer);
+            teamMembershipRepo.save(membership);
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        List<TeamMemberDTO> team = teamManager.listTeam(projectId, 0, 50, TeamQuickFilter.All, null, TeamMemberSort.Name, SortDirection.ASC);
+
+        //THEN
+        assertEquals(50, team.size());
+        assertTrue(statistics.getPrepareStatementCount() < 15,
+                "Expected a constant number of statements, but were " + statistics.getPrepareStatementCount());
+    }
+
     @Test
     public void getTeamMemberByProjectAndUserId() {
         //GIVEN
@@ -176,6 +414,7 @@ public class TeamManagerTest {
         project.setId(projectId);
         project.setOrganisationId(user.getOrganisation().getId());
 
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
         Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
 
         //WHEN
@@ -186,6 +425,33 @@ public class TeamManagerTest {
         assertEquals(MembershipState.Active, teamMemberDTO.getState());
     }
 
+    @Test
+    public void listMembershipsLoadsMembershipsInBulk() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        List<TeamMembership> memberships = IntStream.range(0, TEST_PROJECT_NUMBER).mapToObj(i -> {
+            TeamMembership membership = new TeamMembership(user, UUID.randomUUID(), MembershipState.Active);
+            membership.setRole(viewer);
+            return membership;
+        }).collect(Collectors.toList());
+        teamMembershipRepo.saveAll(memberships);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        List<TeamMemberDTO> result = teamManager.listMemberships(user.getId(), TeamMemberSort.Status, SortDirection.ASC);
+
+        //THEN
+        assertEquals(TEST_PROJECT_NUMBER, result.size());
+        assertTrue(result.stream().allMatch(membership -> membership.getPermissions().isEmpty()));
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+                "Expected a constant number of statements, but were " + statistics.getPrepareStatementCount());
+        Mockito.verifyZeroInteractions(internalApiClient);
+    }
+
     @Test
     public void searchTeamMembers() {
         //GIVEN
@@ -215,16 +481,444 @@ public class TeamManagerTest {
         teamMembershipRepo.save(membership);
 
         Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
         Mockito.when(projectApi.getProject(project.getId())).thenReturn(project);
 
         //WHEN
-        List<TeamMembership> teamMemberships = teamMembershipRepo.searchTeamMembers(project.getId(), "Manager", PageRequest.of(page, size));
+        List<String> teamMemberships = teamMembershipRepo.searchTeamMemberIds(project.getId(), "Manager", PageRequest.of(page, size));
 
         //THEN
         assert !CollectionUtils.isEmpty(teamMemberships);
         assert teamMemberships.size() == 1;
     }
 
+    @Test
+    public void searchTeamMembersBySimilarity() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+
+        DocutoolsUser foreman = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        foreman.setJobTitle("Foreman");
+        userRepo.save(foreman);
+        for (DocutoolsUser member : Arrays.asList(user, foreman)) {
+            TeamMembership membership = new TeamMembership(member, projectId, MembershipState.Active);
+            membership.setRole(viewer);
+            teamMembershipRepo.save(membership);
+        }
+
+        //WHEN
+        List<TeamMemberDTO> misspelled = teamManager.searchTeamMembers(projectId, "Managr", TeamSearchMode.Similarity);
+        List<TeamMemberDTO> misspelledContains = teamManager.searchTeamMembers(projectId, "Managr", TeamSearchMode.Contains);
+        Page<TeamMemberDTO> substring = teamManager.searchTeamMembers(projectId, "REMAN", 0, 10, TeamSearchMode.Similarity);
+
+        //THEN
+        assertEquals(Collections.singletonList(user.getId()),
+                misspelled.stream().map(TeamMemberDTO::getUserId).collect(Collectors.toList()));
+        assertTrue(misspelledContains.isEmpty());
+        assertEquals(foreman.getId(), substring.getContent().get(0).getUserId());
+    }
+
+    @Test
+    public void inviteMembersInBulkReportsEveryEntry() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+
+        DocutoolsUser existing = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        DocutoolsUser inactiveMember = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        TeamMembership inactiveMembership = new TeamMembership(inactiveMember, projectId, MembershipState.Inactive);
+        inactiveMembership.setRole(viewer);
+        teamMembershipRepo.save(inactiveMembership);
+        DocutoolsUser existingByEmail = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        String newEmail = UUID.randomUUID() + "@docu-tools.com";
+
+        TeamMemberBulkDTO bulk = new TeamMemberBulkDTO();
+        bulk.setUserIds(Arrays.asList(existing.getId(), inactiveMember.getId()));
+        bulk.setEmails(Arrays.asList(existingByEmail.getUsername().toUpperCase(), " " + newEmail + " ", "not-an-email"));
+        bulk.setActive(true);
+        bulk.setRoleId(viewer.getId());
+
+        //WHEN
+        List<TeamMemberBulkResultDTO> results = teamManager.inviteMembersInBulk(projectId, bulk);
+
+        //THEN
+        assertEquals(Arrays.asList(TeamMemberBulkResultDTO.Status.Added, TeamMemberBulkResultDTO.Status.Updated,
+                TeamMemberBulkResultDTO.Status.Added, TeamMemberBulkResultDTO.Status.Invited, TeamMemberBulkResultDTO.Status.Failed),
+                results.stream().map(TeamMemberBulkResultDTO::getStatus).collect(Collectors.toList()));
+        assertEquals("not-an-email", results.get(4).getEntry());
+        assertNotNull(results.get(4).getError());
+        assertEquals(existingByEmail.getId(), results.get(2).getMember().getUserId());
+
+        DocutoolsUser invited = userRepo.findByUsernameIgnoreCase(newEmail).get();
+        assertEquals(invited.getId(), results.get(3).getMember().getUserId());
+        for (DocutoolsUser member : Arrays.asList(existing, inactiveMember, existingByEmail, invited)) {
+            TeamMembership membership = teamMembershipRepo.findMembership(member.getId(), projectId).get();
+            assertEquals(MembershipState.Active, membership.getState());
+            assertEquals(viewer.getId(), membership.getRole().getId());
+        }
+        Mockito.verify(invitationDispatcher).dispatch(Mockito.any());
+    }
+
+    @Test
+    public void inviteMembersInBulkMergesDuplicateUsers() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+
+        DocutoolsUser existing = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        String newEmail = UUID.randomUUID() + "@docu-tools.com";
+
+        TeamMemberBulkDTO bulk = new TeamMemberBulkDTO();
+        bulk.setUserIds(Arrays.asList(existing.getId(), existing.getId()));
+        bulk.setEmails(Arrays.asList(existing.getUsername(), newEmail, newEmail.toUpperCase()));
+        bulk.setActive(true);
+        bulk.setRoleId(viewer.getId());
+
+        //WHEN
+        List<TeamMemberBulkResultDTO> results = teamManager.inviteMembersInBulk(projectId, bulk);
+
+        //THEN
+        assertEquals(Arrays.asList(TeamMemberBulkResultDTO.Status.Added, TeamMemberBulkResultDTO.Status.Duplicate,
+                TeamMemberBulkResultDTO.Status.Duplicate, TeamMemberBulkResultDTO.Status.Invited, TeamMemberBulkResultDTO.Status.Duplicate),
+                results.stream().map(TeamMemberBulkResultDTO::getStatus).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(existing.getId().toString(), existing.getId().toString(), existing.getUsername(), newEmail, newEmail.toUpperCase()),
+                results.stream().map(TeamMemberBulkResultDTO::getEntry).collect(Collectors.toList()));
+        assertEquals(existing.getId(), results.get(0).getMember().getUserId());
+        assertEquals(results.get(3).getMember().getUserId(), results.get(4).getMember().getUserId());
+        assertEquals(MembershipState.Active, teamMembershipRepo.findMembership(existing.getId(), projectId).get().getState());
+    }
+
+    @Test
+    public void inviteMembersInBulkReportsUserGivenByIdAndEmail() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        DocutoolsUser existing = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+
+        TeamMemberBulkDTO bulk = new TeamMemberBulkDTO();
+        bulk.setUserIds(Collections.singletonList(existing.getId()));
+        bulk.setEmails(Collections.singletonList(existing.getUsername()));
+        bulk.setActive(true);
+        bulk.setRoleId(viewer.getId());
+
+        //WHEN
+        List<TeamMemberBulkResultDTO> results = teamManager.inviteMembersInBulk(projectId, bulk);
+
+        //THEN
+        assertEquals(2, results.size());
+        assertEquals(existing.getId().toString(), results.get(0).getEntry());
+        assertEquals(TeamMemberBulkResultDTO.Status.Added, results.get(0).getStatus());
+        assertEquals(existing.getUsername(), results.get(1).getEntry());
+        assertEquals(TeamMemberBulkResultDTO.Status.Duplicate, results.get(1).getStatus());
+        assertEquals(existing.getId(), results.get(1).getMember().getUserId());
+        assertEquals(1, teamMembershipRepo.findTeam(projectId).size());
+    }
+
+    @Test
+    public void copyMembersKeepsStateAndRole() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID from = UUID.randomUUID();
+        UUID team = UUID.randomUUID();
+        UUID selected = UUID.randomUUID();
+        for (UUID projectId : Arrays.asList(from, team, selected)) {
+            Project project = new Project();
+            project.setId(projectId);
+            project.setOrganisationId(user.getOrganisation().getId());
+            Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+            Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        }
+        DocutoolsUser excluded = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        DocutoolsUser inactive = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        DocutoolsUser removed = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        List<MembershipState> states = Arrays.asList(MembershipState.Active, MembershipState.Active, MembershipState.Inactive, MembershipState.Removed);
+        List<DocutoolsUser> members = Arrays.asList(user, excluded, inactive, removed);
+        for (int i = 0; i < members.size(); i++) {
+            TeamMembership membership = new TeamMembership(members.get(i), from, states.get(i));
+            membership.setRole(viewer);
+            teamMembershipRepo.save(membership);
+        }
+
+        //WHEN
+        teamManager.copyMembers(from, team, Collections.singletonList(excluded.getId()), true);
+        teamManager.copyMembers(from, selected, Arrays.asList(excluded.getId(), removed.getId()), false);
+
+        //THEN
+        List<TeamMembership> copiedTeam = teamMembershipRepo.findTeam(team);
+        assertEquals(new HashSet<>(Arrays.asList(user.getId(), inactive.getId())),
+                copiedTeam.stream().map(membership -> membership.getUser().getId()).collect(Collectors.toSet()));
+        assertEquals(MembershipState.Inactive, teamMembershipRepo.findMembership(inactive.getId(), team).get().getState());
+        assertTrue(copiedTeam.stream().allMatch(membership -> viewer.getId().equals(membership.getRole().getId())));
+        assertEquals(MembershipState.Active, teamMembershipRepo.findMembership(excluded.getId(), selected).get().getState());
+        assertEquals(MembershipState.Removed, teamMembershipRepo.findMembership(removed.getId(), selected).get().getState());
+    }
+
+    @Test
+    public void copyMembersTakesRoleOfOldMembershipsFromRoleAssignments() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        Role assistant = roleRepository.save(new Role("Assistant", Collections.emptySet(), user.getOrganisation(), user, RoleType.Assistant, true));
+        UUID from = UUID.randomUUID();
+        UUID team = UUID.randomUUID();
+        UUID selected = UUID.randomUUID();
+        for (UUID projectId : Arrays.asList(from, team, selected)) {
+            Project project = new Project();
+            project.setId(projectId);
+            project.setOrganisationId(user.getOrganisation().getId());
+            Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+            Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        }
+        TeamMembership admin = new TeamMembership(user, from, MembershipState.Active);
+        admin.setRole(assistant);
+        teamMembershipRepo.save(admin);
+        // memberships from before V13 only have their roles in role_assignments
+        DocutoolsUser old = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        TeamMembership oldMembership = new TeamMembership(old, from, MembershipState.Active);
+        oldMembership.setRoles(new HashSet<>(Arrays.asList(viewer, assistant)));
+        teamMembershipRepo.save(oldMembership);
+
+        //WHEN
+        teamManager.copyMembers(from, team, null, true);
+        teamManager.copyMembers(from, selected, Collections.singletonList(old.getId()), false);
+
+        //THEN
+        assertEquals(assistant.getId(), teamMembershipRepo.findMembership(old.getId(), team).get().getRole().getId());
+        assertEquals(assistant.getId(), teamMembershipRepo.findMembership(old.getId(), selected).get().getRole().getId());
+    }
+
+    @Test
+    public void membershipChangesAreRelayedFromTheOutbox() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+        project.setOrganisationId(user.getOrganisation().getId());
+        Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+        Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        TeamMembership membership = new TeamMembership(member, projectId, MembershipState.Active);
+        membership.setRole(viewer);
+        teamMembershipRepo.save(membership);
+
+        //WHEN
+        TeamMemberDTO update = new TeamMemberDTO();
+        update.setState(MembershipState.Inactive);
+        teamManager.updateMembership(projectId, member.getId(), update);
+        teamManager.removeMembership(projectId, member.getId());
+        changeEventRelay.relay();
+
+        //THEN
+        List<ChangeEvent> events = changeEventSink.getEvents().stream()
+                .filter(event -> projectId.equals(event.getProjectId()))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(ChangeEventType.MembershipUpdated, ChangeEventType.MembershipRemoved),
+                events.stream().map(ChangeEvent::getType).collect(Collectors.toList()));
+        assertEquals(member.getId(), events.get(0).getAggregateId());
+        assertTrue(events.get(0).getPayload().contains("\"state\":\"Inactive\""), events.get(0).getPayload());
+        assertTrue(events.get(1).getPayload().contains("\"state\":\"Removed\""), events.get(1).getPayload());
+    }
+
+    @Test
+    public void defaultRolesAreRelayedFromTheOutbox() {
+        //GIVEN
+        Organisation organisation = new Organisation();
+        organisation.setName("Default Roles " + UUID.randomUUID());
+        organisation.setCc("AT");
+        organisation = organisationRepo.save(organisation);
+
+        //WHEN
+        List<Role> roles = roleManager.getUpdatedOrganisationRoles(organisation.getId());
+        changeEventRelay.relay();
+
+        //THEN
+        assertFalse(roles.isEmpty());
+        Set<UUID> roleIds = roles.stream().map(Role::getId).collect(Collectors.toSet());
+        List<ChangeEvent> events = changeEventSink.getEvents().stream()
+                .filter(event -> roleIds.contains(event.getAggregateId()))
+                .collect(Collectors.toList());
+        assertEquals(roleIds, events.stream().map(ChangeEvent::getAggregateId).collect(Collectors.toSet()));
+        assertTrue(events.stream().allMatch(event -> event.getType() == ChangeEventType.RoleCreated));
+    }
+
+    @Test
+    public void bulkUpdateMembershipsAppliesAllProjects() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        Role powerUser = roleRepository.save(new Role("Power User", Collections.emptySet(), user.getOrganisation(), user, RoleType.PowerUser, true));
+        DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        List<UUID> projectIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID projectId = UUID.randomUUID();
+            projectIds.add(projectId);
+            Project project = new Project();
+            project.setId(projectId);
+            project.setOrganisationId(user.getOrganisation().getId());
+            Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+            Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        }
+        for (UUID projectId : Arrays.asList(projectIds.get(0), projectIds.get(1), projectIds.get(3))) {
+            TeamMembership membership = new TeamMembership(member, projectId, MembershipState.Active);
+            membership.setRole(viewer);
+            teamMembershipRepo.save(membership);
+        }
+        TeamMembership removed = new TeamMembership(member, projectIds.get(4), MembershipState.Removed);
+        removed.setRole(viewer);
+        teamMembershipRepo.save(removed);
+
+        Map<UUID, List<UUID>> memberships = new HashMap<>();
+        memberships.put(projectIds.get(0), Collections.singletonList(powerUser.getId()));
+        memberships.put(projectIds.get(1), Collections.emptyList());
+        memberships.put(projectIds.get(2), Arrays.asList(viewer.getId(), powerUser.getId()));
+        memberships.put(projectIds.get(3), null);
+        memberships.put(projectIds.get(4), Collections.emptyList());
+
+        //WHEN
+        teamManager.bulkUpdateMemberships(member.getId(), memberships);
+
+        //THEN
+        TeamMembership updated = teamMembershipRepo.findMembership(member.getId(), projectIds.get(0)).get();
+        assertEquals(powerUser.getId(), updated.getRole().getId());
+        assertEquals(MembershipState.Removed, teamMembershipRepo.findMembership(member.getId(), projectIds.get(1)).get().getState());
+        TeamMembership added = teamMembershipRepo.findMembership(member.getId(), projectIds.get(2)).get();
+        assertEquals(MembershipState.Active, added.getState());
+        assertEquals(powerUser.getId(), added.getRole().getId());
+        TeamMembership unchanged = teamMembershipRepo.findMembership(member.getId(), projectIds.get(3)).get();
+        assertEquals(viewer.getId(), unchanged.getRole().getId());
+        assertNull(unchanged.getLastModified());
+        TeamMembership readded = teamMembershipRepo.findMembership(member.getId(), projectIds.get(4)).get();
+        assertEquals(MembershipState.Active, readded.getState());
+        assertEquals(viewer.getId(), readded.getRole().getId());
+        Mockito.verify(invitationDispatcher).dispatch(Mockito.any());
+    }
+
+    @Test
+    public void bulkUpdateMembershipsFetchesProjectsOnceAndReactivatesOnRoleChange() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        Role powerUser = roleRepository.save(new Role("Power User", Collections.emptySet(), user.getOrganisation(), user, RoleType.PowerUser, true));
+        DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        List<Project> projects = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Project project = new Project();
+            project.setId(UUID.randomUUID());
+            project.setOrganisationId(user.getOrganisation().getId());
+            projects.add(project);
+        }
+        Mockito.when(projectApi.getAllProjectsInCurrentOrganisation()).thenReturn(projects);
+        TeamMembership inactive = new TeamMembership(member, projects.get(0).getId(), MembershipState.Inactive);
+        inactive.setRole(viewer);
+        teamMembershipRepo.save(inactive);
+
+        Map<UUID, List<UUID>> memberships = new HashMap<>();
+        memberships.put(projects.get(0).getId(), Collections.singletonList(powerUser.getId()));
+        memberships.put(projects.get(1).getId(), Collections.singletonList(viewer.getId()));
+
+        //WHEN
+        teamManager.bulkUpdateMemberships(member.getId(), memberships);
+
+        //THEN
+        TeamMembership updated = teamMembershipRepo.findMembership(member.getId(), projects.get(0).getId()).get();
+        assertEquals(MembershipState.Active, updated.getState());
+        assertEquals(powerUser.getId(), updated.getRole().getId());
+        assertEquals(MembershipState.Active, teamMembershipRepo.findMembership(member.getId(), projects.get(1).getId()).get().getState());
+        Mockito.verify(projectApi, Mockito.times(1)).getAllProjectsInCurrentOrganisation();
+        Mockito.verify(internalApiClient, Mockito.never()).getProjectById(Mockito.any());
+    }
+
+    @Test
+    public void bulkUpdateMembershipsChecksTeamPrivilegesInOtherOrganisations() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newAdmin();
+        Mockito.when(sessionManager.getCurrentUser()).thenReturn(user);
+        Mockito.when(invitationDispatcher.newBatch()).thenCallRealMethod();
+        Role viewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), user.getOrganisation(), user, RoleType.Viewer, true));
+        DocutoolsUser member = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+        DocutoolsUser otherOwner = testUserHelper.newOwner();
+        Organisation otherOrganisation = otherOwner.getOrganisation();
+        Role otherViewer = roleRepository.save(new Role("Viewer", Collections.emptySet(), otherOrganisation, otherOwner, RoleType.Viewer, true));
+        Role otherManager = roleRepository.save(new Role("Manager", Collections.singleton(Privilege.ManageTeam), otherOrganisation, otherOwner, RoleType.Custom, true));
+
+        UUID own = UUID.randomUUID();
+        UUID managed = UUID.randomUUID();
+        UUID viewed = UUID.randomUUID();
+        for (UUID projectId : Arrays.asList(own, managed, viewed)) {
+            Project project = new Project();
+            project.setId(projectId);
+            project.setOrganisationId(projectId.equals(own) ? user.getOrganisation().getId() : otherOrganisation.getId());
+            Mockito.when(internalApiClient.getProjectById(projectId)).thenReturn(Optional.of(project));
+            Mockito.when(projectApi.getProject(projectId)).thenReturn(project);
+        }
+        TeamMembership manager = new TeamMembership(user, managed, MembershipState.Active);
+        manager.setRole(otherManager);
+        teamMembershipRepo.save(manager);
+        TeamMembership viewing = new TeamMembership(user, viewed, MembershipState.Active);
+        viewing.setRole(otherViewer);
+        teamMembershipRepo.save(viewing);
+
+        Map<UUID, List<UUID>> allowed = new HashMap<>();
+        allowed.put(own, Collections.singletonList(viewer.getId()));
+        allowed.put(managed, Collections.singletonList(otherViewer.getId()));
+        Map<UUID, List<UUID>> forbidden = new HashMap<>();
+        forbidden.put(own, Collections.singletonList(viewer.getId()));
+        forbidden.put(viewed, Collections.singletonList(otherViewer.getId()));
+        DocutoolsUser other = testUserHelper.newTestUser(user.getOrganisation(), false, false, false);
+
+        //WHEN
+        teamManager.bulkUpdateMemberships(member.getId(), allowed);
+
+        //THEN
+        assertTrue(teamMembershipRepo.findMembership(member.getId(), own).isPresent());
+        assertEquals(otherViewer.getId(), teamMembershipRepo.findMembership(member.getId(), managed).get().getRole().getId());
+        assertThrows(ApiException.class, () -> teamManager.bulkUpdateMemberships(other.getId(), forbidden));
+        assertFalse(teamMembershipRepo.findMembership(other.getId(), own).isPresent());
+        assertFalse(teamMembershipRepo.findMembership(other.getId(), viewed).isPresent());
+    }
+
     @Test
     public void checkRepository() {
         Organisation organisation = new Organisation();
@@ -264,6 +958,7 @@ public class TeamManagerTest {
         teamMembershipRepo.save(membership2);
 
         Mockito.when(sessionManager.getCurrentUser()).thenReturn(user1);
+        Mockito.when(internalApiClient.getProjectById(project.getId())).thenReturn(Optional.of(project));
         Mockito.when(projectApi.getProject(project.getId())).thenReturn(project);
 
         //WHEN
@@ -6,6 +6,7 @@ import com.docutools.contacts.ProjectContact;
 import com.docutools.users.DocutoolsUser;
 import com.docutools.contacts.ProjectContactRepository;
 import com.docutools.team.TeamMembershipRepo;
+import com.docutools.services.internal.InternalApiClient;
 import com.docutools.services.projects.ProjectApiClient;
 import com.docutools.services.projects.resources.Project;
 import com.docutools.test.DocutoolsTestUser;
@@ -52,6 +53,8 @@ public class TeamRequests {
     private PermissionManager permissionManager;
     @MockBean
     private ProjectApiClient projectApiClient;
+    @MockBean
+    private InternalApiClient internalApiClient;
 
     @Autowired
     private RoleManager roleManager;
@@ -78,6 +81,13 @@ public class TeamRequests {
                     project.setOrganisationId(user.getOrganisation().getId());
                     return project;
                 });
+        when(internalApiClient.getProjectById(any()))
+                .then(args -> {
+                    Project project = new Project();
+                    project.setId(args.getArgument(0));
+                    project.setOrganisationId(user.getOrganisation().getId());
+                    return Optional.of(project);
+                });
     }
 
     @Test
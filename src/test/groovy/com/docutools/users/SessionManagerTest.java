@@ -0,0 +1,100 @@
+package com.docutools.users;
+
+import com.docutools.test.TestUserHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@DisplayName("SessionManagerTest")
+public class SessionManagerTest {
+
+    @Autowired
+    private SessionManager sessionManager;
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @SpyBean
+    private UserRepo userRepo;
+
+    @AfterEach
+    public void cleanUp() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void currentUserIsLoadedOncePerRequest() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user.getUsername(), null));
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(request);
+        Mockito.clearInvocations(userRepo);
+
+        //WHEN
+        for (int i = 0; i < 100; i++) {
+            assertEquals(user.getId(), sessionManager.getCurrentUser().getId());
+        }
+        request.requestCompleted();
+
+        //THEN
+        Mockito.verify(userRepo, Mockito.times(1)).findByUsernameIgnoreCase(user.getUsername());
+    }
+
+    @Test
+    public void organisationOwnerFallbackIsLoadedOncePerRequest() {
+        //GIVEN
+        DocutoolsUser owner = testUserHelper.newOwner();
+        String organisationId = owner.getOrganisation().getId().toString();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(organisationId, null));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Mockito.clearInvocations(userRepo);
+
+        //WHEN
+        for (int i = 0; i < 100; i++) {
+            assertEquals(owner.getId(), sessionManager.getCurrentUser().getId());
+        }
+
+        //THEN
+        Mockito.verify(userRepo, Mockito.times(1)).findByUsernameIgnoreCase(organisationId);
+    }
+
+    @Test
+    public void currentUserIsReloadedInNextRequest() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user.getUsername(), null));
+        Mockito.clearInvocations(userRepo);
+
+        //WHEN
+        for (int i = 0; i < 2; i++) {
+            ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+            RequestContextHolder.setRequestAttributes(request);
+            sessionManager.getCurrentUser();
+            sessionManager.getCurrentUser();
+            request.requestCompleted();
+        }
+
+        //THEN
+        Mockito.verify(userRepo, Mockito.times(2)).findByUsernameIgnoreCase(user.getUsername());
+    }
+}
@@ -0,0 +1,67 @@
+package com.docutools.users;
+
+import com.docutools.test.TestUserHelper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@DisplayName("UserLookupIndexTest")
+public class UserLookupIndexTest {
+
+    // Same condition Hibernate generates for UserRepo.findByUsernameIgnoreCase
+    private static final String LOOKUP = "SELECT * FROM docutools_users u WHERE lower(u.username)=lower(?) OR lower(u.email)=lower(?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @Test
+    public void lookupByUsernameOrEmailUsesIndexes() {
+        //GIVEN
+        String username = testUserHelper.newTestUser().getUsername();
+
+        //WHEN
+        List<String> plan = transactionTemplate.execute(status -> {
+            // The test database is tiny, so make sure the planner only falls back to a sequential scan if it must
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return jdbcTemplate.queryForList("EXPLAIN " + LOOKUP, String.class, username, username);
+        });
+
+        //THEN
+        String joinedPlan = String.join("\n", plan);
+        assertFalse(joinedPlan.contains("Seq Scan on docutools_users"), joinedPlan);
+        assertTrue(joinedPlan.contains("docutools_users_lower_username_index"), joinedPlan);
+        assertTrue(joinedPlan.contains("docutools_users_lower_email_index"), joinedPlan);
+    }
+
+    @Test
+    public void lookupIgnoresCase() {
+        //GIVEN
+        DocutoolsUser user = testUserHelper.newTestUser();
+
+        //WHEN & THEN
+        assertEquals(user.getId(), userRepo.findByUsernameIgnoreCase(user.getUsername().toUpperCase(Locale.ROOT)).get().getId());
+        assertEquals(user.getId(), userRepo.findByUsernameIgnoreCase(user.getUsername().toLowerCase(Locale.ROOT)).get().getId());
+    }
+}
@@ -0,0 +1,74 @@
+package com.docutools.users;
+
+import com.docutools.users.resources.UserFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"dev"})
+@ExtendWith(SpringExtension.class)
+@DisplayName("UserSliceQueryTest")
+public class UserSliceQueryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void nameSliceReadsIndexInOrder() {
+        //GIVEN
+        String sql = UserSliceQuery.sql("name", true, UserFilter.Any, false, true)
+                .replace(":k1", "'m'")
+                .replace(":k2", "'m'");
+
+        //WHEN
+        String plan = explain(sql);
+
+        //THEN
+        assertTrue(plan.contains("docutools_users_organisation_name_index"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    public void adminSliceReadsIndexInOrder() {
+        //GIVEN
+        String sql = UserSliceQuery.sql("admin", false, UserFilter.Any, false, true)
+                .replace(":k1", "'true'")
+                .replace(":k2", "'false'");
+
+        //WHEN
+        String plan = explain(sql);
+
+        //THEN
+        assertTrue(plan.contains("docutools_users_organisation_admin_index"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    private String explain(String sql) {
+        String query = sql
+                .replace(":org", "CAST('" + UUID.randomUUID() + "' AS uuid)")
+                .replace(":afterId", "'" + UUID.randomUUID() + "'")
+                .replace(":limit", "11");
+        List<String> plan = transactionTemplate.execute(status -> {
+            // The test database is tiny, so make sure the planner only falls back to a sequential scan if it must
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return jdbcTemplate.queryForList("EXPLAIN " + query, String.class);
+        });
+        return String.join("\n", plan);
+    }
+}
@@ -1,7 +1,11 @@
 package com.docutools.users;
 
+import com.docutools.test.DocutoolsTestUser;
 import com.docutools.test.TestUserHelper;
 import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,13 +18,22 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 
 @Tag("integration")
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @ActiveProfiles({"dev"})
 @ExtendWith(SpringExtension.class)
 public class UsersIntegration {
@@ -33,6 +46,9 @@ public class UsersIntegration {
     @Autowired
     private TestUserHelper testUserHelper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
 
     @BeforeEach
     public void setup() {
@@ -78,4 +94,193 @@ public class UsersIntegration {
 
     }
 
+    @Test
+    @DisplayName("List organisation users by continuation token")
+    public void listUsersSlice() {
+        // Arrange
+        DocutoolsTestUser admin = testUserHelper.newAdmin();
+        List<String> expected = new ArrayList<>();
+        expected.add(admin.getId().toString());
+        for (int i = 0; i < 4; i++) {
+            expected.add(testUserHelper.newTestUser(admin.getOrganisation()).getId().toString());
+        }
+        String token = testUserHelper.login(admin, port);
+
+        // Act
+        List<String> listed = new ArrayList<>();
+        String next = null;
+        Integer total = null;
+        do {
+            Response response = given()
+                .auth().oauth2(token)
+                .accept("application/json")
+                .queryParam("size", 2)
+                .queryParam("sort", "id")
+                .queryParam("count", next == null)
+                .queryParam("next", next)
+                .when()
+                .get("/api/v2/users/slice")
+                .then()
+                .statusCode(200)
+                .extract().response();
+            listed.addAll(response.jsonPath().getList("users.userId"));
+            if (next == null) {
+                total = response.jsonPath().get("total");
+            }
+            next = response.jsonPath().get("next");
+        } while (next != null);
+
+        // Assert
+        Assertions.assertEquals(Integer.valueOf(5), total);
+        Assertions.assertEquals(5, listed.size());
+        Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(listed));
+        expected.sort(null);
+        Assertions.assertEquals(expected, listed);
+    }
+
+    @Test
+    @DisplayName("List users by admin flag, descending, via continuation token")
+    public void listUsersSliceByAdminDescending() {
+        // Arrange
+        DocutoolsTestUser admin = testUserHelper.newAdmin();
+        List<String> admins = new ArrayList<>(Arrays.asList(admin.getId().toString(),
+            testUserHelper.newAdmin(admin.getOrganisation()).getId().toString()));
+        String projectCreator = testUserHelper.newProjectCreator(admin.getOrganisation()).getId().toString();
+        List<String> others = new ArrayList<>(Arrays.asList(
+            testUserHelper.newTestUser(admin.getOrganisation()).getId().toString(),
+            testUserHelper.newTestUser(admin.getOrganisation()).getId().toString()));
+        admins.sort(Collections.reverseOrder());
+        others.sort(Collections.reverseOrder());
+        List<String> expected = new ArrayList<>(admins);
+        expected.add(projectCreator);
+        expected.addAll(others);
+        String token = testUserHelper.login(admin, port);
+
+        // Act
+        List<String> listed = new ArrayList<>();
+        String next = null;
+        do {
+            Response response = given()
+                .auth().oauth2(token)
+                .accept("application/json")
+                .queryParam("size", 2)
+                .queryParam("sort", "admin")
+                .queryParam("sortDirection", "DESC")
+                .queryParam("next", next)
+                .when()
+                .get("/api/v2/users/slice")
+                .then()
+                .statusCode(200)
+                .extract().response();
+            listed.addAll(response.jsonPath().getList("users.userId"));
+            next = response.jsonPath().get("next");
+        } while (next != null);
+
+        // Assert
+        Assertions.assertEquals(expected, listed);
+    }
+
+    @Test
+    @DisplayName("List organisation users with a constant number of statements")
+    public void listUsersCostsConstantStatements() {
+        // Arrange
+        DocutoolsTestUser admin = testUserHelper.newAdmin();
+        for (int i = 0; i < 40; i++) {
+            testUserHelper.newTestUser(admin.getOrganisation());
+        }
+        String token = testUserHelper.login(admin, port);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Act
+        statistics.clear();
+        List<String> page = given()
+            .auth().oauth2(token)
+            .accept("application/json")
+            .queryParam("size", 50)
+            .when()
+            .get("/api/v2/users")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getList("content.userId");
+        long pageStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        List<String> licensed = given()
+            .auth().oauth2(token)
+            .accept("application/json")
+            .queryParam("size", 50)
+            .queryParam("filter", "Licensed")
+            .when()
+            .get("/api/v2/users")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getList("content.userId");
+        long licensedStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        List<String> withoutLicense = given()
+            .auth().oauth2(token)
+            .accept("application/json")
+            .queryParam("size", 50)
+            .queryParam("filter", "WithoutLicense")
+            .when()
+            .get("/api/v2/users")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getList("content.userId");
+        long withoutLicenseStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        List<String> slice = given()
+            .auth().oauth2(token)
+            .accept("application/json")
+            .queryParam("size", 50)
+            .when()
+            .get("/api/v2/users/slice")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getList("users.userId");
+        long sliceStatements = statistics.getPrepareStatementCount();
+
+        // Assert
+        Assertions.assertEquals(41, page.size());
+        Assertions.assertEquals(41, licensed.size() + withoutLicense.size());
+        Assertions.assertEquals(41, slice.size());
+        Assertions.assertTrue(pageStatements < 15,
+            "Expected a constant number of statements for the page, but were " + pageStatements);
+        Assertions.assertTrue(licensedStatements < 15,
+            "Expected a constant number of statements for the licensed page, but were " + licensedStatements);
+        Assertions.assertTrue(withoutLicenseStatements < 15,
+            "Expected a constant number of statements for the page without license, but were " + withoutLicenseStatements);
+        Assertions.assertTrue(sliceStatements < 15,
+            "Expected a constant number of statements for the slice, but were " + sliceStatements);
+    }
+
+    @Test
+    @DisplayName("Deactivate many users at once")
+    public void updateAllUsers() {
+        // Arrange
+        DocutoolsTestUser admin = testUserHelper.newAdmin();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(testUserHelper.newTestUser(admin.getOrganisation()).getId().toString());
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("ids", ids);
+        body.put("update", Collections.singletonMap("active", false));
+        String token = testUserHelper.login(admin, port);
+
+        // Act
+        List<Boolean> active = given()
+            .auth().oauth2(token)
+            .contentType("application/json")
+            .accept("application/json")
+            .body(body)
+            .when()
+            .patch("/api/v2/users")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getList("active");
+
+        // Assert
+        Assertions.assertEquals(Arrays.asList(false, false, false), active);
+        ids.forEach(id -> Assertions.assertFalse(userRepo.findById(UUID.fromString(id)).get().isActive()));
+    }
 }